@@ -1,14 +1,17 @@
 package org.codehaus.xsite.ant;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.util.Arrays;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Task;
-import org.codehaus.xsite.Main;
+import org.codehaus.xsite.BuildRequest;
+import org.codehaus.xsite.BuildResult;
+import org.codehaus.xsite.BuildRunner;
+import org.codehaus.xsite.validators.LinkChecker.InvalidLinksException;
 
 /**
- * Ant task that runs XSite via Main CLI
+ * Ant task that runs XSite in-process via the BuildRunner
  * 
  * @author Mauro Talevi
  */
@@ -36,43 +39,78 @@ public class XSiteTask extends Task {
 
 	private String publishedVersion;
 
+	private String threads;
+
+	private boolean incremental;
+
+	private boolean syncResources;
+
+	private boolean compareResourceContent;
+
+	private boolean deleteStaleResources;
+
+	private String localisationThreads;
+
+	private boolean shareResources;
+
+	private String shard;
+
+	private boolean verifyOnly;
+
+	private boolean mergeShards;
+
 	public void execute() throws BuildException {
-		List<String> args = cliArgs();
+		BuildRequest request = buildRequest();
 		try {
-			Main.main(args.toArray(new String[args.size()]));
+			BuildResult result = new BuildRunner().run(request);
+			log(result.toString());
+		} catch (InvalidLinksException e) {
+			throw new BuildException(e.getMessage(), e);
 		} catch (Exception e) {
-			throw new BuildException("Failed to run xsite with args " + args, e);
+			throw new BuildException("Failed to run xsite with args "
+					+ Arrays.asList(request.toArgs()), e);
 		}
 	}
 
-	protected List<String> cliArgs() {
-		List<String> args = new ArrayList<String>();
-		args.add("-S" + sourceDirectoryPath);
-		args.add("-m" + sitemapPath);
-		args.add("-s" + skinPath);
-		args.add("-o" + outputDirectoryPath);
+	protected BuildRequest buildRequest() {
+		BuildRequest request = new BuildRequest(new File(sourceDirectoryPath),
+				sitemapPath);
+		request.setSkinPath(skinPath);
+		if (outputDirectoryPath != null) {
+			request.setOutputDirectory(new File(outputDirectoryPath));
+		}
 		if (resourcePaths != null) {
-			args.add("-R" + resourcePaths);
+			request.setResourcePaths(resourcePaths.split(","));
 		}
 		if (templatesDirectoryPath != null) {
-			args.add("-T" + templatesDirectoryPath);
+			request.setTemplatesDirectory(new File(templatesDirectoryPath));
 		}
 		if (localisations != null) {
-			args.add("-L" + localisations);
-		}
-		if (compositionFilePath != null) {
-			args.add("-f" + compositionFilePath);
-		}
-		if (compositionResourcePath != null) {
-			args.add("-r" + compositionResourcePath);
+			request.setLocalisations(localisations.split(","));
 		}
+		request.setCompositionFilePath(compositionFilePath);
+		request.setCompositionResourcePath(compositionResourcePath);
 		if (publishedDate != null) {
-			args.add("-D" + publishedDate);
+			request.setPublishedDate(publishedDate);
 		}
 		if (publishedVersion != null) {
-			args.add("-V" + publishedVersion);
+			request.setPublishedVersion(publishedVersion);
+		}
+		if (threads != null) {
+			request.setThreads(Integer.parseInt(threads));
 		}
-		return args;
+		request.setIncremental(incremental);
+		request.setSyncResources(syncResources);
+		request.setCompareResourceContent(compareResourceContent);
+		request.setDeleteStaleResources(deleteStaleResources);
+		if (localisationThreads != null) {
+			request.setLocalisationThreads(Integer.parseInt(localisationThreads));
+		}
+		request.setShareResources(shareResources);
+		request.setShard(shard);
+		request.setVerifyOnly(verifyOnly);
+		request.setMergeShards(mergeShards);
+		return request;
 	}
 
 	public void setCompositionFilePath(String compositionFilePath) {
@@ -119,4 +157,44 @@ public class XSiteTask extends Task {
 		this.publishedVersion = publishedVersion;
 	}
 
+	public void setThreads(String threads) {
+		this.threads = threads;
+	}
+
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	public void setSyncResources(boolean syncResources) {
+		this.syncResources = syncResources;
+	}
+
+	public void setCompareResourceContent(boolean compareResourceContent) {
+		this.compareResourceContent = compareResourceContent;
+	}
+
+	public void setDeleteStaleResources(boolean deleteStaleResources) {
+		this.deleteStaleResources = deleteStaleResources;
+	}
+
+	public void setLocalisationThreads(String localisationThreads) {
+		this.localisationThreads = localisationThreads;
+	}
+
+	public void setShareResources(boolean shareResources) {
+		this.shareResources = shareResources;
+	}
+
+	public void setShard(String shard) {
+		this.shard = shard;
+	}
+
+	public void setVerifyOnly(boolean verifyOnly) {
+		this.verifyOnly = verifyOnly;
+	}
+
+	public void setMergeShards(boolean mergeShards) {
+		this.mergeShards = mergeShards;
+	}
+
 }
@@ -3,6 +3,7 @@ package org.codehaus.xsite.ant;
 import java.io.File;
 
 import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -25,7 +26,7 @@ public class XSiteTaskTest {
 
     @Test
     public void testGoalCanBeRunWithDefaultComposition() throws Exception {
-        XSiteTask task = new XSiteTask();
+        XSiteTask task = createTask();
         task.setSourceDirectoryPath(testSrcDir);
         task.setSitemapPath("content/sitemap.xml");
         task.setSkinPath("templates/skin.html");
@@ -35,7 +36,7 @@ public class XSiteTaskTest {
     
     @Test
     public void testGoalCanBeRunWithOptionalResources() throws Exception {
-        XSiteTask task = new XSiteTask();
+        XSiteTask task = createTask();
         task.setSourceDirectoryPath(testSrcDir);
         task.setSitemapPath("content/sitemap.xml");
         task.setSkinPath("skin.html");
@@ -47,7 +48,7 @@ public class XSiteTaskTest {
 
     @Test
     public void testGoalCanBeRunWithOptionalCustomProperties() throws Exception {
-        XSiteTask task = new XSiteTask();
+        XSiteTask task = createTask();
         task.setSourceDirectoryPath(testSrcDir);
         task.setSitemapPath("content/sitemap.xml");
         task.setSkinPath("templates/skin.html");
@@ -59,11 +60,35 @@ public class XSiteTaskTest {
 
     @Test(expected=BuildException.class)
     public void testGoalFailsWithInvalidPath() throws Exception {
-        XSiteTask task = new XSiteTask();
+        XSiteTask task = createTask();
         task.setSourceDirectoryPath(testSrcDir);
         task.setSitemapPath("content/nonexistent.xml");
         task.setSkinPath("templates/skin.html");
         task.setOutputDirectoryPath("target/xsite");
         task.execute();
     }
+
+    @Test
+    public void testGoalCanVerifyLinksOnly() throws Exception {
+        XSiteTask task = createTask();
+        task.setSourceDirectoryPath(testSrcDir);
+        task.setSitemapPath("content/sitemap.xml");
+        task.setVerifyOnly(true);
+        task.execute();
+    }
+
+    @Test(expected=BuildException.class)
+    public void testGoalFailsWithInvalidLinks() throws Exception {
+        XSiteTask task = createTask();
+        task.setSourceDirectoryPath(testSrcDir);
+        task.setSitemapPath("broken/sitemap.xml");
+        task.setVerifyOnly(true);
+        task.execute();
+    }
+
+    private XSiteTask createTask() {
+        XSiteTask task = new XSiteTask();
+        task.setProject(new Project());
+        return task;
+    }
 }
@@ -0,0 +1,372 @@
+package org.codehaus.xsite;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.validators.LinkChecker.InvalidLinksException;
+
+/**
+ * Long-lived process running builds requested over a local socket, keeping
+ * the XSite of each composition warm between builds in an {@link XSiteCache}.
+ * The front ends hand their command line arguments to the daemon listening on
+ * the port given by the system property {@value #PORT_PROPERTY}, and build
+ * in-process if none is listening.
+ * <p>
+ * Builds are run one at a time, in the order they are requested, as they
+ * share the cached XSite instances. The paths of the arguments are resolved by
+ * the front end, as the daemon runs in its own working directory. The output
+ * of the builds is printed by the daemon. A client which does not send its
+ * request within ten seconds is disconnected, so that
+ * it cannot hold up the builds of others.
+ * </p>
+ * <p>
+ * Only the users who can read the token file of the daemon can request builds.
+ * The daemon writes a random token to the file when started, readable only by
+ * its owner where the JVM can restrict it, and deletes it when stopped. The
+ * file is given by the system property {@value #TOKEN_FILE_PROPERTY}, or else
+ * is <code>.xsite/daemon-&lt;port&gt;.token</code> in the home directory.
+ * The client sends the token first, and its arguments only once accepted.
+ * </p>
+ * <p>
+ * A build failing with invalid links is reported to the client as an
+ * {@link InvalidLinksException}, as it would be by an in-process build, and
+ * other failures as a {@link BuildFailedException}.
+ * </p>
+ *
+ * @author Mauro Talevi
+ */
+public class BuildDaemon {
+
+    public static final String PORT_PROPERTY = "xsite.daemon.port";
+    public static final String TOKEN_FILE_PROPERTY = "xsite.daemon.token";
+    public static final int DEFAULT_PORT = 7861;
+
+    private static final String BUILD = "build";
+    private static final int CONNECT_TIMEOUT = 1000;
+    private static final int READ_TIMEOUT = 10000;
+    private static final int MAX_MESSAGE_LENGTH = 16 * 1024;
+    private static final int MAX_ARGS = 4096;
+    private static final byte ACCEPTED = 0;
+    private static final byte SUCCEEDED = 1;
+    private static final byte FAILED = 2;
+    private static final byte INVALID_LINKS = 3;
+
+    private final XSiteCache xsites = new XSiteCache();
+    private final File tokenFile;
+    private int readTimeout = READ_TIMEOUT;
+    private File writtenTokenFile;
+    private String token;
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+
+    /**
+     * Creates a BuildDaemon writing its token to the token file of its port
+     */
+    public BuildDaemon() {
+        this(null);
+    }
+
+    /**
+     * Creates a BuildDaemon
+     *
+     * @param tokenFile the token File, or <code>null</code> for the token file
+     *            of its port
+     */
+    public BuildDaemon(File tokenFile) {
+        this.tokenFile = tokenFile;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT)
+                .intValue();
+        BuildDaemon daemon = new BuildDaemon();
+        daemon.start(port);
+        System.out.println("XSite build daemon listening on port " + daemon.getPort());
+        daemon.join();
+    }
+
+    /**
+     * Writes the token file and starts serving build requests
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException
+     */
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+        writtenTokenFile = tokenFile != null ? tokenFile : tokenFile(getPort());
+        token = writeToken(writtenTokenFile);
+        acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept();
+            }
+        }, "xsite-build-daemon");
+        acceptor.start();
+    }
+
+    /**
+     * Sets the time a client is given to send each part of its request
+     *
+     * @param readTimeout the timeout in milliseconds
+     */
+    void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Returns the cache of the XSite instances built with
+     *
+     * @return The XSiteCache
+     */
+    public XSiteCache getXSites() {
+        return xsites;
+    }
+
+    /**
+     * Waits until the daemon is stopped
+     *
+     * @throws InterruptedException
+     */
+    public void join() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /**
+     * Stops serving build requests and deletes the token file
+     *
+     * @throws IOException
+     */
+    public void stop() throws IOException {
+        serverSocket.close();
+        writtenTokenFile.delete();
+    }
+
+    /**
+     * Returns the token file of the daemon listening on a port
+     *
+     * @param port the port
+     * @return The File set by the system property {@value #TOKEN_FILE_PROPERTY}
+     *         or else the default token file of the port
+     */
+    public static File tokenFile(int port) {
+        String path = System.getProperty(TOKEN_FILE_PROPERTY);
+        if (path != null) {
+            return new File(path);
+        }
+        return new File(new File(System.getProperty("user.home"), ".xsite"), "daemon-" + port + ".token");
+    }
+
+    private static String writeToken(File file) throws IOException {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+        }
+        file.delete();
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        if (!file.createNewFile()) {
+            throw new IOException("Cannot create token file " + file);
+        }
+        restrictToOwner(file);
+        FileUtils.writeStringToFile(file, token.toString(), "UTF-8");
+        return token.toString();
+    }
+
+    /**
+     * Restricts the access to a file to its owner, using the file permissions
+     * available from Java 6
+     */
+    private static void restrictToOwner(File file) {
+        try {
+            for (String name : new String[] { "setReadable", "setWritable" }) {
+                Method method = File.class.getMethod(name, boolean.class, boolean.class);
+                method.invoke(file, Boolean.FALSE, Boolean.FALSE);
+                method.invoke(file, Boolean.TRUE, Boolean.TRUE);
+            }
+        } catch (Exception e) {
+            System.err.println("Cannot restrict token file " + file + " to its owner: " + e);
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                try {
+                    socket.setSoTimeout(readTimeout);
+                    handle(socket);
+                } finally {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                // server stopped or client gone
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException {
+        DataInputStream input = new DataInputStream(socket.getInputStream());
+        DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+        if (!BUILD.equals(input.readUTF())) {
+            respond(output, FAILED, "Unknown request");
+            return;
+        }
+        if (!MessageDigest.isEqual(token.getBytes("UTF-8"), input.readUTF().getBytes("UTF-8"))) {
+            System.err.println("Refused build with invalid token");
+            respond(output, FAILED, "Invalid token");
+            return;
+        }
+        output.writeByte(ACCEPTED);
+        output.flush();
+        int count = input.readInt();
+        if (count < 0 || count > MAX_ARGS) {
+            respond(output, FAILED, "Expected at most " + MAX_ARGS + " arguments, but got " + count);
+            return;
+        }
+        String[] args = new String[count];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = input.readUTF();
+        }
+        try {
+            new Main(args, xsites);
+            respond(output, SUCCEEDED, "");
+        } catch (Exception e) {
+            InvalidLinksException invalidLinks = invalidLinks(e);
+            if (invalidLinks != null) {
+                System.err.println(invalidLinks.getMessage());
+                respond(output, INVALID_LINKS, invalidLinks.getMessage());
+            } else {
+                String message = describe(e);
+                System.err.println("Build failed: " + message);
+                respond(output, FAILED, message);
+            }
+        }
+    }
+
+    private static InvalidLinksException invalidLinks(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InvalidLinksException) {
+                return (InvalidLinksException) cause;
+            }
+        }
+        return null;
+    }
+
+    private void respond(DataOutputStream output, byte status, String message) throws IOException {
+        output.writeByte(status);
+        output.writeUTF(message.length() > MAX_MESSAGE_LENGTH ? message.substring(0, MAX_MESSAGE_LENGTH) : message);
+        output.flush();
+    }
+
+    private static String describe(Throwable throwable) {
+        StringBuilder message = new StringBuilder(String.valueOf(throwable.getMessage()));
+        for (Throwable cause = throwable.getCause(); cause != null; cause = cause.getCause()) {
+            message.append("; caused by: ").append(cause);
+        }
+        return message.toString();
+    }
+
+    /**
+     * Hands a build to the daemon listening on a port, sending the token of
+     * the token file of the port
+     *
+     * @param port the port of the daemon
+     * @param args the command line arguments, with resolved paths
+     * @return A boolean <code>true</code> if the daemon ran the build,
+     *         <code>false</code> if no daemon could run it
+     * @throws InvalidLinksException if the daemon ran the build and links are
+     *             invalid
+     * @throws BuildFailedException if the daemon ran the build and it failed
+     *             otherwise
+     */
+    public static boolean build(int port, String[] args) {
+        return build(port, tokenFile(port), args);
+    }
+
+    /**
+     * Hands a build to the daemon listening on a port, sending the token of a
+     * token file
+     *
+     * @param port the port of the daemon
+     * @param tokenFile the token File written by the daemon
+     * @param args the command line arguments, with resolved paths
+     * @return A boolean <code>true</code> if the daemon ran the build,
+     *         <code>false</code> if no daemon could run it
+     * @throws InvalidLinksException if the daemon ran the build and links are
+     *             invalid
+     * @throws BuildFailedException if the daemon ran the build and it failed
+     *             otherwise, or refused it
+     */
+    public static boolean build(int port, File tokenFile, String[] args) {
+        Socket socket = new Socket();
+        try {
+            try {
+                socket.connect(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), CONNECT_TIMEOUT);
+            } catch (IOException e) {
+                // no daemon listening
+                return false;
+            }
+            String token;
+            try {
+                token = FileUtils.readFileToString(tokenFile, "UTF-8");
+            } catch (IOException e) {
+                System.err.println("Cannot read token file " + tokenFile + " of build daemon on port " + port
+                        + ", building in-process: " + e.getMessage());
+                return false;
+            }
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            output.writeUTF(BUILD);
+            output.writeUTF(token);
+            output.flush();
+            DataInputStream input = new DataInputStream(socket.getInputStream());
+            byte status = input.readByte();
+            if (status == ACCEPTED) {
+                output.writeInt(args.length);
+                for (String arg : args) {
+                    output.writeUTF(arg);
+                }
+                output.flush();
+                status = input.readByte();
+            }
+            String message = input.readUTF();
+            if (status == INVALID_LINKS) {
+                throw new InvalidLinksException(message);
+            }
+            if (status != SUCCEEDED) {
+                throw new BuildFailedException(message);
+            }
+            return true;
+        } catch (IOException e) {
+            System.err.println("Lost build daemon on port " + port + ", building in-process: " + e.getMessage());
+            return false;
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    @SuppressWarnings("serial")
+    public static class BuildFailedException extends RuntimeException {
+        public BuildFailedException(String message) {
+            super(message);
+        }
+    }
+
+}
@@ -0,0 +1,482 @@
+package org.codehaus.xsite;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes a build of a site, as run by a {@link BuildRunner}. The sitemap,
+ * skin and resource paths are relative to the source directory, or to the
+ * templates directory for the skin if given. For each localisation, a path is
+ * first looked up in the subdirectory of the language, falling back to the
+ * path of the default language, and the site is built into the subdirectory of
+ * the language in the output directory.
+ *
+ * @author Mauro Talevi
+ */
+public class BuildRequest {
+
+    private static final String XSITE_COMPOSITION = "xsite.xml";
+
+    private final File sourceDirectory;
+    private final String sitemapPath;
+    private String skinPath;
+    private File templatesDirectory;
+    private String[] resourcePaths = new String[0];
+    private File outputDirectory;
+    private String[] localisations = new String[0];
+    private String compositionFilePath;
+    private String compositionResourcePath;
+    private String xsiteFactoryClassName;
+    private final Map<String, Object> customProperties = new HashMap<String, Object>();
+    private int threads;
+    private boolean incremental;
+    private boolean syncResources;
+    private boolean compareResourceContent;
+    private boolean deleteStaleResources;
+    private int localisationThreads;
+    private boolean shareResources;
+    private String shard;
+    private boolean verifyOnly;
+    private boolean mergeShards;
+
+    /**
+     * Creates a BuildRequest
+     *
+     * @param sourceDirectory the source directory
+     * @param sitemapPath the sitemap path, relative to the source directory
+     */
+    public BuildRequest(File sourceDirectory, String sitemapPath) {
+        this.sourceDirectory = sourceDirectory;
+        this.sitemapPath = sitemapPath;
+        this.customProperties.put("publishedDate", new Date());
+        this.customProperties.put("publishedVersion", "N/A");
+    }
+
+    public File getSourceDirectory() {
+        return sourceDirectory;
+    }
+
+    public String getSitemapPath() {
+        return sitemapPath;
+    }
+
+    public String getSkinPath() {
+        return skinPath;
+    }
+
+    public void setSkinPath(String skinPath) {
+        this.skinPath = skinPath;
+    }
+
+    public File getTemplatesDirectory() {
+        return templatesDirectory;
+    }
+
+    public void setTemplatesDirectory(File templatesDirectory) {
+        this.templatesDirectory = templatesDirectory;
+    }
+
+    public String[] getResourcePaths() {
+        return resourcePaths;
+    }
+
+    public void setResourcePaths(String[] resourcePaths) {
+        this.resourcePaths = resourcePaths;
+    }
+
+    public File getOutputDirectory() {
+        return outputDirectory;
+    }
+
+    public void setOutputDirectory(File outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    public String[] getLocalisations() {
+        return localisations;
+    }
+
+    public void setLocalisations(String[] localisations) {
+        this.localisations = localisations;
+    }
+
+    public String getCompositionFilePath() {
+        return compositionFilePath;
+    }
+
+    /**
+     * Sets the composition file, instead of the default composition
+     *
+     * @param compositionFilePath the path of the composition file, relative
+     *            to the source directory
+     */
+    public void setCompositionFilePath(String compositionFilePath) {
+        this.compositionFilePath = compositionFilePath;
+    }
+
+    public String getCompositionResourcePath() {
+        return compositionResourcePath;
+    }
+
+    /**
+     * Sets the composition resource, instead of the default composition
+     *
+     * @param compositionResourcePath the path of the composition resource in
+     *            the classpath
+     */
+    public void setCompositionResourcePath(String compositionResourcePath) {
+        this.compositionResourcePath = compositionResourcePath;
+    }
+
+    public String getXSiteFactoryClassName() {
+        return xsiteFactoryClassName;
+    }
+
+    public void setXSiteFactoryClassName(String xsiteFactoryClassName) {
+        this.xsiteFactoryClassName = xsiteFactoryClassName;
+    }
+
+    /**
+     * Returns the custom properties passed to the skin, which hold the
+     * published date and version
+     *
+     * @return The Map of custom properties
+     */
+    public Map<String, Object> getCustomProperties() {
+        return customProperties;
+    }
+
+    public void setPublishedDate(String publishedDate) {
+        customProperties.put("publishedDate", publishedDate);
+    }
+
+    public void setPublishedVersion(String publishedVersion) {
+        customProperties.put("publishedVersion", publishedVersion);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Sets the number of threads extracting and skinning pages
+     *
+     * @param threads the number of threads, or 0 to keep the number of the
+     *            composition
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public boolean isSyncResources() {
+        return syncResources;
+    }
+
+    public void setSyncResources(boolean syncResources) {
+        this.syncResources = syncResources;
+    }
+
+    public boolean isCompareResourceContent() {
+        return compareResourceContent;
+    }
+
+    /**
+     * Sets whether resources are synchronised comparing their content rather
+     * than their size and modification time
+     *
+     * @param compareResourceContent the boolean flag, which implies
+     *            synchronising resources
+     */
+    public void setCompareResourceContent(boolean compareResourceContent) {
+        this.compareResourceContent = compareResourceContent;
+    }
+
+    public boolean isDeleteStaleResources() {
+        return deleteStaleResources;
+    }
+
+    /**
+     * Sets whether files of the output directory which are no longer resources
+     * nor pages are deleted when synchronising resources
+     *
+     * @param deleteStaleResources the boolean flag, which implies
+     *            synchronising resources
+     */
+    public void setDeleteStaleResources(boolean deleteStaleResources) {
+        this.deleteStaleResources = deleteStaleResources;
+    }
+
+    public int getLocalisationThreads() {
+        return localisationThreads;
+    }
+
+    /**
+     * Sets the number of sites of the default language and of the
+     * localisations built at the same time
+     *
+     * @param localisationThreads the number of threads, or 0 to keep the
+     *            number of the composition
+     */
+    public void setLocalisationThreads(int localisationThreads) {
+        this.localisationThreads = localisationThreads;
+    }
+
+    public boolean isShareResources() {
+        return shareResources;
+    }
+
+    public void setShareResources(boolean shareResources) {
+        this.shareResources = shareResources;
+    }
+
+    public String getShard() {
+        return shard;
+    }
+
+    /**
+     * Sets the shard built, so that only its pages are skinned
+     *
+     * @param shard the shard, written as <code>index/count</code>, or
+     *            <code>null</code> to build the whole site
+     * @see Shard
+     */
+    public void setShard(String shard) {
+        this.shard = shard;
+    }
+
+    /**
+     * Determines if only the links of the sitemaps are verified, without
+     * copying resources or skinning pages. The skin and output directory are
+     * then not required.
+     *
+     * @return A boolean <code>true</code> if only verifying links
+     */
+    public boolean isVerifyOnly() {
+        return verifyOnly;
+    }
+
+    public void setVerifyOnly(boolean verifyOnly) {
+        this.verifyOnly = verifyOnly;
+    }
+
+    /**
+     * Determines if the manifests written by the shards of a sharded build
+     * into the output directory are merged, verifying the links of the whole
+     * site, instead of building. The skin is then not required.
+     *
+     * @return A boolean <code>true</code> if merging shards
+     */
+    public boolean isMergeShards() {
+        return mergeShards;
+    }
+
+    public void setMergeShards(boolean mergeShards) {
+        this.mergeShards = mergeShards;
+    }
+
+    /**
+     * Applies the settings requested to a configuration, leaving the settings
+     * not requested as they are
+     *
+     * @param configuration the XSiteConfiguration
+     */
+    public void configure(XSiteConfiguration configuration) {
+        if (threads > 0) {
+            configuration.setThreads(threads);
+        }
+        if (incremental) {
+            configuration.setIncremental(true);
+        }
+        if (syncResources || compareResourceContent || deleteStaleResources) {
+            configuration.setSyncResources(true);
+        }
+        if (compareResourceContent) {
+            configuration.setCompareResourceContent(true);
+        }
+        if (deleteStaleResources) {
+            configuration.setDeleteStaleResources(true);
+        }
+        if (localisationThreads > 0) {
+            configuration.setLocalisationThreads(localisationThreads);
+        }
+        if (shareResources) {
+            configuration.setShareResources(true);
+        }
+        if (shard != null) {
+            configuration.setShard(Shard.parse(shard));
+        }
+    }
+
+    /**
+     * Returns the sitemap file of a language
+     *
+     * @param language the language, or <code>null</code> for the default
+     *            language
+     * @return The sitemap File
+     */
+    public File getSitemapFile(String language) {
+        return getFile(sourceDirectory, language, sitemapPath);
+    }
+
+    /**
+     * Returns the skin file of a language
+     *
+     * @param language the language, or <code>null</code> for the default
+     *            language
+     * @return The skin File
+     */
+    public File getSkinFile(String language) {
+        return getFile(templatesDirectory != null ? templatesDirectory : sourceDirectory, language, skinPath);
+    }
+
+    /**
+     * Returns the resource directories of a language
+     *
+     * @param language the language, or <code>null</code> for the default
+     *            language
+     * @return The resource directories
+     */
+    public File[] getResourceDirs(String language) {
+        File[] resourceDirs = new File[resourcePaths.length];
+        for (int i = 0; i < resourcePaths.length; i++) {
+            resourceDirs[i] = getFile(sourceDirectory, language, resourcePaths[i]);
+        }
+        return resourceDirs;
+    }
+
+    /**
+     * Returns the output directory of a language
+     *
+     * @param language the language, or <code>null</code> for the default
+     *            language
+     * @return The output directory
+     */
+    public File getOutputDirectory(String language) {
+        return language != null ? new File(outputDirectory, language) : outputDirectory;
+    }
+
+    /**
+     * Returns the URL of the composition, i.e. of the composition file or
+     * resource if set, or else of the default composition
+     *
+     * @return The composition URL, or <code>null</code> if the composition
+     *         file or resource does not exist
+     * @throws MalformedURLException
+     */
+    public URL getCompositionURL() throws MalformedURLException {
+        if (compositionFilePath != null) {
+            File file = new File(sourceDirectory, compositionFilePath);
+            return file.exists() ? file.toURL() : null;
+        } else if (compositionResourcePath != null) {
+            return Thread.currentThread().getContextClassLoader().getResource(compositionResourcePath);
+        }
+        return Main.class.getResource(XSITE_COMPOSITION);
+    }
+
+    /**
+     * Returns the command line arguments equivalent to this request
+     *
+     * @return The arguments
+     */
+    public String[] toArgs() {
+        List<String> args = new ArrayList<String>();
+        args.add("-S" + sourceDirectory.getPath());
+        args.add("-m" + sitemapPath);
+        if (skinPath != null) {
+            args.add("-s" + skinPath);
+        }
+        if (outputDirectory != null) {
+            args.add("-o" + outputDirectory.getPath());
+        }
+        if (resourcePaths.length > 0) {
+            args.add("-R" + join(resourcePaths));
+        }
+        if (templatesDirectory != null) {
+            args.add("-T" + templatesDirectory.getPath());
+        }
+        if (localisations.length > 0) {
+            args.add("-L" + join(localisations));
+        }
+        if (compositionFilePath != null) {
+            args.add("-f" + compositionFilePath);
+        }
+        if (compositionResourcePath != null) {
+            args.add("-r" + compositionResourcePath);
+        }
+        if (xsiteFactoryClassName != null) {
+            args.add("-x" + xsiteFactoryClassName);
+        }
+        Object publishedDate = customProperties.get("publishedDate");
+        if (publishedDate instanceof String) {
+            args.add("-D" + publishedDate);
+        }
+        args.add("-V" + customProperties.get("publishedVersion"));
+        if (threads > 0) {
+            args.add("-j" + threads);
+        }
+        if (incremental) {
+            args.add("-i");
+        }
+        if (syncResources) {
+            args.add("-u");
+        }
+        if (compareResourceContent) {
+            args.add("-H");
+        }
+        if (deleteStaleResources) {
+            args.add("-e");
+        }
+        if (localisationThreads > 0) {
+            args.add("-g" + localisationThreads);
+        }
+        if (shareResources) {
+            args.add("-b");
+        }
+        if (shard != null) {
+            args.add("-n" + shard);
+        }
+        if (verifyOnly) {
+            args.add("-k");
+        }
+        if (mergeShards) {
+            args.add("-M");
+        }
+        return args.toArray(new String[args.size()]);
+    }
+
+    private static File getFile(File directory, String language, String relativePath) {
+        if (language != null) {
+            File languageFile = new File(new File(directory, language), relativePath);
+            if (languageFile.exists()) {
+                return languageFile;
+            }
+        }
+        return new File(directory, relativePath);
+    }
+
+    private static String join(String[] values) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(values[i]);
+        }
+        return sb.toString();
+    }
+
+}
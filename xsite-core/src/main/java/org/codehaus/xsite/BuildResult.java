@@ -0,0 +1,170 @@
+package org.codehaus.xsite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.xsite.validators.LinkReport;
+
+/**
+ * Holds the outcome of a build: the time spent in each phase and the number of
+ * sites, pages and resources processed, summed over the sites built. Phases
+ * may overlap when building concurrently, e.g. resources are copied while
+ * pages are skinned. Results can be updated concurrently.
+ *
+ * @author Mauro Talevi
+ */
+public class BuildResult {
+
+    public static final String LOAD = "load";
+    public static final String RESOURCES = "resources";
+    public static final String SKIN = "skin";
+    public static final String VERIFY = "verify";
+
+    private final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+    private final CopyStatistics resourceStatistics = new CopyStatistics();
+    private final List<LinkReport> linkReports = new ArrayList<LinkReport>();
+    private int sites;
+    private int pages;
+    private int skinnedPages;
+    private int writtenPages;
+    private boolean daemon;
+
+    /**
+     * Adds the time spent in a phase
+     *
+     * @param phase the name of the phase
+     * @param startTime the start time of the phase, in milliseconds
+     */
+    public synchronized void addTiming(String phase, long startTime) {
+        Long timing = timings.get(phase);
+        long elapsed = System.currentTimeMillis() - startTime;
+        timings.put(phase, Long.valueOf(timing != null ? timing.longValue() + elapsed : elapsed));
+    }
+
+    /**
+     * Returns the time spent in each phase, in the order the phases started
+     *
+     * @return The Map of phase names to times, in milliseconds
+     */
+    public synchronized Map<String, Long> getTimings() {
+        return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(timings));
+    }
+
+    /**
+     * Returns the time spent in a phase
+     *
+     * @param phase the name of the phase
+     * @return The time in milliseconds, or 0 if the phase was not run
+     */
+    public synchronized long getTiming(String phase) {
+        Long timing = timings.get(phase);
+        return timing != null ? timing.longValue() : 0;
+    }
+
+    /**
+     * Returns the statistics of the resources synchronised, if synchronising
+     * resources
+     *
+     * @return The CopyStatistics
+     */
+    public CopyStatistics getResourceStatistics() {
+        return resourceStatistics;
+    }
+
+    public synchronized void addLinkReport(LinkReport report) {
+        linkReports.add(report);
+    }
+
+    public synchronized List<LinkReport> getLinkReports() {
+        return new ArrayList<LinkReport>(linkReports);
+    }
+
+    /**
+     * Determines if the links of all sites verified are valid
+     *
+     * @return A boolean <code>true</code> if no link is invalid
+     */
+    public synchronized boolean isValid() {
+        for (LinkReport report : linkReports) {
+            if (!report.isValid()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a site built or verified
+     *
+     * @param pages the number of pages in the sitemap
+     */
+    public synchronized void addSite(int pages) {
+        this.sites++;
+        this.pages += pages;
+    }
+
+    /**
+     * Adds pages skinned
+     *
+     * @param skinned the number of pages skinned
+     * @param written the number of pages written, i.e. skinned and changed
+     */
+    public synchronized void addSkinnedPages(int skinned, int written) {
+        this.skinnedPages += skinned;
+        this.writtenPages += written;
+    }
+
+    public synchronized int getSites() {
+        return sites;
+    }
+
+    public synchronized int getPages() {
+        return pages;
+    }
+
+    public synchronized int getSkinnedPages() {
+        return skinnedPages;
+    }
+
+    public synchronized int getWrittenPages() {
+        return writtenPages;
+    }
+
+    /**
+     * Determines if the build was handed to the build daemon, in which case
+     * the daemon reports its timings and counts
+     *
+     * @return A boolean <code>true</code> if built by the daemon
+     */
+    public synchronized boolean isDaemon() {
+        return daemon;
+    }
+
+    public synchronized void setDaemon(boolean daemon) {
+        this.daemon = daemon;
+    }
+
+    public synchronized String toString() {
+        if (daemon) {
+            return "Built by the build daemon";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Built ").append(sites).append(sites == 1 ? " site" : " sites").append(" of ").append(pages)
+                .append(" pages: skinned ").append(skinnedPages).append(", wrote ").append(writtenPages);
+        if (resourceStatistics.getCopiedFiles() + resourceStatistics.getSkippedFiles()
+                + resourceStatistics.getDeletedFiles() > 0) {
+            sb.append("; ").append(resourceStatistics);
+        }
+        if (!timings.isEmpty()) {
+            sb.append("; times:");
+            for (Map.Entry<String, Long> timing : timings.entrySet()) {
+                sb.append(' ').append(timing.getKey()).append(' ').append(timing.getValue()).append(" ms");
+            }
+        }
+        return sb.toString();
+    }
+
+}
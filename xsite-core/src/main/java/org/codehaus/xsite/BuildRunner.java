@@ -0,0 +1,84 @@
+package org.codehaus.xsite;
+
+import java.io.IOException;
+
+import org.codehaus.xsite.validators.LinkChecker.InvalidLinksException;
+
+/**
+ * Runs builds described by a {@link BuildRequest}, for the front ends running
+ * XSite in-process such as the Ant task and the Maven plugin. The XSite of
+ * each composition is created once and kept for the following builds in the
+ * same JVM. Builds using the same XSite are run one at a time.
+ * <p>
+ * If the system property {@value BuildDaemon#PORT_PROPERTY} is set and a
+ * build daemon is listening on its port, the build is handed to the daemon.
+ * </p>
+ *
+ * @author Mauro Talevi
+ */
+public class BuildRunner {
+
+    private static final XSiteCache SHARED_XSITES = new XSiteCache();
+
+    private final XSiteCache xsites;
+
+    /**
+     * Creates a BuildRunner sharing the XSite instances of the JVM
+     */
+    public BuildRunner() {
+        this(SHARED_XSITES);
+    }
+
+    /**
+     * Creates a BuildRunner
+     *
+     * @param xsites the XSiteCache holding the XSite instances
+     */
+    public BuildRunner(XSiteCache xsites) {
+        this.xsites = xsites;
+    }
+
+    /**
+     * Runs a build
+     *
+     * @param request the BuildRequest
+     * @return The BuildResult
+     * @throws IOException
+     * @throws InvalidLinksException if links are invalid
+     */
+    public BuildResult run(BuildRequest request) throws IOException {
+        Integer port = Integer.getInteger(BuildDaemon.PORT_PROPERTY);
+        if (port != null) {
+            String[] args = Main.daemonArgs(request.toArgs());
+            if (args != null && BuildDaemon.build(port.intValue(), args)) {
+                BuildResult result = new BuildResult();
+                result.setDaemon(true);
+                return result;
+            }
+        }
+        XSite xsite = xsites.get(Main.instantiateXSiteFactory(request.getXSiteFactoryClassName()), request
+                .getCompositionURL());
+        synchronized (xsite) {
+            xsites.restore(xsite);
+            request.configure(xsite.getConfiguration());
+            return build(xsite, request);
+        }
+    }
+
+    /**
+     * Builds the sites of the default language and of the localisations, or
+     * only verifies their links or merges their shards, as many at the same
+     * time as configured
+     *
+     * @param xsite the configured XSite
+     * @param request the BuildRequest
+     * @return The BuildResult
+     * @throws IOException
+     * @throws InvalidLinksException if links are invalid
+     * @see LocalisationBuilder
+     */
+    static BuildResult build(XSite xsite, BuildRequest request) throws IOException {
+        return new LocalisationBuilder(xsite, request).build();
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.codehaus.xsite;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.xsite.model.Page;
+import org.codehaus.xsite.model.Sitemap;
+
+/**
+ * The changes made to the sources of a site between two polls of its
+ * {@link SiteSources}, and the pages extracted again from the changed pages.
+ *
+ * @author Mauro Talevi
+ */
+class ChangeSet {
+
+    private boolean sitemapChanged;
+    private boolean skinChanged;
+    private final List<File> pages = new ArrayList<File>();
+    private final Map<File, String> resources = new LinkedHashMap<File, String>();
+    private final List<Page> replacedPages = new ArrayList<Page>();
+    private boolean navigationChanged;
+
+    void sitemapChanged() {
+        sitemapChanged = true;
+    }
+
+    void skinChanged() {
+        skinChanged = true;
+    }
+
+    void addPage(File file) {
+        pages.add(file);
+    }
+
+    void addResource(File file, String relativePath) {
+        resources.put(file, relativePath);
+    }
+
+    boolean isSitemapChanged() {
+        return sitemapChanged;
+    }
+
+    /**
+     * Determines if the skin changed, i.e. the skin file or any other file in
+     * its directory
+     */
+    boolean isSkinChanged() {
+        return skinChanged;
+    }
+
+    List<File> getChangedPages() {
+        return pages;
+    }
+
+    /**
+     * Returns the changed resources
+     *
+     * @return The Map of the changed resource files to their paths relative
+     *         to their resource directory
+     */
+    Map<File, String> getChangedResources() {
+        return resources;
+    }
+
+    /**
+     * Determines if the whole sitemap must be loaded again, i.e. if it changed
+     * or if pages changed and cannot be extracted again on their own
+     *
+     * @param extractor the PageExtractor, or <code>null</code> if none
+     */
+    boolean requiresSitemap(PageExtractor extractor) {
+        return sitemapChanged || (!pages.isEmpty() && extractor == null);
+    }
+
+    /**
+     * Extracts the changed pages again, replacing them in a sitemap. Deleted
+     * pages are reported and left in the sitemap.
+     *
+     * @param sitemap the Sitemap
+     * @param extractor the PageExtractor
+     * @return The Sitemap with the replaced pages
+     */
+    Sitemap replacePages(Sitemap sitemap, PageExtractor extractor) {
+        for (File file : pages) {
+            Page previous = sitemap.getPage(file.getName());
+            if (!file.exists()) {
+                // a page listed in the sitemap was deleted
+                System.err.println("Missing page " + file);
+                continue;
+            }
+            Page page = extractor.extractPage(file);
+            sitemap = sitemap.replacePage(page);
+            navigationChanged |= !equal(previous.getTitle(), page.getTitle()) || !equal(previous.getId(), page.getId());
+            replacedPages.add(page);
+        }
+        return sitemap;
+    }
+
+    List<Page> getReplacedPages() {
+        return replacedPages;
+    }
+
+    /**
+     * Determines if the title or id of a replaced page changed, as the
+     * navigation of every page lists them
+     */
+    boolean isNavigationChanged() {
+        return navigationChanged;
+    }
+
+    private static boolean equal(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
+}
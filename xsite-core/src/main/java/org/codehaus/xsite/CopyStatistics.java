@@ -0,0 +1,57 @@
+package org.codehaus.xsite;
+
+/**
+ * Counts the files processed when synchronising directories. Counts can be
+ * updated concurrently.
+ * 
+ * @author Mauro Talevi
+ */
+public class CopyStatistics {
+
+    private int copiedFiles;
+    private long copiedBytes;
+    private int skippedFiles;
+    private int deletedFiles;
+
+    public synchronized void copied(long bytes) {
+        copiedFiles++;
+        copiedBytes += bytes;
+    }
+
+    public synchronized void skipped() {
+        skippedFiles++;
+    }
+
+    public synchronized void deleted() {
+        deletedFiles++;
+    }
+
+    public synchronized void add(CopyStatistics statistics) {
+        copiedFiles += statistics.getCopiedFiles();
+        copiedBytes += statistics.getCopiedBytes();
+        skippedFiles += statistics.getSkippedFiles();
+        deletedFiles += statistics.getDeletedFiles();
+    }
+
+    public synchronized int getCopiedFiles() {
+        return copiedFiles;
+    }
+
+    public synchronized long getCopiedBytes() {
+        return copiedBytes;
+    }
+
+    public synchronized int getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    public synchronized int getDeletedFiles() {
+        return deletedFiles;
+    }
+
+    public synchronized String toString() {
+        return "Copied " + copiedFiles + " files (" + copiedBytes + " bytes), skipped " + skippedFiles
+                + " unchanged files, deleted " + deletedFiles + " stale files";
+    }
+
+}
@@ -1,6 +1,7 @@
 package org.codehaus.xsite;
 
 import java.io.File;
+import java.nio.charset.Charset;
 
 /**
  * Handles filesystem operations
@@ -11,8 +12,35 @@ public interface FileSystem {
 
     String readFile(File file);
 
+    /**
+     * Reads the content of a file into an array of characters
+     * 
+     * @param file the File to read
+     * @param charset the Charset used to decode the content
+     * @return The array of characters, of the exact length of the content
+     */
+    char[] readChars(File file, Charset charset);
+
     void copyFile(File source, File destination);
 
     void copyDirectory(File sourceDirectory, File targetDirectory, boolean recurse);
 
+    /**
+     * Copies only the files of the source directory which are new or changed
+     * with respect to the target directory. Files are considered unchanged if
+     * they have the same size and modification time, or the same content.
+     * 
+     * @param sourceDirectory the source directory
+     * @param targetDirectory the target directory
+     * @param recurse if <code>true</code> recurses into sub-directories
+     * @param compareContent if <code>true</code> compares the content rather
+     *            than the modification time of files of the same size
+     * @param deleteStale if <code>true</code> deletes the files previously
+     *            synchronised from the source directory which no longer exist
+     *            in it
+     * @return The CopyStatistics
+     */
+    CopyStatistics syncDirectory(File sourceDirectory, File targetDirectory, boolean recurse, boolean compareContent,
+            boolean deleteStale);
+
 }
@@ -0,0 +1,20 @@
+package org.codehaus.xsite;
+
+/**
+ * A PageExtractor which fingerprints the configuration it extracts pages with,
+ * so that pages extracted with a different configuration, e.g. kept in a
+ * snapshot, are not reused.
+ * 
+ * @author Mauro Talevi
+ */
+public interface FingerprintedPageExtractor extends PageExtractor {
+
+    /**
+     * Returns the fingerprint of the configuration
+     * 
+     * @return The fingerprint, which is the same for extractors configured
+     *         alike
+     */
+    String getFingerprint();
+
+}
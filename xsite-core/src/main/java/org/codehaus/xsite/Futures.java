@@ -0,0 +1,63 @@
+package org.codehaus.xsite;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Waits for the results of the tasks run concurrently by builds, rethrowing
+ * their failures as if the tasks had been run by the waiting thread.
+ *
+ * @author Mauro Talevi
+ */
+public class Futures {
+
+    private Futures() {
+    }
+
+    /**
+     * Waits for the result of a task
+     *
+     * @param future the Future of the task
+     * @param task the description of the task, e.g. "building site"
+     * @return The result of the task
+     * @throws RuntimeException the failure of the task, wrapping it if checked,
+     *             or if interrupted while waiting
+     */
+    public static <T> T await(Future<T> future, String task) {
+        return await(future, RuntimeException.class, task);
+    }
+
+    /**
+     * Waits for the result of a task which may fail with a checked exception.
+     * Failures of that type, unchecked exceptions and errors are rethrown as
+     * they are, other failures wrapped in a RuntimeException. If interrupted,
+     * the interrupt status of the thread is restored.
+     *
+     * @param future the Future of the task
+     * @param failureType the type of the checked failures rethrown as they are
+     * @param task the description of the task, e.g. "building site"
+     * @return The result of the task
+     * @throws E the failure of the task
+     */
+    public static <T, E extends Exception> T await(Future<T> future, Class<E> failureType, String task) throws E {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (failureType.isInstance(cause)) {
+                throw failureType.cast(cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("Failed " + task, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while " + task, e);
+        }
+    }
+
+}
@@ -0,0 +1,162 @@
+package org.codehaus.xsite;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.codehaus.xsite.model.ResourcesRoot;
+import org.codehaus.xsite.validators.LinkChecker.InvalidLinksException;
+
+/**
+ * Builds the sites of the default language and of the localisations of a
+ * {@link BuildRequest}, as many at the same time as the configured number of
+ * localisation threads, on a pool shared by all sites. The sites share the
+ * templates parsed by the skin of the XSite, so each distinct skin file is
+ * parsed once, and the sitemap loader and link cache of the XSite. Unless the
+ * skin is a {@link RenderingSkin}, it is loaded in place, so the sites are
+ * built one at a time.
+ * <p>
+ * If sharing resources, the resource directories of a localisation which are
+ * the same as those of the default language are only copied to the output
+ * directory of the default language, and the skins of the localisations are
+ * passed the path to it as the {@link ResourcesRoot} of their pages.
+ * </p>
+ * <p>
+ * Failures are reported in the order of the sites, so the site reported is the
+ * same one a serial build would have stopped at.
+ * </p>
+ * <p>
+ * The sites are only verified, or the manifests of their shards only merged
+ * and verified, if so requested.
+ * </p>
+ *
+ * @author Mauro Talevi
+ */
+class LocalisationBuilder {
+
+    private final XSite xsite;
+    private final BuildRequest request;
+
+    LocalisationBuilder(XSite xsite, BuildRequest request) {
+        this.xsite = xsite;
+        this.request = request;
+    }
+
+    /**
+     * Builds the sites, or only verifies their links or merges their shards
+     *
+     * @return The BuildResult
+     * @throws IOException
+     * @throws InvalidLinksException if links are invalid
+     */
+    BuildResult build() throws IOException {
+        final BuildResult result = new BuildResult();
+        List<Callable<Object>> sites = new ArrayList<Callable<Object>>();
+        sites.add(site(null, result));
+        for (String language : request.getLocalisations()) {
+            sites.add(site(language, result));
+        }
+        int threads = xsite.getSkin() instanceof RenderingSkin ? Math.min(xsite.getConfiguration()
+                .getLocalisationThreads(), sites.size()) : 1;
+        if (threads > 1) {
+            buildConcurrently(sites, threads);
+        } else {
+            for (Callable<Object> site : sites) {
+                call(site);
+            }
+        }
+        if ((request.isVerifyOnly() || request.isMergeShards()) && !result.isValid()) {
+            throw new InvalidLinksException(result.getLinkReports());
+        }
+        return result;
+    }
+
+    private Callable<Object> site(final String language, final BuildResult result) {
+        return new Callable<Object>() {
+            public Object call() throws IOException {
+                if (request.isVerifyOnly()) {
+                    xsite.verify(request.getSitemapFile(language), result);
+                } else if (request.isMergeShards()) {
+                    xsite.mergeShards(request.getOutputDirectory(language), result);
+                } else {
+                    xsite.build(request.getSitemapFile(language), request.getSkinFile(language),
+                            resourceDirs(language), request.getOutputDirectory(language),
+                            customProperties(language), result);
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Returns the resource directories copied to the output directory of a
+     * language, i.e. all of them unless sharing resources
+     */
+    private File[] resourceDirs(String language) {
+        File[] resourceDirs = request.getResourceDirs(language);
+        if (language == null || !xsite.getConfiguration().isShareResources()) {
+            return resourceDirs;
+        }
+        List<File> languageDirs = new ArrayList<File>();
+        File[] sharedDirs = request.getResourceDirs(null);
+        for (int i = 0; i < resourceDirs.length; i++) {
+            if (!resourceDirs[i].equals(sharedDirs[i])) {
+                languageDirs.add(resourceDirs[i]);
+            }
+        }
+        return languageDirs.toArray(new File[languageDirs.size()]);
+    }
+
+    /**
+     * Returns the custom properties of a language, i.e. those of the request
+     * with, if a localisation shares resources, the root of the resources
+     * in the output directory of the default language
+     */
+    private Map<String, Object> customProperties(String language) {
+        if (language == null || !xsite.getConfiguration().isShareResources()) {
+            return request.getCustomProperties();
+        }
+        StringBuilder root = new StringBuilder("../");
+        for (int i = language.indexOf('/'); i >= 0; i = language.indexOf('/', i + 1)) {
+            root.append("../");
+        }
+        Map<String, Object> customProperties = new HashMap<String, Object>(request.getCustomProperties());
+        customProperties.put(XSite.RESOURCES_ROOT, new ResourcesRoot(root.toString()));
+        return customProperties;
+    }
+
+    private void buildConcurrently(List<Callable<Object>> sites, int threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Object>> results = new ArrayList<Future<Object>>();
+            for (Callable<Object> site : sites) {
+                results.add(executor.submit(site));
+            }
+            for (Future<Object> result : results) {
+                Futures.await(result, IOException.class, "building localisations");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void call(Callable<Object> site) throws IOException {
+        try {
+            site.call();
+        } catch (IOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
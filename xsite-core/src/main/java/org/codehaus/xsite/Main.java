@@ -6,17 +6,21 @@ import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
 import org.codehaus.xsite.factories.DefaultXSiteFactory;
+import org.codehaus.xsite.validators.LinkReport;
+import org.codehaus.xsite.validators.LinkChecker.InvalidLinksException;
 
 /**
  * Command line entry point for building XSite.
@@ -29,8 +33,6 @@ public class Main {
 
 	private static final String DEFAULT_XSITE_FACTORY = "org.codehaus.xsite.factories.PicoXSiteFactory";
 
-	private static final String XSITE_COMPOSITION = "xsite.xml";
-
 	private static final String XSITE_PROPERTIES = "xsite.properties";
 
 	private static final char HELP_OPT = 'h';
@@ -61,11 +63,94 @@ public class Main {
 
 	private static final char PUBLISHED_VERSION_OPT = 'V';
 
+	private static final char THREADS_OPT = 'j';
+
+	private static final char INCREMENTAL_OPT = 'i';
+
+	private static final char SYNC_RESOURCES_OPT = 'u';
+
+	private static final char COMPARE_RESOURCE_CONTENT_OPT = 'H';
+
+	private static final char DELETE_STALE_RESOURCES_OPT = 'e';
+
+	private static final char SNAPSHOT_OPT = 'c';
+
+	private static final char INPUT_ENCODING_OPT = 'I';
+
+	private static final char OUTPUT_ENCODING_OPT = 'E';
+
+	private static final char ATOMIC_OUTPUT_OPT = 'a';
+
+	private static final char WRITE_CHANGED_ONLY_OPT = 'w';
+
+	private static final char LOW_MEMORY_OPT = 'l';
+
+	private static final char PIPELINE_OPT = 'p';
+
+	private static final char VALIDATE_ANCHORS_OPT = 'A';
+
+	private static final char VERIFY_EXTERNAL_LINKS_OPT = 'X';
+
+	private static final char EXTERNAL_LINK_CACHE_OPT = 'C';
+
+	private static final char LOCALISATION_THREADS_OPT = 'g';
+
+	private static final char SHARE_RESOURCES_OPT = 'b';
+
+	private static final char SHARD_OPT = 'n';
+
+	private static final char VERIFY_ONLY_OPT = 'k';
+
+	private static final char MERGE_SHARDS_OPT = 'M';
+
+	private static final char WATCH_OPT = 'W';
+
+	private static final long WATCH_INTERVAL = 1000;
+
+	private static final char PREVIEW_OPT = 'P';
+
+	private final List<LinkReport> linkReports = new ArrayList<LinkReport>();
+
+	private final XSiteCache xsites;
+
 	public static final void main(String[] args) throws Exception {
+		run(args);
+	}
+
+	/**
+	 * Runs XSite, handing the build to the build daemon listening on the port
+	 * given by the system property {@value BuildDaemon#PORT_PROPERTY}, if any,
+	 * or else building in-process
+	 * 
+	 * @param args the command line arguments
+	 * @throws Exception
+	 */
+	public static void run(String[] args) throws Exception {
+		Integer port = Integer.getInteger(BuildDaemon.PORT_PROPERTY);
+		if (port != null) {
+			String[] daemonArgs = daemonArgs(args);
+			if (daemonArgs != null
+					&& BuildDaemon.build(port.intValue(), daemonArgs)) {
+				return;
+			}
+		}
 		new Main(args);
 	}
 
 	public Main(String[] args) throws Exception {
+		this(args, null);
+	}
+
+	/**
+	 * Creates a Main taking the XSite instances from a cache
+	 * 
+	 * @param args the command line arguments
+	 * @param xsites the XSiteCache, or <code>null</code> to create a new
+	 *            XSite
+	 * @throws Exception
+	 */
+	Main(String[] args, XSiteCache xsites) throws Exception {
+		this.xsites = xsites;
 		Options options = createOptions();
 		CommandLine cl = null;
 		try {
@@ -85,113 +170,232 @@ public class Main {
 				throw new RuntimeException("Invalid arguments "
 						+ cl.getArgList());
 			}
-			File sitemap = null;
-			File skin = null;
-			File[] resources = null;
-			File output = null;
-			Map<String, Object> customProperties = null;
-			try {
-				XSite xsite = instantiateXSite(cl);
-				sitemap = getSitemap(cl, null);
-				skin = getSkin(cl, null);
-				resources = getResourceDirs(cl, null);
-				output = getOutput(cl, null);
-				customProperties = getCustomProperties(cl, null);
-				xsite.build(sitemap, skin, resources, output, customProperties);
-				if (cl.hasOption(L10N_OPT)) {
-					String[] languages = cl.getOptionValue(L10N_OPT).split(",");
-					for (int l = 0; l < languages.length; l++) {
-						String language = languages[l];
-						xsite.build(getSitemap(cl, language), getSkin(cl,
-								language), getResourceDirs(cl, language),
-								getOutput(cl, language), customProperties);
-					}
-				}
-			} catch (Exception e) {
-				throw new RuntimeException(
-						"Failed to build site with sitemap '" + sitemap
-								+ "', skin '" + skin + "', resources '"
-								+ asList(resources) + "', output '" + output
-								+ "'", e);
+			if (cl.hasOption(PREVIEW_OPT) && !cl.hasOption(VERIFY_ONLY_OPT)) {
+				preview(cl);
+			} else {
+				build(cl);
 			}
 		}
 	}
 
-	private File getSitemap(CommandLine cl, String language) {
-		return getFile(cl.getOptionValue(SOURCE_OPT), language, cl
-				.getOptionValue(SITEMAP_OPT));
+	/**
+	 * Returns the reports of the links verified in verify-only mode
+	 * 
+	 * @return The List of LinkReport, one for each sitemap verified
+	 */
+	public List<LinkReport> getLinkReports() {
+		return linkReports;
 	}
 
-	private File getSkin(CommandLine cl, String language) {
-		String sourcePath = cl.getOptionValue(SOURCE_OPT);
-		if (cl.hasOption(TEMPLATES_OPT)) {
-			sourcePath = cl.getOptionValue(TEMPLATES_OPT);
+	private void build(CommandLine cl) {
+		BuildRequest request = createRequest(cl);
+		try {
+			XSite xsite = instantiateXSite(cl);
+			configure(xsite.getConfiguration(), cl);
+			if (!cl.hasOption(WATCH_OPT) || request.isVerifyOnly()) {
+				System.out.println(run(xsite, request));
+				return;
+			}
+			// the localised sites are built once, only the default one is watched
+			for (String language : request.getLocalisations()) {
+				xsite.build(request.getSitemapFile(language), request
+						.getSkinFile(language), request
+						.getResourceDirs(language), request
+						.getOutputDirectory(language), request
+						.getCustomProperties());
+			}
+			new SiteWatcher(xsite, request.getSitemapFile(null), request
+					.getSkinFile(null), request.getResourceDirs(null), request
+					.getOutputDirectory(null), request.getCustomProperties())
+					.watch(WATCH_INTERVAL);
+		} catch (InvalidLinksException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to build site with sitemap '"
+					+ request.getSitemapFile(null) + "', skin '"
+					+ request.getSkinFile(null) + "', resources '"
+					+ asList(request.getResourceDirs(null)) + "', output '"
+					+ request.getOutputDirectory(null) + "'", e);
 		}
-		return getFile(sourcePath, language, cl.getOptionValue(SKIN_OPT));
 	}
 
-	private File getOutput(CommandLine cl, String language) {
-		if (language != null) {
-			return new File(cl.getOptionValue(OUTPUT_OPT) + File.separator
-					+ language);
+	/**
+	 * Serves the site of the default language until the process is
+	 * interrupted, skinning pages when requested
+	 */
+	private void preview(CommandLine cl) {
+		BuildRequest request = createRequest(cl);
+		try {
+			XSite xsite = instantiateXSite(cl);
+			configure(xsite.getConfiguration(), cl);
+			PreviewServer server = new PreviewServer(xsite, request
+					.getSitemapFile(null), request.getSkinFile(null), request
+					.getResourceDirs(null), request.getCustomProperties());
+			server.start(Integer.parseInt(cl.getOptionValue(PREVIEW_OPT)));
+			System.out.println("Previewing site at http://localhost:"
+					+ server.getPort() + "/");
+			server.join();
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to preview site with sitemap '"
+					+ request.getSitemapFile(null) + "'", e);
 		}
-		return new File(cl.getOptionValue(OUTPUT_OPT));
 	}
 
-	private File[] getResourceDirs(CommandLine cl, String language) {
-		if (!cl.hasOption(RESOURCES_OPT)) {
-			return new File[] {};
-		}
-		String sourcePath = cl.getOptionValue(SOURCE_OPT);
-		String[] resourcePaths = cl.getOptionValue(RESOURCES_OPT).split(",");
-		File[] resourceDirs = new File[resourcePaths.length];
-		for (int i = 0; i < resourcePaths.length; i++) {
-			resourceDirs[i] = getFile(sourcePath, language, resourcePaths[i]);
+	/**
+	 * Runs the build, or only verifies the links of the sitemaps, including
+	 * the localised ones, keeping the reports of the links verified
+	 * 
+	 * @throws InvalidLinksException if any link is invalid
+	 */
+	private BuildResult run(XSite xsite, BuildRequest request)
+			throws IOException {
+		try {
+			BuildResult result = BuildRunner.build(xsite, request);
+			linkReports.addAll(result.getLinkReports());
+			return result;
+		} catch (InvalidLinksException e) {
+			linkReports.addAll(e.getReports());
+			throw e;
+		} finally {
+			if (request.isVerifyOnly()) {
+				for (LinkReport report : linkReports) {
+					System.out.println(report);
+				}
+			}
 		}
-		return resourceDirs;
-	}
-
-	private Map<String, Object> getCustomProperties(CommandLine cl,
-			Object object) {
-		Map<String, Object> properties = new HashMap<String, Object>();
-		addProperty(cl, properties, "publishedDate", PUBLISHED_DATE_OPT,
-				new Date());
-		addProperty(cl, properties, "publishedVersion", PUBLISHED_VERSION_OPT,
-				"N/A");
-		return properties;
 	}
 
-	private void addProperty(CommandLine cl, Map<String, Object> properties,
-			String key, char opt, Object defaultValue) {
-		if (cl.hasOption(opt)) {
-			properties.put(key, cl.getOptionValue(opt));
-		} else {
-			properties.put(key, defaultValue);
+	private void configure(XSiteConfiguration configuration, CommandLine cl) {
+		if (cl.hasOption(THREADS_OPT)) {
+			configuration.setThreads(Integer.parseInt(cl
+					.getOptionValue(THREADS_OPT)));
+		}
+		if (cl.hasOption(INCREMENTAL_OPT)) {
+			configuration.setIncremental(true);
+		}
+		if (cl.hasOption(SYNC_RESOURCES_OPT)
+				|| cl.hasOption(COMPARE_RESOURCE_CONTENT_OPT)
+				|| cl.hasOption(DELETE_STALE_RESOURCES_OPT)) {
+			configuration.setSyncResources(true);
+		}
+		if (cl.hasOption(COMPARE_RESOURCE_CONTENT_OPT)) {
+			configuration.setCompareResourceContent(true);
+		}
+		if (cl.hasOption(DELETE_STALE_RESOURCES_OPT)) {
+			configuration.setDeleteStaleResources(true);
+		}
+		if (cl.hasOption(SNAPSHOT_OPT)) {
+			configuration.setSnapshotFile(new File(cl
+					.getOptionValue(SNAPSHOT_OPT)));
+		}
+		if (cl.hasOption(INPUT_ENCODING_OPT)) {
+			configuration.setInputEncoding(cl
+					.getOptionValue(INPUT_ENCODING_OPT));
+		}
+		if (cl.hasOption(OUTPUT_ENCODING_OPT)) {
+			configuration.setOutputEncoding(cl
+					.getOptionValue(OUTPUT_ENCODING_OPT));
+		}
+		if (cl.hasOption(ATOMIC_OUTPUT_OPT)) {
+			configuration.setAtomicOutput(true);
+		}
+		if (cl.hasOption(WRITE_CHANGED_ONLY_OPT)) {
+			configuration.setWriteChangedOnly(true);
+		}
+		if (cl.hasOption(LOW_MEMORY_OPT) || cl.hasOption(PIPELINE_OPT)) {
+			configuration.setLowMemory(true);
+		}
+		if (cl.hasOption(PIPELINE_OPT)) {
+			configuration.setPipelineDepth(Integer.parseInt(cl
+					.getOptionValue(PIPELINE_OPT)));
+		}
+		if (cl.hasOption(VALIDATE_ANCHORS_OPT)) {
+			configuration.setValidateAnchors(true);
+		}
+		if (cl.hasOption(VERIFY_EXTERNAL_LINKS_OPT)
+				|| cl.hasOption(EXTERNAL_LINK_CACHE_OPT)) {
+			configuration.setVerifyExternalLinks(true);
+		}
+		if (cl.hasOption(EXTERNAL_LINK_CACHE_OPT)) {
+			configuration.setExternalLinkCacheFile(new File(cl
+					.getOptionValue(EXTERNAL_LINK_CACHE_OPT)));
+		}
+		if (cl.hasOption(LOCALISATION_THREADS_OPT)) {
+			configuration.setLocalisationThreads(Integer.parseInt(cl
+					.getOptionValue(LOCALISATION_THREADS_OPT)));
+		}
+		if (cl.hasOption(SHARE_RESOURCES_OPT)) {
+			configuration.setShareResources(true);
+		}
+		if (cl.hasOption(SHARD_OPT)) {
+			configuration.setShard(Shard.parse(cl.getOptionValue(SHARD_OPT)));
 		}
 	}
 
-	private File getFile(String sourcePath, String language, String relativePath) {
-		if (language != null) {
-			String languagePath = sourcePath + File.separator + language
-					+ File.separator + relativePath;
-			if (new File(languagePath).exists()) {
-				return new File(languagePath);
-			}
+	/**
+	 * Creates the request of the build described by the command line
+	 */
+	static BuildRequest createRequest(CommandLine cl) {
+		BuildRequest request = new BuildRequest(new File(cl
+				.getOptionValue(SOURCE_OPT)), cl.getOptionValue(SITEMAP_OPT));
+		request.setSkinPath(cl.getOptionValue(SKIN_OPT));
+		if (cl.hasOption(TEMPLATES_OPT)) {
+			request.setTemplatesDirectory(new File(cl
+					.getOptionValue(TEMPLATES_OPT)));
+		}
+		if (cl.hasOption(RESOURCES_OPT)) {
+			request.setResourcePaths(cl.getOptionValue(RESOURCES_OPT)
+					.split(","));
+		}
+		if (cl.hasOption(OUTPUT_OPT)) {
+			request.setOutputDirectory(new File(cl.getOptionValue(OUTPUT_OPT)));
 		}
-		return new File(sourcePath + File.separator + relativePath);
+		if (cl.hasOption(L10N_OPT)) {
+			request.setLocalisations(cl.getOptionValue(L10N_OPT).split(","));
+		}
+		request.setCompositionFilePath(cl.getOptionValue(FILE_OPT));
+		request.setCompositionResourcePath(cl.getOptionValue(RESOURCE_OPT));
+		request.setXSiteFactoryClassName(cl.getOptionValue(XSITE_FACTORY_OPT));
+		if (cl.hasOption(PUBLISHED_DATE_OPT)) {
+			request.setPublishedDate(cl.getOptionValue(PUBLISHED_DATE_OPT));
+		}
+		if (cl.hasOption(PUBLISHED_VERSION_OPT)) {
+			request.setPublishedVersion(cl
+					.getOptionValue(PUBLISHED_VERSION_OPT));
+		}
+		request.setVerifyOnly(cl.hasOption(VERIFY_ONLY_OPT));
+		request.setMergeShards(cl.hasOption(MERGE_SHARDS_OPT));
+		return request;
 	}
 
 	private XSite instantiateXSite(CommandLine cl) throws MalformedURLException {
 		XSiteFactory factory = instantiateXSiteFactory(cl);
+		if (xsites != null) {
+			// the daemon runs one build at a time
+			XSite xsite = xsites.get(factory, getCompositionURL(cl));
+			xsites.restore(xsite);
+			return xsite;
+		}
 		Map<Class<?>, URL> config = new HashMap<Class<?>, URL>();
 		config.put(URL.class, getCompositionURL(cl));
 		return factory.createXSite(config);
 	}
 
 	private XSiteFactory instantiateXSiteFactory(CommandLine cl) {
-		String factoryClassName = DEFAULT_XSITE_FACTORY;
-		if (cl.hasOption(XSITE_FACTORY_OPT)) {
-			factoryClassName = cl.getOptionValue(XSITE_FACTORY_OPT);
+		return instantiateXSiteFactory(cl.getOptionValue(XSITE_FACTORY_OPT));
+	}
+
+	/**
+	 * Instantiates an XSiteFactory, falling back to the DefaultXSiteFactory if
+	 * the class cannot be instantiated
+	 * 
+	 * @param factoryClassName the factory class name, or <code>null</code> for
+	 *            the default factory
+	 * @return The XSiteFactory
+	 */
+	static XSiteFactory instantiateXSiteFactory(String factoryClassName) {
+		if (factoryClassName == null) {
+			factoryClassName = DEFAULT_XSITE_FACTORY;
 		}
 		try {
 			return (XSiteFactory) getClassLoader().loadClass(factoryClassName)
@@ -201,11 +405,23 @@ public class Main {
 		}
 	}
 
-	private ClassLoader getClassLoader() {
+	private static ClassLoader getClassLoader() {
 		return Thread.currentThread().getContextClassLoader();
 	}
 
 	private boolean validateOptions(CommandLine cl) {
+		if (cl.hasOption(SOURCE_OPT) && cl.hasOption(SITEMAP_OPT)
+				&& cl.hasOption(VERIFY_ONLY_OPT)) {
+			return true;
+		}
+		if (cl.hasOption(SOURCE_OPT) && cl.hasOption(SITEMAP_OPT)
+				&& cl.hasOption(OUTPUT_OPT) && cl.hasOption(MERGE_SHARDS_OPT)) {
+			return true;
+		}
+		if (cl.hasOption(SOURCE_OPT) && cl.hasOption(SITEMAP_OPT)
+				&& cl.hasOption(SKIN_OPT) && cl.hasOption(PREVIEW_OPT)) {
+			return true;
+		}
 		if (cl.hasOption(SOURCE_OPT) && cl.hasOption(SITEMAP_OPT)
 				&& cl.hasOption(SKIN_OPT) && cl.hasOption(OUTPUT_OPT)) {
 			return true;
@@ -214,20 +430,45 @@ public class Main {
 	}
 
 	static URL getCompositionURL(CommandLine cl) throws MalformedURLException {
-		URL url = null;
-		if (cl.hasOption(FILE_OPT)) {
-			File file = new File(cl.getOptionValue(SOURCE_OPT) + File.separator
-					+ cl.getOptionValue(FILE_OPT));
-			if (file.exists()) {
-				url = file.toURL();
+		return createRequest(cl).getCompositionURL();
+	}
+
+	/**
+	 * Returns the arguments of a build which can be handed to the build
+	 * daemon, with the paths resolved against the working directory
+	 * 
+	 * @return The arguments, or <code>null</code> if the daemon cannot run
+	 *         them, i.e. if they are invalid or do not request a single build
+	 */
+	static String[] daemonArgs(String[] args) {
+		CommandLine cl;
+		try {
+			cl = getCommandLine(args, createOptions());
+		} catch (ParseException e) {
+			return null;
+		}
+		if (cl.hasOption(HELP_OPT) || cl.hasOption(VERSION_OPT)
+				|| cl.hasOption(WATCH_OPT) || cl.hasOption(PREVIEW_OPT)) {
+			return null;
+		}
+		String paths = new String(new char[] { SOURCE_OPT, TEMPLATES_OPT,
+				OUTPUT_OPT, SNAPSHOT_OPT, EXTERNAL_LINK_CACHE_OPT });
+		List<String> daemonArgs = new ArrayList<String>();
+		for (Option option : cl.getOptions()) {
+			String value = option.getValue();
+			if (value == null) {
+				daemonArgs.add("-" + option.getOpt());
+			} else if (paths.indexOf(option.getOpt()) >= 0) {
+				daemonArgs.add("-" + option.getOpt()
+						+ new File(value).getAbsolutePath());
+			} else {
+				daemonArgs.add("-" + option.getOpt() + value);
 			}
-		} else if (cl.hasOption(RESOURCE_OPT)) {
-			url = Thread.currentThread().getContextClassLoader().getResource(
-					cl.getOptionValue(RESOURCE_OPT));
-		} else {
-			url = Main.class.getResource(XSITE_COMPOSITION);
 		}
-		return url;
+		for (Object arg : cl.getArgList()) {
+			daemonArgs.add(String.valueOf(arg));
+		}
+		return daemonArgs.toArray(new String[daemonArgs.size()]);
 	}
 
 	static final Properties createProperties() throws IOException {
@@ -271,6 +512,63 @@ public class Main {
 				true, "specify the published date");
 		options.addOption(String.valueOf(PUBLISHED_VERSION_OPT),
 				"published-version", true, "specify the published version");
+		options.addOption(String.valueOf(THREADS_OPT), "threads", true,
+				"specify the number of threads used to extract and skin pages");
+		options.addOption(String.valueOf(INCREMENTAL_OPT), "incremental",
+				false, "skin only the pages changed since the previous build"
+						+ " - requires a fixed published date");
+		options.addOption(String.valueOf(SYNC_RESOURCES_OPT), "sync-resources",
+				false, "copy only new or changed resources");
+		options.addOption(String.valueOf(COMPARE_RESOURCE_CONTENT_OPT),
+				"compare-resource-content", false,
+				"compare resources by content - implies -u");
+		options.addOption(String.valueOf(DELETE_STALE_RESOURCES_OPT),
+				"delete-stale-resources", false,
+				"delete resources no longer in the resource paths - implies -u");
+		options.addOption(String.valueOf(SNAPSHOT_OPT), "snapshot", true,
+				"specify the snapshot file of extracted pages");
+		options.addOption(String.valueOf(INPUT_ENCODING_OPT),
+				"input-encoding", true,
+				"specify the encoding of the content pages - defaults to the platform encoding");
+		options.addOption(String.valueOf(OUTPUT_ENCODING_OPT),
+				"output-encoding", true,
+				"specify the encoding of the pages - defaults to the platform encoding");
+		options.addOption(String.valueOf(ATOMIC_OUTPUT_OPT), "atomic-output",
+				false, "write each page to a temporary file and rename it");
+		options.addOption(String.valueOf(WRITE_CHANGED_ONLY_OPT),
+				"write-changed-only", false,
+				"write only the pages whose content changed");
+		options.addOption(String.valueOf(LOW_MEMORY_OPT), "low-memory",
+				false, "extract page content again when skinning instead of holding it");
+		options.addOption(String.valueOf(PIPELINE_OPT), "pipeline", true,
+				"skin pages in a pipeline loading at most the given number of pages ahead - implies -l");
+		options.addOption(String.valueOf(VALIDATE_ANCHORS_OPT),
+				"validate-anchors", false,
+				"validate the fragments of links against the anchors of the target pages");
+		options.addOption(String.valueOf(VERIFY_EXTERNAL_LINKS_OPT),
+				"verify-external-links", false,
+				"verify external http and https links by requesting them");
+		options.addOption(String.valueOf(EXTERNAL_LINK_CACHE_OPT),
+				"external-link-cache", true,
+				"cache the external links found alive in the given file - implies -X");
+		options.addOption(String.valueOf(LOCALISATION_THREADS_OPT),
+				"localisation-threads", true,
+				"specify the number of sites of the default language and of the localisations built at the same time");
+		options.addOption(String.valueOf(SHARE_RESOURCES_OPT),
+				"share-resources", false,
+				"copy the resources shared by the localisations only to the output of the default language");
+		options.addOption(String.valueOf(SHARD_OPT), "shard", true,
+				"build only the pages of the given shard, written as index/count, e.g. 2/4, and write its manifest instead of verifying links");
+		options.addOption(String.valueOf(MERGE_SHARDS_OPT), "merge-shards",
+				false,
+				"merge the manifests of the shards built into the output and verify the links of the whole site - -s is not required");
+		options.addOption(String.valueOf(VERIFY_ONLY_OPT), "verify-only",
+				false,
+				"only verify the links of the sitemap, without copying resources or skinning pages - -s and -o are not required");
+		options.addOption(String.valueOf(WATCH_OPT), "watch", false,
+				"keep the site up to date, rebuilding only what changed until interrupted");
+		options.addOption(String.valueOf(PREVIEW_OPT), "preview", true,
+				"serve the site on the given port, skinning pages when requested - -o is not required");
 		return options;
 	}
 
@@ -289,6 +587,26 @@ public class Main {
 						+ ": -S<source-dir> -m<relative-path-to-sitemap> -s<relative-path-to-skin> -o<output-dir> "
 						+ "[-t <templates-dir>]"
 						+ "[-R <csv-of-resource-paths>]"
+						+ "[-j<threads>]"
+						+ "[-i]"
+						+ "[-u [-H] [-e]]"
+						+ "[-c<snapshot-file>]"
+						+ "[-I<input-encoding>]"
+						+ "[-E<output-encoding>]"
+						+ "[-a]"
+						+ "[-w]"
+						+ "[-l]"
+						+ "[-p<depth>]"
+						+ "[-A]"
+						+ "[-X]"
+						+ "[-C<external-link-cache-file>]"
+						+ "[-g<localisation-threads>]"
+						+ "[-b]"
+						+ "[-n<index/count>]"
+						+ "[-k]"
+						+ "[-M]"
+						+ "[-W]"
+						+ "[-P<port>]"
 						+ "[-f<relative-path-to-xsite.xml>|-r<classpath-path-to-xsite.xml>] "
 						+ "[-x<xsite-factory-classname>" + "[-h|-v]");
 		usage.append(lineSeparator);
@@ -0,0 +1,426 @@
+package org.codehaus.xsite;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.codehaus.xsite.model.Page;
+import org.codehaus.xsite.model.Sitemap;
+
+/**
+ * Serves a site over HTTP without building it, for previewing changes. The
+ * sitemap and skin are loaded in memory and a page is skinned only when it is
+ * requested. The skinned pages are kept in a cache holding the most recently
+ * requested pages. Resources are served straight from the resource
+ * directories.
+ * <p>
+ * The directories of the sitemap, of the skin and of the resources are polled
+ * for changes. A changed page is extracted again and dropped from the cache,
+ * and if its title or id changed, as do a changed skin or sitemap, the whole
+ * cache is dropped.
+ * </p>
+ *
+ * @author Mauro Talevi
+ */
+public class PreviewServer {
+
+    public static final int DEFAULT_CACHE_SIZE = 256;
+    public static final long DEFAULT_POLL_INTERVAL = 1000;
+
+    private static final String INDEX = "index.html";
+
+    private final XSite xsite;
+    private final SiteSources sources;
+    private final Map<String, Object> customProperties;
+    private final long pollInterval;
+    private final Map<String, byte[]> cache;
+    private volatile State state;
+    private ServerSocket serverSocket;
+    private ExecutorService executor;
+    private Thread acceptor;
+
+    public PreviewServer(XSite xsite, File sitemapFile, File skinFile, File[] resourceDirs,
+            Map<String, Object> customProperties) {
+        this(xsite, sitemapFile, skinFile, resourceDirs, customProperties, DEFAULT_CACHE_SIZE, DEFAULT_POLL_INTERVAL);
+    }
+
+    /**
+     * Creates a PreviewServer
+     *
+     * @param xsite the XSite used to load and skin the pages
+     * @param sitemapFile the sitemap File
+     * @param skinFile the skin File
+     * @param resourceDirs the resource directories
+     * @param customProperties the custom properties passed to the skin
+     * @param cacheSize the maximum number of skinned pages cached
+     * @param pollInterval the interval between polls of the source
+     *            directories, in milliseconds
+     */
+    public PreviewServer(XSite xsite, File sitemapFile, File skinFile, File[] resourceDirs,
+            Map<String, Object> customProperties, int cacheSize, long pollInterval) {
+        this.xsite = xsite;
+        this.sources = new SiteSources(sitemapFile, skinFile, resourceDirs);
+        this.customProperties = customProperties;
+        this.pollInterval = pollInterval;
+        this.cache = new PageCache(cacheSize);
+    }
+
+    /**
+     * Loads the sitemap and the skin and starts serving requests
+     *
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException
+     */
+    public void start(int port) throws IOException {
+        sources.startPolling();
+        xsite.getSkin().load(sources.getSkinFile());
+        state = loadState();
+        serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "xsite-preview");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept();
+            }
+        }, "xsite-preview-acceptor");
+        acceptor.start();
+        if (pollInterval > 0) {
+            Thread watcher = new Thread(new Runnable() {
+                public void run() {
+                    poll();
+                }
+            }, "xsite-preview-poller");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+
+    /**
+     * Returns the port the server listens on
+     *
+     * @return The port
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Waits until the server is stopped
+     *
+     * @throws InterruptedException
+     */
+    public void join() throws InterruptedException {
+        acceptor.join();
+    }
+
+    /**
+     * Stops serving requests
+     *
+     * @throws IOException
+     */
+    public void stop() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Reloads what is affected by the sources changed since the previous
+     * refresh, dropping the skinned pages it affects from the cache
+     *
+     * @throws IOException
+     */
+    public void refresh() throws IOException {
+        State current = state;
+        ChangeSet changes = sources.poll(current.sitemap);
+        if (changes.isSkinChanged()) {
+            xsite.getSkin().load(sources.getSkinFile());
+        }
+        if (changes.requiresSitemap(xsite.getPageExtractor())) {
+            update(loadState(), null);
+            return;
+        }
+        if (changes.getChangedPages().isEmpty()) {
+            if (changes.isSkinChanged()) {
+                update(current, null);
+            }
+            return;
+        }
+        Sitemap sitemap = changes.replacePages(current.sitemap, xsite.getPageExtractor());
+        if (changes.isNavigationChanged() || changes.isSkinChanged()) {
+            update(new State(sitemap, xsite.createSkinProperties(sitemap, customProperties)), null);
+        } else {
+            List<String> filenames = new ArrayList<String>();
+            for (Page page : changes.getReplacedPages()) {
+                filenames.add(page.getFilename());
+            }
+            update(new State(sitemap, current.skinProperties), filenames);
+        }
+    }
+
+    /**
+     * Returns the content served for a path
+     *
+     * @param path the decoded request path
+     * @return The bytes of the skinned page or resource, or <code>null</code>
+     *         if not found
+     * @throws IOException
+     */
+    byte[] serve(String path) throws IOException {
+        String relativePath = path.startsWith("/") ? path.substring(1) : path;
+        if (relativePath.length() == 0 || relativePath.endsWith("/")) {
+            relativePath = relativePath + INDEX;
+        }
+        if (relativePath.indexOf("..") >= 0) {
+            return null;
+        }
+        State current = state;
+        Page page = current.sitemap.getPage(relativePath);
+        if (page != null) {
+            return render(page, current);
+        }
+        for (File resourceDir : sources.getResourceDirs()) {
+            File file = new File(resourceDir, relativePath);
+            if (file.isFile()) {
+                return read(file);
+            }
+        }
+        return null;
+    }
+
+    private byte[] render(Page page, State current) throws IOException {
+        synchronized (cache) {
+            byte[] content = cache.get(page.getFilename());
+            if (content != null) {
+                return content;
+            }
+        }
+        byte[] content = xsite.render(page, current.sitemap, current.skinProperties);
+        synchronized (cache) {
+            // not cached if the sources changed while skinning
+            if (current == state) {
+                cache.put(page.getFilename(), content);
+            }
+        }
+        return content;
+    }
+
+    private State loadState() throws IOException {
+        Sitemap sitemap = xsite.loadSitemap(sources.getSitemapFile());
+        return new State(sitemap, xsite.createSkinProperties(sitemap, customProperties));
+    }
+
+    /**
+     * Replaces the state, dropping from the cache the given pages, or all pages
+     * if none are given
+     */
+    private void update(State updated, List<String> filenames) {
+        synchronized (cache) {
+            if (filenames == null) {
+                cache.clear();
+            } else {
+                for (String filename : filenames) {
+                    cache.remove(filename);
+                }
+            }
+            state = updated == state ? new State(updated.sitemap, updated.skinProperties) : updated;
+        }
+    }
+
+    private void poll() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Thread.sleep(pollInterval);
+                refresh();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                // keep polling, the next change may fix the failure
+                System.err.println("Failed to refresh site: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                executor.execute(new Runnable() {
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            } catch (IOException e) {
+                // server stopped
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+            String requestLine = reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null && line.length() > 0) {
+                // skip headers
+            }
+            String[] parts = requestLine != null ? requestLine.split(" ") : new String[0];
+            OutputStream output = socket.getOutputStream();
+            if (parts.length < 2) {
+                respond(output, "400 Bad Request", "text/plain", "Bad request".getBytes("ISO-8859-1"), true);
+                return;
+            }
+            String method = parts[0];
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                respond(output, "405 Method Not Allowed", "text/plain", "Method not allowed".getBytes("ISO-8859-1"),
+                        true);
+                return;
+            }
+            String path = decode(parts[1]);
+            byte[] content;
+            try {
+                content = serve(path);
+            } catch (RuntimeException e) {
+                respond(output, "500 Internal Server Error", "text/plain", String.valueOf(e).getBytes("UTF-8"), true);
+                return;
+            }
+            if (content == null) {
+                respond(output, "404 Not Found", "text/plain", ("Not found: " + path).getBytes("UTF-8"), true);
+            } else {
+                respond(output, "200 OK", contentType(path), content, method.equals("GET"));
+            }
+        } catch (IOException e) {
+            // client gone
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private void respond(OutputStream output, String status, String contentType, byte[] content, boolean withContent)
+            throws IOException {
+        StringBuilder headers = new StringBuilder();
+        headers.append("HTTP/1.1 ").append(status).append("\r\n");
+        headers.append("Content-Type: ").append(contentType).append("\r\n");
+        headers.append("Content-Length: ").append(content.length).append("\r\n");
+        headers.append("Cache-Control: no-cache\r\n");
+        headers.append("Connection: close\r\n\r\n");
+        output.write(headers.toString().getBytes("ISO-8859-1"));
+        if (withContent) {
+            output.write(content);
+        }
+        output.flush();
+    }
+
+    private String contentType(String path) {
+        String name = path.endsWith("/") || path.length() == 0 ? INDEX : path.toLowerCase();
+        if (name.endsWith(".html") || name.endsWith(".htm")) {
+            String encoding = xsite.getConfiguration().getOutputEncoding();
+            return "text/html; charset=" + (encoding != null ? encoding : Charset.defaultCharset().name());
+        }
+        if (name.endsWith(".css")) {
+            return "text/css";
+        }
+        if (name.endsWith(".js")) {
+            return "application/javascript";
+        }
+        if (name.endsWith(".gif")) {
+            return "image/gif";
+        }
+        if (name.endsWith(".png")) {
+            return "image/png";
+        }
+        if (name.endsWith(".jpg") || name.endsWith(".jpeg")) {
+            return "image/jpeg";
+        }
+        if (name.endsWith(".txt") || name.endsWith(".properties")) {
+            return "text/plain";
+        }
+        return "application/octet-stream";
+    }
+
+    private static String decode(String uri) throws UnsupportedEncodingException {
+        int queryIdx = uri.indexOf('?');
+        if (queryIdx >= 0) {
+            uri = uri.substring(0, queryIdx);
+        }
+        return URLDecoder.decode(uri, "UTF-8");
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream input = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < bytes.length) {
+                int count = input.read(bytes, read, bytes.length - read);
+                if (count < 0) {
+                    break;
+                }
+                read += count;
+            }
+        } finally {
+            input.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * The skinned pages, in order of access, dropping the least recently
+     * accessed page when full
+     */
+    @SuppressWarnings("serial")
+    private static class PageCache extends LinkedHashMap<String, byte[]> {
+
+        private final int size;
+
+        private PageCache(int size) {
+            super(16, 0.75f, true);
+            this.size = size;
+        }
+
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > size;
+        }
+    }
+
+    /**
+     * The loaded sitemap with the properties passed to the skin, replaced as a
+     * whole when the sources change
+     */
+    private static class State {
+
+        private final Sitemap sitemap;
+        private final Map<String, Object> skinProperties;
+
+        private State(Sitemap sitemap, Map<String, Object> skinProperties) {
+            this.sitemap = sitemap;
+            this.skinProperties = skinProperties;
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package org.codehaus.xsite;
+
+import java.io.File;
+import java.util.Map;
+
+import org.codehaus.xsite.model.Page;
+import org.codehaus.xsite.model.Sitemap;
+
+/**
+ * A Skin which can also skin pages into memory, tell whether the output of a
+ * page was written, and create skins loaded from other skin files. XSite uses
+ * these capabilities if its skin provides them: otherwise, pages are always
+ * written, the skin is loaded in place, so sites with different skins are
+ * built one at a time, and pages are skinned into memory through a temporary
+ * directory.
+ * 
+ * @author Mauro Talevi
+ */
+public interface RenderingSkin extends Skin {
+
+	/**
+	 * Creates a skin loaded from a skin file, leaving the skin loaded by this
+	 * one unchanged, so that sites with different skins can be skinned
+	 * concurrently. The templates parsed are shared with this skin.
+	 * 
+	 * @param skinFile the skin File
+	 * @return The loaded RenderingSkin
+	 */
+	RenderingSkin newInstance(File skinFile);
+
+	/**
+	 * Skins a page into the output directory
+	 * 
+	 * @param page the Page
+	 * @param sitemap the Sitemap
+	 * @param outputDirectory the output directory
+	 * @param customProperties the custom properties
+	 * @return A boolean <code>true</code> if the page output was written,
+	 *         <code>false</code> if left unchanged
+	 */
+	boolean writePage(Page page, Sitemap sitemap, File outputDirectory, Map<String, Object> customProperties);
+
+	/**
+	 * Skins a page into memory
+	 * 
+	 * @param page the Page
+	 * @param sitemap the Sitemap
+	 * @param customProperties the custom properties
+	 * @return The bytes of the skinned page, encoded with the output encoding
+	 */
+	byte[] render(Page page, Sitemap sitemap, Map<String, Object> customProperties);
+
+}
@@ -0,0 +1,101 @@
+package org.codehaus.xsite;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.codehaus.xsite.model.Page;
+
+/**
+ * Identifies the part of a site built by one of several processes or
+ * machines. Pages are assigned to shards by a stable hash of their filename,
+ * so every process agrees on the shard of each page whatever the JVM, and a
+ * page keeps its shard as other pages are added to or removed from the
+ * sitemap.
+ *
+ * @author Mauro Talevi
+ */
+public class Shard {
+
+    private final int index;
+    private final int count;
+
+    /**
+     * Creates a Shard
+     *
+     * @param index the index of the shard, from 1 to the number of shards
+     * @param count the number of shards
+     */
+    public Shard(int index, int count) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("Invalid shard " + index + "/" + count);
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+     * Parses a shard written as <code>index/count</code>, e.g. "2/4"
+     *
+     * @param shard the shard String
+     * @return The Shard
+     */
+    public static Shard parse(String shard) {
+        int separator = shard.indexOf('/');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid shard " + shard + ", expected index/count");
+        }
+        try {
+            return new Shard(Integer.parseInt(shard.substring(0, separator).trim()), Integer.parseInt(shard
+                    .substring(separator + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid shard " + shard + ", expected index/count");
+        }
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Determines if the page with the given filename belongs to this shard
+     *
+     * @param filename the page filename
+     * @return A boolean <code>true</code> if the page belongs to this shard
+     */
+    public boolean contains(String filename) {
+        CRC32 crc = new CRC32();
+        try {
+            crc.update(filename.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+        return crc.getValue() % count == index - 1;
+    }
+
+    /**
+     * Selects the pages belonging to this shard
+     *
+     * @param pages the List of Page
+     * @return The List of the pages of this shard, in the same order
+     */
+    public List<Page> select(List<Page> pages) {
+        List<Page> selected = new ArrayList<Page>();
+        for (Page page : pages) {
+            if (contains(page.getFilename())) {
+                selected.add(page);
+            }
+        }
+        return selected;
+    }
+
+    public String toString() {
+        return index + "/" + count;
+    }
+
+}
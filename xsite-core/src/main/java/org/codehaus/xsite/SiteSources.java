@@ -0,0 +1,117 @@
+package org.codehaus.xsite;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.xsite.io.DirectoryPoller;
+import org.codehaus.xsite.model.Sitemap;
+
+/**
+ * The sources of a site, i.e. its sitemap, skin and resource directories, held
+ * with their canonical paths and polled for the changes made to them. The
+ * directories of the sitemap and of the skin hold the pages and the templates.
+ *
+ * @author Mauro Talevi
+ */
+class SiteSources {
+
+    private final File sitemapFile;
+    private final File skinFile;
+    private final File[] resourceDirs;
+    private final File contentDirectory;
+    private final File templatesDirectory;
+    private DirectoryPoller poller;
+
+    SiteSources(File sitemapFile, File skinFile, File[] resourceDirs) {
+        this.sitemapFile = canonical(sitemapFile);
+        this.skinFile = canonical(skinFile);
+        this.resourceDirs = new File[resourceDirs.length];
+        for (int i = 0; i < resourceDirs.length; i++) {
+            this.resourceDirs[i] = canonical(resourceDirs[i]);
+        }
+        this.contentDirectory = this.sitemapFile.getParentFile();
+        this.templatesDirectory = this.skinFile.getParentFile();
+    }
+
+    File getSitemapFile() {
+        return sitemapFile;
+    }
+
+    File getSkinFile() {
+        return skinFile;
+    }
+
+    File[] getResourceDirs() {
+        return resourceDirs;
+    }
+
+    File getContentDirectory() {
+        return contentDirectory;
+    }
+
+    /**
+     * Records the state of the sources, which the following polls compare to
+     */
+    void startPolling() {
+        List<File> directories = new ArrayList<File>();
+        directories.add(contentDirectory);
+        directories.add(templatesDirectory);
+        for (File resourceDir : resourceDirs) {
+            directories.add(resourceDir);
+        }
+        poller = new DirectoryPoller(directories.toArray(new File[directories.size()]));
+    }
+
+    boolean isPolling() {
+        return poller != null;
+    }
+
+    /**
+     * Returns the changes made to the sources since the previous poll. A
+     * changed file is the sitemap, a page of the sitemap, a resource or a
+     * template, in this order.
+     *
+     * @param sitemap the Sitemap listing the pages
+     * @return The ChangeSet
+     */
+    ChangeSet poll(Sitemap sitemap) {
+        ChangeSet changes = new ChangeSet();
+        for (File file : poller.poll()) {
+            File resourceDir = resourceDir(file);
+            if (file.equals(sitemapFile)) {
+                changes.sitemapChanged();
+            } else if (isUnder(file, contentDirectory) && sitemap.getPage(file.getName()) != null) {
+                changes.addPage(file);
+            } else if (resourceDir != null) {
+                changes.addResource(file, file.getPath().substring(resourceDir.getPath().length() + 1));
+            } else if (isUnder(file, templatesDirectory)) {
+                changes.skinChanged();
+            }
+        }
+        return changes;
+    }
+
+    private File resourceDir(File file) {
+        for (File resourceDir : resourceDirs) {
+            if (isUnder(file, resourceDir)) {
+                return resourceDir;
+            }
+        }
+        return null;
+    }
+
+    private static File canonical(File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file.getAbsoluteFile();
+        }
+    }
+
+    private static boolean isUnder(File file, File directory) {
+        return file.getPath().startsWith(directory.getPath() + File.separator);
+    }
+
+}
@@ -0,0 +1,137 @@
+package org.codehaus.xsite;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.xsite.model.Page;
+import org.codehaus.xsite.model.Sitemap;
+
+/**
+ * Builds a site and keeps it up to date as its sources change, holding the
+ * loaded sitemap and skin in memory between updates. The directories of the
+ * sitemap, of the skin and of the resources are polled for changes:
+ * <ul>
+ * <li>a changed page is extracted again and skinned, and if its title or id
+ * changed, so are all pages, as the navigation of every page lists it</li>
+ * <li>a changed skin, or any file in its directory, is loaded again and all
+ * pages are skinned, without extracting them again</li>
+ * <li>a changed resource is copied to the output directory</li>
+ * <li>a changed sitemap is loaded again and all pages are skinned</li>
+ * </ul>
+ * Pages are extracted again with the PageExtractor of the XSite. If it has
+ * none, a changed page loads the whole sitemap again.
+ *
+ * @author Mauro Talevi
+ */
+public class SiteWatcher {
+
+    private final XSite xsite;
+    private final SiteSources sources;
+    private final File outputDirectory;
+    private final Map<String, Object> customProperties;
+    private Sitemap sitemap;
+    private Map<String, Object> skinProperties;
+
+    public SiteWatcher(XSite xsite, File sitemapFile, File skinFile, File[] resourceDirs, File outputDirectory,
+            Map<String, Object> customProperties) {
+        this.xsite = xsite;
+        this.sources = new SiteSources(sitemapFile, skinFile, resourceDirs);
+        this.outputDirectory = outputDirectory;
+        this.customProperties = customProperties;
+    }
+
+    /**
+     * Builds the whole site, recording the state of the sources so that
+     * following updates only rebuild what changed
+     *
+     * @throws IOException
+     */
+    public void build() throws IOException {
+        sources.startPolling();
+        xsite.copyResources(sources.getResourceDirs(), outputDirectory);
+        xsite.getSkin().load(sources.getSkinFile());
+        outputDirectory.mkdirs();
+        loadSitemap();
+        skinAll();
+    }
+
+    /**
+     * Builds the whole site, then updates it every interval until interrupted
+     *
+     * @param interval the interval between updates, in milliseconds
+     * @throws IOException
+     * @throws InterruptedException when interrupted
+     */
+    public void watch(long interval) throws IOException, InterruptedException {
+        build();
+        System.out.println("Watching " + sources.getContentDirectory() + " for changes");
+        while (true) {
+            Thread.sleep(interval);
+            try {
+                update();
+            } catch (RuntimeException e) {
+                // keep watching, the next change may fix the failure
+                System.err.println("Failed to update site: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rebuilds what is affected by the sources changed since the build or the
+     * previous update
+     *
+     * @return The number of pages skinned
+     * @throws IOException
+     */
+    public int update() throws IOException {
+        if (!sources.isPolling()) {
+            throw new IllegalStateException("Site not built");
+        }
+        ChangeSet changes = sources.poll(sitemap);
+        for (Map.Entry<File, String> resource : changes.getChangedResources().entrySet()) {
+            copyResource(resource.getKey(), resource.getValue());
+        }
+        if (changes.isSkinChanged()) {
+            System.out.println("Loading skin " + sources.getSkinFile());
+            xsite.getSkin().load(sources.getSkinFile());
+        }
+        if (changes.requiresSitemap(xsite.getPageExtractor())) {
+            loadSitemap();
+            return skinAll();
+        }
+        sitemap = changes.replacePages(sitemap, xsite.getPageExtractor());
+        if (changes.isNavigationChanged()) {
+            skinProperties = xsite.createSkinProperties(sitemap, customProperties);
+        }
+        if (changes.isSkinChanged() || changes.isNavigationChanged()) {
+            return skinAll();
+        }
+        List<Page> pages = changes.getReplacedPages();
+        xsite.skinPages(pages, sitemap, outputDirectory, skinProperties);
+        return pages.size();
+    }
+
+    private void loadSitemap() throws IOException {
+        sitemap = xsite.loadSitemap(sources.getSitemapFile());
+        skinProperties = xsite.createSkinProperties(sitemap, customProperties);
+    }
+
+    private int skinAll() {
+        List<Page> pages = sitemap.getAllPages();
+        xsite.skinPages(pages, sitemap, outputDirectory, skinProperties);
+        return pages.size();
+    }
+
+    /**
+     * Copies a changed resource to the output directory, unless deleted
+     */
+    private void copyResource(File file, String relativePath) {
+        if (file.isFile()) {
+            System.out.println("Copying resource " + relativePath);
+            xsite.getFileSystem().copyFile(file, new File(outputDirectory, relativePath));
+        }
+    }
+
+}
\ No newline at end of file
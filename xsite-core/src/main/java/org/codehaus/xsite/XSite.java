@@ -2,12 +2,33 @@ package org.codehaus.xsite;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.io.BuildManifest;
+import org.codehaus.xsite.io.Digests;
+import org.codehaus.xsite.io.ShardManifest;
+import org.codehaus.xsite.io.ShardManifest.IncompleteShardsException;
+import org.codehaus.xsite.model.Navigation;
 import org.codehaus.xsite.model.Page;
+import org.codehaus.xsite.model.ResourcesRoot;
+import org.codehaus.xsite.model.Section;
 import org.codehaus.xsite.model.Sitemap;
 import org.codehaus.xsite.validators.LinkChecker;
+import org.codehaus.xsite.validators.LinkChecker.InvalidLinksException;
+import org.codehaus.xsite.validators.LinkReport;
 
 /**
  * Facade for building sites
@@ -17,11 +38,29 @@ import org.codehaus.xsite.validators.LinkChecker;
  */
 public class XSite {
 
+    /**
+     * The name of the skin property holding the navigation of the sitemap,
+     * which custom properties cannot use
+     */
+    public static final String NAVIGATION = "navigation";
+
+    /**
+     * The name of the skin property holding the {@link ResourcesRoot}, which
+     * is the output directory unless given by the custom properties
+     */
+    public static final String RESOURCES_ROOT = "resourcesRoot";
+
     private final SitemapLoader sitemapLoader;
     private final Skin skin;
     private final LinkValidator[] validators;
     private final FileSystem fileSystem;
     private final XSiteConfiguration configuration;
+    private final PageExtractor pageExtractor;
+
+    /**
+     * Marks the end of the pages queued for skinning
+     */
+    private static final Page END_OF_PAGES = new Page(null, null, null, null, null);
 
     /**
      * Creates an XSite
@@ -34,42 +73,518 @@ public class XSite {
      */
     public XSite(SitemapLoader loader, Skin skin, LinkValidator[] validators, FileSystem fileSystem,
             XSiteConfiguration configuration) {
+        this(loader, skin, validators, fileSystem, configuration, null);
+    }
+
+    /**
+     * Creates an XSite which can extract single pages again when watching a
+     * site
+     * 
+     * @param loader the SitemapLoader used to load the Sitemap
+     * @param skin the Skin used to skin the pages
+     * @param validators the array with the LinkValidator instances
+     * @param fileSystem the FileSystem used for IO operations
+     * @param configuration the XSite configuration
+     * @param pageExtractor the PageExtractor used to extract changed pages
+     */
+    public XSite(SitemapLoader loader, Skin skin, LinkValidator[] validators, FileSystem fileSystem,
+            XSiteConfiguration configuration, PageExtractor pageExtractor) {
         this.sitemapLoader = loader;
         this.skin = skin;
         this.validators = validators;
         this.fileSystem = fileSystem;
         this.configuration = configuration;
+        this.pageExtractor = pageExtractor;
+    }
+
+    public XSiteConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Builds a site, verifying its links if configured
+     * 
+     * @throws InvalidLinksException if links are invalid
+     */
+    public void build(File sitemapFile, File skinFile, final File[] resourceDirs, final File outputDirectory, Map<String, Object> customProperties) throws IOException {
+        build(sitemapFile, skinFile, resourceDirs, outputDirectory, customProperties, new BuildResult());
     }
 
-    public void build(File sitemapFile, File skinFile, File[] resourceDirs, File outputDirectory, Map<String, Object> customProperties) throws IOException {
+    /**
+     * Builds a site, verifying its links if configured, and adds the timings
+     * and counts of the build to a result
+     * 
+     * @param result the BuildResult to add to
+     * @throws InvalidLinksException if links are invalid
+     */
+    public void build(File sitemapFile, File skinFile, final File[] resourceDirs, final File outputDirectory,
+            Map<String, Object> customProperties, final BuildResult result) throws IOException {
         // Load sitemap and content
+        long start = System.currentTimeMillis();
+        Sitemap siteMap = loadSitemap(sitemapFile);
+        result.addTiming(BuildResult.LOAD, start);
+        result.addSite(siteMap.getAllPages().size());
+        Map<String, Object> skinProperties = createSkinProperties(siteMap, customProperties);
+
+        // Copy resources (css, images, etc) to output, while skinning if
+        // building concurrently, unless deleting stale resources, which may
+        // delete any file synchronised by a previous build
+        Shard shard = configuration.getShard();
+        ExecutorService resourceCopier = null;
+        Future<?> resources = null;
+        try {
+            if (shard != null && shard.getIndex() > 1) {
+                System.out.println("Leaving resources to shard 1/" + shard.getCount());
+            } else if ((configuration.getThreads() > 1 || configuration.getPipelineDepth() > 0)
+                    && !(configuration.isSyncResources() && configuration.isDeleteStaleResources())) {
+                resourceCopier = Executors.newSingleThreadExecutor();
+                resources = resourceCopier.submit(new Runnable() {
+                    public void run() {
+                        copyResources(resourceDirs, outputDirectory, result);
+                    }
+                });
+            } else {
+                copyResources(resourceDirs, outputDirectory, result);
+            }
+
+            // Apply skin to each page
+            start = System.currentTimeMillis();
+            Skin siteSkin = loadSkin(skinFile);
+            outputDirectory.mkdirs();
+            List<Page> pages = siteMap.getAllPages();
+            if (shard != null) {
+                pages = shard.select(pages);
+                System.out.println("Building " + pages.size() + " pages of shard " + shard);
+            }
+            BuildManifest manifest = null;
+            if (configuration.isIncremental()) {
+                manifest = createManifest(siteMap, shard, sitemapFile, skinFile, customProperties);
+                pages = outdatedPages(pages, manifest, BuildManifest.load(outputDirectory, shard), outputDirectory);
+            }
+            int written;
+            if (resources != null) {
+                // Pages named as resources are only skinned once the resources
+                // are copied, so that they overwrite them as in a serial build
+                List<Page> namedAsResources = pagesNamedAsResources(pages, resourceDirs);
+                List<Page> others = new ArrayList<Page>(pages);
+                others.removeAll(namedAsResources);
+                written = skinPages(siteSkin, others, siteMap, outputDirectory, skinProperties);
+                Futures.await(resources, "copying resources");
+                written += skinPages(siteSkin, namedAsResources, siteMap, outputDirectory, skinProperties);
+            } else {
+                written = skinPages(siteSkin, pages, siteMap, outputDirectory, skinProperties);
+            }
+            if (configuration.isWriteChangedOnly()) {
+                System.out.println("Wrote " + written + " changed pages, left " + (pages.size() - written)
+                        + " unchanged pages");
+            }
+            if (manifest != null) {
+                manifest.store(outputDirectory, shard);
+            }
+            if (shard != null) {
+                ShardManifest.create(siteMap, shard).store(outputDirectory);
+            }
+            result.addTiming(BuildResult.SKIN, start);
+            result.addSkinnedPages(pages.size(), written);
+        } finally {
+            if (resourceCopier != null) {
+                resourceCopier.shutdownNow();
+            }
+        }
+
+        // Verify links, unless left to the merge of the shards
+        if (configuration.validateLinks() && shard == null) {
+            start = System.currentTimeMillis();
+            LinkReport report = verify(siteMap);
+            result.addTiming(BuildResult.VERIFY, start);
+            result.addLinkReport(report);
+            if (!report.isValid()) {
+                throw new InvalidLinksException(Collections.singletonList(report));
+            }
+        }
+    }
+
+    /**
+     * Verifies the links of a site without building it, i.e. without copying
+     * resources or skinning pages
+     * 
+     * @param sitemapFile the sitemap File
+     * @return The LinkReport
+     */
+    public LinkReport verify(File sitemapFile) throws IOException {
+        return verify(sitemapFile, new BuildResult());
+    }
+
+    /**
+     * Verifies the links of a site without building it, and adds the timings
+     * and the report of the verification to a result
+     * 
+     * @param sitemapFile the sitemap File
+     * @param result the BuildResult to add to
+     * @return The LinkReport
+     */
+    public LinkReport verify(File sitemapFile, BuildResult result) throws IOException {
+        long start = System.currentTimeMillis();
+        Sitemap siteMap = loadSitemap(sitemapFile);
+        result.addTiming(BuildResult.LOAD, start);
+        result.addSite(siteMap.getAllPages().size());
+        start = System.currentTimeMillis();
+        LinkReport report = verify(siteMap);
+        result.addTiming(BuildResult.VERIFY, start);
+        result.addLinkReport(report);
+        return report;
+    }
+
+    /**
+     * Merges the manifests written by the shards of a sharded build into an
+     * output directory, and verifies the links of the whole site, adding the
+     * timings and the report of the verification to a result
+     * 
+     * @param outputDirectory the output directory the shards were built into
+     * @param result the BuildResult to add to
+     * @return The LinkReport
+     * @throws IncompleteShardsException if the manifests of some shards are
+     *             missing
+     */
+    public LinkReport mergeShards(File outputDirectory, BuildResult result) {
+        long start = System.currentTimeMillis();
+        Sitemap siteMap = ShardManifest.merge(ShardManifest.loadAll(outputDirectory));
+        result.addTiming(BuildResult.LOAD, start);
+        result.addSite(siteMap.getAllPages().size());
+        start = System.currentTimeMillis();
+        LinkReport report = verify(siteMap);
+        result.addTiming(BuildResult.VERIFY, start);
+        result.addLinkReport(report);
+        return report;
+    }
+
+    private LinkReport verify(Sitemap siteMap) {
+        return new LinkChecker(siteMap, validators, null, configuration).check();
+    }
+
+    /**
+     * Loads and freezes the sitemap
+     */
+    Sitemap loadSitemap(File sitemapFile) throws IOException {
         Sitemap siteMap = sitemapLoader.loadFrom(sitemapFile);
+        siteMap.freeze();
+        return siteMap;
+    }
+
+    /**
+     * Returns the PageExtractor used to extract changed pages
+     * 
+     * @return The PageExtractor or <code>null</code> if not provided
+     */
+    PageExtractor getPageExtractor() {
+        return pageExtractor;
+    }
+
+    FileSystem getFileSystem() {
+        return fileSystem;
+    }
+
+    Skin getSkin() {
+        return skin;
+    }
+
+    /**
+     * Returns the skin loaded from a skin file, i.e. a new skin if the skin is
+     * a {@link RenderingSkin}, or else the skin itself
+     */
+    private Skin loadSkin(File skinFile) {
+        if (skin instanceof RenderingSkin) {
+            return ((RenderingSkin) skin).newInstance(skinFile);
+        }
+        skin.load(skinFile);
+        return skin;
+    }
+
+    /**
+     * Skins a page into memory with the loaded skin, through a temporary
+     * directory unless the skin is a {@link RenderingSkin}
+     * 
+     * @return The bytes of the skinned page
+     */
+    byte[] render(Page page, Sitemap siteMap, Map<String, Object> skinProperties) throws IOException {
+        if (skin instanceof RenderingSkin) {
+            return ((RenderingSkin) skin).render(page, siteMap, skinProperties);
+        }
+        File directory = File.createTempFile("xsite", "");
+        directory.delete();
+        directory.mkdirs();
+        try {
+            skin.skin(page, siteMap, directory, skinProperties);
+            return FileUtils.readFileToByteArray(new File(directory, page.getFilename()));
+        } finally {
+            FileUtils.deleteDirectory(directory);
+        }
+    }
+
+    /**
+     * Creates the properties passed to the skin, i.e. the custom properties,
+     * the navigation of the sitemap and the root of the resources
+     * 
+     * @throws IllegalArgumentException if a custom property is named as the
+     *             navigation
+     */
+    Map<String, Object> createSkinProperties(Sitemap siteMap, Map<String, Object> customProperties) {
+        if (customProperties.containsKey(NAVIGATION)) {
+            throw new IllegalArgumentException("Custom property " + NAVIGATION
+                    + " is reserved for the navigation of the sitemap");
+        }
+        Map<String, Object> skinProperties = new HashMap<String, Object>(customProperties);
+        skinProperties.put(NAVIGATION, new Navigation(siteMap));
+        if (!skinProperties.containsKey(RESOURCES_ROOT)) {
+            skinProperties.put(RESOURCES_ROOT, new ResourcesRoot(""));
+        }
+        return skinProperties;
+    }
 
-        // Copy resources (css, images, etc) to output
+    void copyResources(File[] resourceDirs, File outputDirectory) {
+        copyResources(resourceDirs, outputDirectory, new BuildResult());
+    }
+
+    private void copyResources(File[] resourceDirs, File outputDirectory, BuildResult result) {
+        long start = System.currentTimeMillis();
         for (int i = 0; i < resourceDirs.length; i++) {
             File resourceDir = resourceDirs[i];
-            System.out.println("Copying resources from " + resourceDir);
-            fileSystem.copyDirectory(resourceDir, outputDirectory, true);
+            if (configuration.isSyncResources()) {
+                System.out.println("Synchronising resources from " + resourceDir);
+                CopyStatistics statistics = fileSystem.syncDirectory(resourceDir, outputDirectory, true,
+                        configuration.isCompareResourceContent(), configuration.isDeleteStaleResources());
+                System.out.println(statistics);
+                result.getResourceStatistics().add(statistics);
+            } else {
+                System.out.println("Copying resources from " + resourceDir);
+                fileSystem.copyDirectory(resourceDir, outputDirectory, true);
+            }
         }
+        result.addTiming(BuildResult.RESOURCES, start);
+    }
 
-        // Apply skin to each page
-        skin.load(skinFile);
-        outputDirectory.mkdirs();
+    private static List<Page> pagesNamedAsResources(List<Page> pages, File[] resourceDirs) {
+        List<Page> namedAsResources = new ArrayList<Page>();
+        for (Page page : pages) {
+            for (File resourceDir : resourceDirs) {
+                if (new File(resourceDir, page.getFilename()).exists()) {
+                    namedAsResources.add(page);
+                    break;
+                }
+            }
+        }
+        return namedAsResources;
+    }
+
+    /**
+     * Creates the manifest of the current build inputs. The templates (the
+     * skin and the templates it includes), the custom properties, the
+     * encodings and the navigation (sitemap structure and page titles) are
+     * shared by all pages, so a change to any of them outdates every page.
+     * The manifest of a shard only records the pages of the shard.
+     */
+    private BuildManifest createManifest(Sitemap siteMap, Shard shard, File sitemapFile, File skinFile,
+            Map<String, Object> customProperties) {
+        BuildManifest manifest = new BuildManifest();
+        manifest.setInput("skin", skinFile.getName());
+        manifest.setInput("templates", Digests.digestTemplate(skinFile));
+        manifest.setInput("sitemap", Digests.digest(sitemapFile));
+        manifest.setInput("properties", Digests.digest(manifestProperties(customProperties).toString()));
+        manifest.setInput("inputEncoding", String.valueOf(configuration.getInputEncoding()));
+        manifest.setInput("outputEncoding", String.valueOf(configuration.getOutputEncoding()));
+        List<String> navigation = new ArrayList<String>();
+        for (Section section : siteMap.getSections()) {
+            navigation.add(section.getName());
+            for (Page page : section.getPages()) {
+                navigation.add(page.getFilename());
+                navigation.add(page.getId());
+                navigation.add(page.getTitle());
+            }
+        }
+        manifest.setInput("navigation", Digests.digest(navigation.toArray(new String[navigation.size()])));
         for (Page page : siteMap.getAllPages()) {
-            System.out.println("Skinning " + page.getFilename() + " (" + page.getTitle() + ")");
-			skin.skin(page, siteMap, outputDirectory, customProperties);
+            if (shard == null || shard.contains(page.getFilename())) {
+                manifest.setPage(page.getFilename(), Digests.digest(page.getFilename(), page.getId(),
+                        page.getTitle(), page.getHead(), page.getBody(), new TreeMap<Object, Object>(page
+                                .getProperties()).toString()));
+            }
+            page.releaseContent();
+        }
+        return manifest;
+    }
+
+    /**
+     * Returns the custom properties recorded by the manifest, leaving out
+     * dates, such as the default published date, which stamp the time of the
+     * build rather than its content and would otherwise outdate every page on
+     * every build
+     */
+    private static Map<String, Object> manifestProperties(Map<String, Object> customProperties) {
+        Map<String, Object> properties = new TreeMap<String, Object>();
+        for (Map.Entry<String, Object> entry : customProperties.entrySet()) {
+            if (!(entry.getValue() instanceof Date)) {
+                properties.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return properties;
+    }
+
+    private List<Page> outdatedPages(List<Page> pages, BuildManifest manifest, BuildManifest previous,
+            File outputDirectory) {
+        if (!manifest.hasSameInputs(previous)) {
+            return pages;
+        }
+        List<Page> outdated = new ArrayList<Page>();
+        for (Page page : pages) {
+            String digest = manifest.getPage(page.getFilename());
+            if (!digest.equals(previous.getPage(page.getFilename()))
+                    || !new File(outputDirectory, page.getFilename()).exists()) {
+                outdated.add(page);
+            }
+        }
+        System.out.println("Skipping " + (pages.size() - outdated.size()) + " unchanged pages");
+        return outdated;
+    }
+
+    /**
+     * Skins the pages with the loaded skin, in a pipeline, concurrently or
+     * serially as configured
+     * 
+     * @return The number of pages written
+     */
+    int skinPages(List<Page> pages, Sitemap siteMap, File outputDirectory, Map<String, Object> skinProperties) {
+        return skinPages(skin, pages, siteMap, outputDirectory, skinProperties);
+    }
+
+    /**
+     * Skins the pages with a skin, in a pipeline, concurrently or serially as
+     * configured
+     * 
+     * @return The number of pages written
+     */
+    private int skinPages(Skin skin, List<Page> pages, Sitemap siteMap, File outputDirectory,
+            Map<String, Object> skinProperties) {
+        int threads = configuration.getThreads();
+        int pipelineDepth = configuration.getPipelineDepth();
+        if (pipelineDepth > 0) {
+            return skinPipelined(skin, pages, siteMap, outputDirectory, skinProperties, threads, pipelineDepth);
+        } else if (threads > 1) {
+            return skinConcurrently(skin, pages, siteMap, outputDirectory, skinProperties, threads);
+        }
+        int written = 0;
+        for (Page page : pages) {
+            if (skinPage(skin, page, siteMap, outputDirectory, skinProperties)) {
+                written++;
+            }
         }
+        return written;
+    }
+
+    private boolean skinPage(Skin skin, Page page, Sitemap siteMap, File outputDirectory, Map<String, Object> customProperties) {
+        System.out.println("Skinning " + page.getFilename() + " (" + page.getTitle() + ")");
+        try {
+            if (skin instanceof RenderingSkin) {
+                return ((RenderingSkin) skin).writePage(page, siteMap, outputDirectory, customProperties);
+            }
+            skin.skin(page, siteMap, outputDirectory, customProperties);
+            return true;
+        } catch (RuntimeException e) {
+            throw new CannotSkinPageException(page.getFilename(), e);
+        } finally {
+            page.releaseContent();
+        }
+    }
 
-        // Verify links
-        LinkChecker linkChecker = new LinkChecker(siteMap, validators, new LinkChecker.Reporter() {
-            public void badLink(Page page, String link) {
-                System.err.println("Invalid link on page " + page.getFilename() + " : " + link);
+    /**
+     * Skins the pages using a pool of threads sharing the skin. Failures
+     * are reported in sitemap order, so the page reported is the same one a
+     * serial build would have stopped at.
+     * 
+     * @return The number of pages written
+     */
+    private int skinConcurrently(final Skin skin, List<Page> pages, final Sitemap siteMap, final File outputDirectory,
+            final Map<String, Object> customProperties, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (final Page page : pages) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() {
+                        return skinPage(skin, page, siteMap, outputDirectory, customProperties);
+                    }
+                }));
             }
-        });
+            int written = 0;
+            for (Future<Boolean> result : results) {
+                if (Futures.await(result, "skinning pages")) {
+                    written++;
+                }
+            }
+            return written;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Skins the pages in a pipeline: a loader thread loads the content of the
+     * pages in sitemap order into a bounded queue, from which the skinning
+     * threads take the pages to skin and write them, releasing their content.
+     * The loader blocks while the queue is full, so at most the queue depth
+     * plus the number of skinning threads pages hold their content at once.
+     * 
+     * @return The number of pages written
+     */
+    private int skinPipelined(final Skin skin, final List<Page> pages, final Sitemap siteMap, final File outputDirectory,
+            final Map<String, Object> customProperties, final int threads, int depth) {
+        final BlockingQueue<Page> queue = new ArrayBlockingQueue<Page>(depth);
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            Future<?> loader = executor.submit(new Callable<Object>() {
+                public Object call() throws InterruptedException {
+                    try {
+                        for (Page page : pages) {
+                            page.getHead();
+                            page.getBody();
+                            queue.put(page);
+                        }
+                    } finally {
+                        for (int i = 0; i < threads; i++) {
+                            queue.put(END_OF_PAGES);
+                        }
+                    }
+                    return null;
+                }
+            });
+            List<Future<Integer>> skinners = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < threads; i++) {
+                skinners.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() throws InterruptedException {
+                        int written = 0;
+                        for (Page page = queue.take(); page != END_OF_PAGES; page = queue.take()) {
+                            if (skinPage(skin, page, siteMap, outputDirectory, customProperties)) {
+                                written++;
+                            }
+                        }
+                        return written;
+                    }
+                }));
+            }
+            int written = 0;
+            for (Future<Integer> skinner : skinners) {
+                written += Futures.await(skinner, "skinning pages");
+            }
+            Futures.await(loader, "loading pages");
+            return written;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-        if (configuration.validateLinks() && !linkChecker.verify()) {
-            System.err.println("Invalid links found with validators " + Arrays.asList(validators));
-            System.exit(-1);
+    @SuppressWarnings("serial")
+    public static class CannotSkinPageException extends RuntimeException {
+        public CannotSkinPageException(String filename, Throwable cause) {
+            super("Failed to skin page " + filename, cause);
         }
     }
 
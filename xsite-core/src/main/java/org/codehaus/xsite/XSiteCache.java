@@ -0,0 +1,108 @@
+package org.codehaus.xsite;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caches the XSite instances created by a factory for each composition, so
+ * that following builds in the same JVM skip creating the container, the
+ * XStream and the FreeMarker configuration again. Before each build, the
+ * configuration of the XSite is restored to the one of its composition, so
+ * that the settings of a build do not leak into the next one. The XSite of a
+ * composition file is created again when the file is modified.
+ * <p>
+ * A cached XSite must not be used by concurrent builds, as they would share
+ * its configuration and loaded skin. Builds hold the lock of the XSite from
+ * restoring its configuration until they complete.
+ * </p>
+ *
+ * @author Mauro Talevi
+ */
+public class XSiteCache {
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * Returns the XSite of a composition, creating it if not cached
+     *
+     * @param factory the XSiteFactory creating the XSite
+     * @param composition the composition URL
+     * @return The XSite, whose configuration is restored by
+     *         {@link #restore(XSite)}
+     */
+    public synchronized XSite get(XSiteFactory factory, URL composition) {
+        String key = factory.getClass().getName() + " " + composition;
+        long lastModified = lastModified(composition);
+        Entry entry = entries.get(key);
+        if (entry == null || entry.lastModified != lastModified) {
+            Map<Class<?>, URL> config = new HashMap<Class<?>, URL>();
+            config.put(URL.class, composition);
+            entry = new Entry(factory.createXSite(config), lastModified);
+            entries.put(key, entry);
+        }
+        return entry.xsite;
+    }
+
+    /**
+     * Restores the configuration of a cached XSite to the one of its
+     * composition. The caller holds the lock of the XSite, and keeps it for
+     * the whole build, so that the settings of a running build are not
+     * changed.
+     *
+     * @param xsite the XSite returned by the cache
+     */
+    public void restore(XSite xsite) {
+        XSiteConfiguration defaults = null;
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                if (entry.xsite == xsite) {
+                    defaults = entry.defaults;
+                }
+            }
+        }
+        if (defaults != null) {
+            xsite.getConfiguration().copyFrom(defaults);
+        }
+    }
+
+    /**
+     * Returns the number of cached XSite instances
+     *
+     * @return The size of the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the modification time of a composition file, or 0 if the
+     * composition is not a file
+     */
+    private static long lastModified(URL composition) {
+        if (!"file".equals(composition.getProtocol())) {
+            return 0;
+        }
+        try {
+            return new File(composition.toURI()).lastModified();
+        } catch (URISyntaxException e) {
+            return new File(composition.getPath()).lastModified();
+        }
+    }
+
+    private static class Entry {
+
+        private final XSite xsite;
+        private final long lastModified;
+        private final XSiteConfiguration defaults = new XSiteConfiguration();
+
+        private Entry(XSite xsite, long lastModified) {
+            this.xsite = xsite;
+            this.lastModified = lastModified;
+            this.defaults.copyFrom(xsite.getConfiguration());
+        }
+    }
+
+}
@@ -1,5 +1,7 @@
 package org.codehaus.xsite;
 
+import java.io.File;
+
 /**
  * Holds configuration of XSite
  * 
@@ -8,17 +10,330 @@ package org.codehaus.xsite;
 public class XSiteConfiguration {
 
     private boolean validateLinks;
+    private boolean validateAnchors;
+    private boolean verifyExternalLinks;
+    private File externalLinkCacheFile;
+    private int threads;
+    private boolean incremental;
+    private boolean syncResources;
+    private boolean compareResourceContent;
+    private boolean deleteStaleResources;
+    private File snapshotFile;
+    private String inputEncoding;
+    private String outputEncoding;
+    private boolean atomicOutput;
+    private boolean writeChangedOnly;
+    private boolean lowMemory;
+    private int pipelineDepth;
+    private int localisationThreads;
+    private boolean shareResources;
+    private Shard shard;
 
     public XSiteConfiguration() {
         this(true);
     }
 
     public XSiteConfiguration(boolean validateLinks) {
+        this(validateLinks, 1);
+    }
+
+    public XSiteConfiguration(boolean validateLinks, int threads) {
         this.validateLinks = validateLinks;
+        this.threads = threads;
+    }
+
+    /**
+     * Copies all settings of another configuration, e.g. to restore the
+     * settings of a composition before a build which configures its own
+     * 
+     * @param configuration the XSiteConfiguration to copy
+     */
+    public void copyFrom(XSiteConfiguration configuration) {
+        this.validateLinks = configuration.validateLinks;
+        this.validateAnchors = configuration.validateAnchors;
+        this.verifyExternalLinks = configuration.verifyExternalLinks;
+        this.externalLinkCacheFile = configuration.externalLinkCacheFile;
+        this.threads = configuration.threads;
+        this.incremental = configuration.incremental;
+        this.syncResources = configuration.syncResources;
+        this.compareResourceContent = configuration.compareResourceContent;
+        this.deleteStaleResources = configuration.deleteStaleResources;
+        this.snapshotFile = configuration.snapshotFile;
+        this.inputEncoding = configuration.inputEncoding;
+        this.outputEncoding = configuration.outputEncoding;
+        this.atomicOutput = configuration.atomicOutput;
+        this.writeChangedOnly = configuration.writeChangedOnly;
+        this.lowMemory = configuration.lowMemory;
+        this.pipelineDepth = configuration.pipelineDepth;
+        this.localisationThreads = configuration.localisationThreads;
+        this.shareResources = configuration.shareResources;
+        this.shard = configuration.shard;
     }
 
     public boolean validateLinks() {
         return validateLinks;
     }
 
+    /**
+     * Determines if the fragments of the links to the pages of the site are
+     * validated against the anchors of the target pages, i.e. their id
+     * attributes and the name attributes of their a tags.
+     * 
+     * @return A boolean <code>true</code> if validating anchors
+     */
+    public boolean isValidateAnchors() {
+        return validateAnchors;
+    }
+
+    public void setValidateAnchors(boolean validateAnchors) {
+        this.validateAnchors = validateAnchors;
+    }
+
+    /**
+     * Determines if the external http and https links are verified by
+     * requesting them
+     * 
+     * @return A boolean <code>true</code> if verifying external links
+     */
+    public boolean isVerifyExternalLinks() {
+        return verifyExternalLinks;
+    }
+
+    public void setVerifyExternalLinks(boolean verifyExternalLinks) {
+        this.verifyExternalLinks = verifyExternalLinks;
+    }
+
+    /**
+     * Returns the file caching the external links found alive between builds
+     * 
+     * @return The cache File, or <code>null</code> if not caching
+     */
+    public File getExternalLinkCacheFile() {
+        return externalLinkCacheFile;
+    }
+
+    public void setExternalLinkCacheFile(File externalLinkCacheFile) {
+        this.externalLinkCacheFile = externalLinkCacheFile;
+    }
+
+    /**
+     * Returns the number of threads used to extract and skin pages, and to
+     * verify links. Any value lower than 2
+     * (including the default of a configuration that does not specify it)
+     * means pages are skinned serially.
+     * 
+     * @return The number of threads, always at least 1
+     */
+    public int getThreads() {
+        return threads > 1 ? threads : 1;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Determines if only the pages whose inputs changed since the previous
+     * build into the same output directory are skinned.
+     * 
+     * @return A boolean <code>true</code> if building incrementally
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Determines if resources are synchronised, i.e. only new or changed
+     * resources are copied to the output directory.
+     * 
+     * @return A boolean <code>true</code> if synchronising resources
+     */
+    public boolean isSyncResources() {
+        return syncResources;
+    }
+
+    public void setSyncResources(boolean syncResources) {
+        this.syncResources = syncResources;
+    }
+
+    /**
+     * Determines if synchronised resources of the same size are compared by
+     * content rather than by modification time.
+     * 
+     * @return A boolean <code>true</code> if comparing content
+     */
+    public boolean isCompareResourceContent() {
+        return compareResourceContent;
+    }
+
+    public void setCompareResourceContent(boolean compareResourceContent) {
+        this.compareResourceContent = compareResourceContent;
+    }
+
+    /**
+     * Determines if synchronising resources deletes the previously copied
+     * resources which no longer exist in the resource directories.
+     * 
+     * @return A boolean <code>true</code> if deleting stale resources
+     */
+    public boolean isDeleteStaleResources() {
+        return deleteStaleResources;
+    }
+
+    public void setDeleteStaleResources(boolean deleteStaleResources) {
+        this.deleteStaleResources = deleteStaleResources;
+    }
+
+    /**
+     * Returns the file holding the snapshot of the pages extracted by the
+     * previous build, so that unchanged pages need not be extracted again.
+     * 
+     * @return The snapshot File or <code>null</code> if no snapshot is kept
+     */
+    public File getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    public void setSnapshotFile(File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Returns the name of the charset used to read the content pages.
+     * 
+     * @return The charset name or <code>null</code> for the platform default
+     */
+    public String getInputEncoding() {
+        return inputEncoding;
+    }
+
+    public void setInputEncoding(String inputEncoding) {
+        this.inputEncoding = inputEncoding;
+    }
+
+    /**
+     * Returns the name of the charset used to write pages.
+     * 
+     * @return The charset name or <code>null</code> for the platform default
+     */
+    public String getOutputEncoding() {
+        return outputEncoding;
+    }
+
+    public void setOutputEncoding(String outputEncoding) {
+        this.outputEncoding = outputEncoding;
+    }
+
+    /**
+     * Determines if pages are written to a temporary file which is then
+     * renamed, so that a partially written page is never visible.
+     * 
+     * @return A boolean <code>true</code> if writing pages atomically
+     */
+    public boolean isAtomicOutput() {
+        return atomicOutput;
+    }
+
+    public void setAtomicOutput(boolean atomicOutput) {
+        this.atomicOutput = atomicOutput;
+    }
+
+    /**
+     * Determines if pages are only written when their content differs from
+     * the existing output, leaving unchanged pages and their modification
+     * time untouched.
+     * 
+     * @return A boolean <code>true</code> if writing changed pages only
+     */
+    public boolean isWriteChangedOnly() {
+        return writeChangedOnly;
+    }
+
+    public void setWriteChangedOnly(boolean writeChangedOnly) {
+        this.writeChangedOnly = writeChangedOnly;
+    }
+
+    /**
+     * Determines if pages keep only their metadata once extracted, their head
+     * and body being extracted again when skinned and released afterwards.
+     * 
+     * @return A boolean <code>true</code> if building with low memory
+     */
+    public boolean isLowMemory() {
+        return lowMemory;
+    }
+
+    public void setLowMemory(boolean lowMemory) {
+        this.lowMemory = lowMemory;
+    }
+
+    /**
+     * Returns the depth of the queue of pages whose content is loaded ahead of
+     * skinning. A positive depth builds in a pipeline, where the content of
+     * the pages is loaded while other pages are skinned and written, using as
+     * many skinning threads as configured. Combined with low memory, the
+     * number of pages holding their content at once is then bounded.
+     * 
+     * @return The pipeline depth, or 0 if not building in a pipeline
+     */
+    public int getPipelineDepth() {
+        return pipelineDepth > 0 ? pipelineDepth : 0;
+    }
+
+    public void setPipelineDepth(int pipelineDepth) {
+        this.pipelineDepth = pipelineDepth;
+    }
+
+    /**
+     * Returns the number of sites of the default language and of the
+     * localisations built at the same time. Each site is extracted and skinned
+     * with the configured number of threads. Any value lower than 2 means the
+     * sites are built one after the other.
+     * 
+     * @return The number of threads, always at least 1
+     */
+    public int getLocalisationThreads() {
+        return localisationThreads > 1 ? localisationThreads : 1;
+    }
+
+    public void setLocalisationThreads(int localisationThreads) {
+        this.localisationThreads = localisationThreads;
+    }
+
+    /**
+     * Determines if the resources shared by the localisations with the default
+     * language are only copied to the output directory of the default
+     * language. The skins refer to them via the <code>resourcesRoot</code>
+     * property, which gives the path to them from each page.
+     * 
+     * @return A boolean <code>true</code> if sharing resources
+     */
+    public boolean isShareResources() {
+        return shareResources;
+    }
+
+    public void setShareResources(boolean shareResources) {
+        this.shareResources = shareResources;
+    }
+
+    /**
+     * Returns the shard of the site built, if building only the pages of one
+     * shard. A sharded build writes a partial manifest instead of verifying
+     * links, which are verified once the manifests of all shards are merged.
+     * Resources are only copied by the first shard.
+     * 
+     * @return The Shard, or <code>null</code> if building the whole site
+     */
+    public Shard getShard() {
+        return shard;
+    }
+
+    public void setShard(Shard shard) {
+        this.shard = shard;
+    }
+
 }
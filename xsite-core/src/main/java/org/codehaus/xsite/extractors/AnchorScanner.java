@@ -0,0 +1,132 @@
+package org.codehaus.xsite.extractors;
+
+import java.util.Collection;
+
+/**
+ * Scans the raw HTML of a page for the anchors its links can target, i.e. the
+ * id attributes of any tag and the name attributes of the a tags. Comments
+ * and the content of script and style tags are skipped.
+ * 
+ * @author Mauro Talevi
+ */
+class AnchorScanner {
+
+    private final char[] html;
+    private int position;
+
+    AnchorScanner(char[] html) {
+        this.html = html;
+    }
+
+    /**
+     * Scans the HTML, adding the anchors found
+     * 
+     * @param anchors the Collection the anchor names are added to
+     */
+    void scan(Collection<String> anchors) {
+        position = 0;
+        while (skipTo("<", false)) {
+            position++;
+            if (startsWith("!--", false)) {
+                skipTo("-->", false);
+            } else if (position < html.length && Character.isLetter(html[position])) {
+                String tag = readName();
+                scanAttributes(tag, anchors);
+                if (tag.equalsIgnoreCase("script") || tag.equalsIgnoreCase("style")) {
+                    skipTo("</" + tag, true);
+                }
+            }
+        }
+    }
+
+    private void scanAttributes(String tag, Collection<String> anchors) {
+        while (position < html.length) {
+            char c = html[position];
+            if (c == '>') {
+                position++;
+                return;
+            }
+            if (Character.isWhitespace(c) || c == '/') {
+                position++;
+                continue;
+            }
+            String attribute = readName();
+            if (attribute.length() == 0) {
+                position++;
+                continue;
+            }
+            skipWhitespace();
+            if (position < html.length && html[position] == '=') {
+                position++;
+                skipWhitespace();
+                String value = readValue();
+                if (value.length() > 0
+                        && (attribute.equalsIgnoreCase("id") || (attribute.equalsIgnoreCase("name") && tag
+                                .equalsIgnoreCase("a")))) {
+                    anchors.add(value);
+                }
+            }
+        }
+    }
+
+    private String readName() {
+        int start = position;
+        while (position < html.length) {
+            char c = html[position];
+            if (Character.isWhitespace(c) || c == '=' || c == '>' || c == '/' || c == '"' || c == '\'') {
+                break;
+            }
+            position++;
+        }
+        return new String(html, start, position - start);
+    }
+
+    private String readValue() {
+        if (position < html.length && (html[position] == '"' || html[position] == '\'')) {
+            char quote = html[position++];
+            int start = position;
+            while (position < html.length && html[position] != quote) {
+                position++;
+            }
+            String value = new String(html, start, position - start);
+            position++;
+            return value;
+        }
+        int start = position;
+        while (position < html.length && !Character.isWhitespace(html[position]) && html[position] != '>') {
+            position++;
+        }
+        return new String(html, start, position - start);
+    }
+
+    private void skipWhitespace() {
+        while (position < html.length && Character.isWhitespace(html[position])) {
+            position++;
+        }
+    }
+
+    private boolean startsWith(String text, boolean ignoreCase) {
+        if (position + text.length() > html.length) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = html[position + i];
+            if (c != text.charAt(i)
+                    && (!ignoreCase || Character.toLowerCase(c) != Character.toLowerCase(text.charAt(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean skipTo(String text, boolean ignoreCase) {
+        while (position < html.length) {
+            if (startsWith(text, ignoreCase)) {
+                return true;
+            }
+            position++;
+        }
+        return false;
+    }
+
+}
@@ -2,13 +2,21 @@ package org.codehaus.xsite.extractors;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import org.codehaus.xsite.FileSystem;
-import org.codehaus.xsite.PageExtractor;
+import org.codehaus.xsite.FingerprintedPageExtractor;
+import org.codehaus.xsite.XSiteConfiguration;
+import org.codehaus.xsite.extractors.sitemesh.Fingerprinted;
+import org.codehaus.xsite.extractors.sitemesh.rules.TagRulePrototype;
 import org.codehaus.xsite.io.CommonsFileSystem;
+import org.codehaus.xsite.io.Digests;
 import org.codehaus.xsite.model.Link;
 import org.codehaus.xsite.model.Page;
 
@@ -26,65 +34,106 @@ import com.opensymphony.module.sitemesh.html.util.CharArray;
 
 /**
  * PageExtractor which extract page information from an HTML file using the SiteMesh library.
+ * <p>
+ * The extractor holds no per-page state and can be shared by concurrent extractions. SiteMesh binds each rule to the
+ * processor it is added to, so each page is extracted with the rules created by the rules which are a
+ * {@link TagRulePrototype}. Other rules are shared as configured, and extractions using them are serialised.
+ * </p>
+ * <p>
+ * Files are decoded with the input encoding of the configuration directly into the character array processed by
+ * SiteMesh.
+ * </p>
+ * <p>
+ * The anchors of the page, i.e. the id attributes and the name attributes of the a tags, are indexed so that the
+ * fragments of links can be verified.
+ * </p>
+ * <p>
+ * The fingerprint of the extractor digests the classes of the rules and filters it is configured with and, for those
+ * which are {@link Fingerprinted}, their own fingerprints. It is only computed when asked for, e.g. when pages are kept
+ * in a snapshot.
+ * </p>
  *
  * @author Joe Walnes
  * @author J&ouml;rg Schaible
  */
-public class SiteMeshPageExtractor implements PageExtractor {
+public class SiteMeshPageExtractor implements FingerprintedPageExtractor {
 
-    private Properties properties;
-    private String filename;
-    private String head;
-    private String body;
-    private Collection<Link> links;
     private final TagRule[] rules;
+    private final boolean[] sharedRules;
     private final TextFilter[] filter;
     private final FileSystem fileSystem;
+    private final XSiteConfiguration configuration;
+    private final Object sharedRulesLock = new Object();
 
     public SiteMeshPageExtractor() {
         this(new TagRule[0], new TextFilter[0], new CommonsFileSystem());
     }
 
     public SiteMeshPageExtractor(TagRule[] rules, TextFilter[] filter, FileSystem fileSystem) {
+        this(rules, filter, fileSystem, new XSiteConfiguration());
+    }
+
+    public SiteMeshPageExtractor(TagRule[] rules, TextFilter[] filter, FileSystem fileSystem,
+            XSiteConfiguration configuration) {
         this.rules = rules;
         this.filter = filter;
         this.fileSystem = fileSystem;
+        this.configuration = configuration;
+        this.sharedRules = new boolean[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            sharedRules[i] = !(rules[i] instanceof TagRulePrototype);
+        }
+    }
+
+    public String getFingerprint() {
+        List<String> values = new ArrayList<String>();
+        addFingerprints(rules, values);
+        addFingerprints(filter, values);
+        return Digests.digest(values.toArray(new String[values.size()]));
+    }
+
+    private static void addFingerprints(Object[] rulesOrFilters, List<String> values) {
+        for (Object ruleOrFilter : rulesOrFilters) {
+            values.add(ruleOrFilter.getClass().getName());
+            values.add(ruleOrFilter instanceof Fingerprinted ? ((Fingerprinted) ruleOrFilter).getFingerprint() : null);
+        }
     }
 
     public Page extractPage(File htmlFile) {
-        links = new HashSet<Link>();
         try {
-            filename = htmlFile.getName();
-            extractContentFromHTML(fileSystem.readFile(htmlFile).toCharArray());
-            return new Page(filename, head, body, links, properties);
+            return extractContentFromHTML(htmlFile.getName(), fileSystem.readChars(htmlFile, getInputCharset()));
         } catch (IOException e) {
             throw new CannotParsePageException(e);
         }
     }
 
     public Page extractPage(String filename, String htmlContent) {
-        links = new HashSet<Link>();
         try {
-            this.filename = filename;
-            extractContentFromHTML(htmlContent.toCharArray());
-            return new Page(filename, head, body, links, properties);
+            return extractContentFromHTML(filename, htmlContent.toCharArray());
         } catch (IOException e) {
             throw new CannotParsePageException(e);
         }
     }
 
-    private void extractContentFromHTML(char[] rawHTML) throws IOException {
-        // where to dump properties extracted from the page
-        properties = new Properties();
+    private Charset getInputCharset() {
+        String encoding = configuration.getInputEncoding();
+        return encoding != null ? Charset.forName(encoding) : Charset.defaultCharset();
+    }
+
+    private Page extractContentFromHTML(String filename, char[] rawHTML) throws IOException {
+        // where to dump properties and links extracted from the page
+        final Properties properties = new Properties();
         PageBuilder pageBuilder = new PageBuilder() {
             public void addProperty(String key, String value) {
                 properties.setProperty(key, value);
             }
         };
+        Collection<Link> links = new HashSet<Link>();
 
-        // buffers to hold head and body content
-        CharArray headBuffer = new CharArray(64);
-        CharArray bodyBuffer = new CharArray(4096);
+        // buffers to hold head and body content, the body being sized to
+        // hold the whole page so that it need not grow
+        CharArray headBuffer = new CharArray(Math.min(rawHTML.length, 1024) + 16);
+        CharArray bodyBuffer = new CharArray(rawHTML.length + 16);
 
         // setup rules for html processor
         HTMLProcessor htmlProcessor = new HTMLProcessor(rawHTML, bodyBuffer);
@@ -92,19 +141,34 @@ public class SiteMeshPageExtractor implements PageExtractor {
         htmlProcessor.addRule(new HeadExtractingRule(headBuffer));
         htmlProcessor.addRule(new TitleExtractingRule(pageBuilder));
         htmlProcessor.addRule(new MetaTagRule(pageBuilder));
-        htmlProcessor.addRule(new LinkExtractingRule());
+        htmlProcessor.addRule(new LinkExtractingRule(links));
 
+        boolean usesSharedRules = false;
         for (int i = 0; i < rules.length; i++) {
-             htmlProcessor.addRule(rules[i]);
+            if (sharedRules[i]) {
+                htmlProcessor.addRule(rules[i]);
+                usesSharedRules = true;
+            } else {
+                htmlProcessor.addRule(((TagRulePrototype) rules[i]).newRule());
+            }
         }
         for (int i = 0; i < filter.length; i++) {
             htmlProcessor.addTextFilter(filter[i]);
-       }
+        }
+
+        // index the anchors before the rules and filters can change the HTML
+        Set<String> anchors = new HashSet<String>();
+        new AnchorScanner(rawHTML).scan(anchors);
 
         // go!
-        htmlProcessor.process();
-        this.head = headBuffer.toString();
-        this.body = bodyBuffer.toString();
+        if (usesSharedRules) {
+            synchronized (sharedRulesLock) {
+                htmlProcessor.process();
+            }
+        } else {
+            htmlProcessor.process();
+        }
+        return new Page(filename, headBuffer.toString(), bodyBuffer.toString(), links, anchors, properties);
     }
 
     @SuppressWarnings("serial")
@@ -117,7 +181,13 @@ public class SiteMeshPageExtractor implements PageExtractor {
     /**
      * Rule for HTMLProcessor that records all <a href=""> links.
      */
-    private class LinkExtractingRule extends BasicRule {
+    private static class LinkExtractingRule extends BasicRule {
+
+        private final Collection<Link> links;
+
+        public LinkExtractingRule(Collection<Link> links) {
+            this.links = links;
+        }
 
         public boolean shouldProcess(String tag) {
             return tag.equalsIgnoreCase("a");
@@ -0,0 +1,20 @@
+package org.codehaus.xsite.extractors.sitemesh;
+
+/**
+ * A TagRule or TextFilter which fingerprints the configuration it processes
+ * pages with, so that pages extracted with a different configuration, e.g.
+ * kept in a snapshot, are not reused.
+ *
+ * @author Mauro Talevi
+ */
+public interface Fingerprinted {
+
+    /**
+     * Returns the fingerprint of the configuration
+     *
+     * @return The fingerprint, which is the same for rules or filters
+     *         configured alike
+     */
+    String getFingerprint();
+
+}
@@ -0,0 +1,103 @@
+package org.codehaus.xsite.extractors.sitemesh.filters;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aho-Corasick automaton finding whether any of a set of literals occurs in a
+ * text, in a single pass over the text.
+ *
+ * @author Mauro Talevi
+ */
+class LiteralMatcher {
+
+    private final Node root = new Node();
+
+    LiteralMatcher(String[] literals) {
+        for (String literal : literals) {
+            Node node = root;
+            for (int i = 0; i < literal.length(); i++) {
+                node = node.child(literal.charAt(i), true);
+            }
+            node.terminal = true;
+        }
+        linkFailures();
+    }
+
+    /**
+     * Determines if any literal occurs in the text
+     *
+     * @param text the text to search
+     * @return A boolean <code>true</code> if a literal occurs
+     */
+    boolean occursIn(CharSequence text) {
+        Node node = root;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            Node next = node.child(c, false);
+            while (next == null && node != root) {
+                node = node.failure;
+                next = node.child(c, false);
+            }
+            node = next != null ? next : root;
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void linkFailures() {
+        LinkedList<Node> queue = new LinkedList<Node>();
+        for (Node child : root.children()) {
+            child.failure = root;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.removeFirst();
+            for (Map.Entry<Character, Node> entry : node.entries()) {
+                char c = entry.getKey().charValue();
+                Node child = entry.getValue();
+                Node failure = node.failure;
+                while (failure != root && failure.child(c, false) == null) {
+                    failure = failure.failure;
+                }
+                Node target = failure.child(c, false);
+                child.failure = target != null && target != child ? target : root;
+                child.terminal |= child.failure.terminal;
+                queue.add(child);
+            }
+        }
+    }
+
+    private static class Node {
+        private Map<Character, Node> children;
+        private Node failure;
+        private boolean terminal;
+
+        private Node child(char c, boolean create) {
+            Node child = children != null ? children.get(Character.valueOf(c)) : null;
+            if (child == null && create) {
+                if (children == null) {
+                    children = new HashMap<Character, Node>();
+                }
+                child = new Node();
+                children.put(Character.valueOf(c), child);
+            }
+            return child;
+        }
+
+        private List<Node> children() {
+            return children != null ? new ArrayList<Node>(children.values()) : new ArrayList<Node>();
+        }
+
+        private List<Map.Entry<Character, Node>> entries() {
+            return children != null ? new ArrayList<Map.Entry<Character, Node>>(children.entrySet())
+                    : new ArrayList<Map.Entry<Character, Node>>();
+        }
+    }
+
+}
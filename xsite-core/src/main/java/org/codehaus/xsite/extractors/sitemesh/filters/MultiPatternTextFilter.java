@@ -0,0 +1,218 @@
+package org.codehaus.xsite.extractors.sitemesh.filters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.xsite.extractors.sitemesh.Fingerprinted;
+import org.codehaus.xsite.io.Digests;
+
+import com.opensymphony.module.sitemesh.html.TextFilter;
+
+/**
+ * TextFilter replacing the matches of several regular expressions in a single
+ * pass, as a replacement for a chain of RegexReplacementTextFilter instances.
+ * <p>
+ * The patterns are compiled into a single alternation, and each match is
+ * replaced using the replacement of the pattern it matched, whose group
+ * references ($1, $2, ...) refer to the groups of that pattern. Where the
+ * matches of several patterns overlap, the leftmost match wins, and at the same
+ * position the first pattern wins. If every pattern starts with a literal,
+ * e.g. <code>JIRA:</code>, texts containing none of these literals are left
+ * unchanged without running the regular expression at all. Without any
+ * patterns, all texts are left unchanged.
+ * </p>
+ *
+ * @author Mauro Talevi
+ */
+public class MultiPatternTextFilter implements TextFilter, Fingerprinted {
+
+    private static final String METACHARS = "\\[](){}.*+?^$|";
+
+    private final Pattern pattern;
+    private final int[] groups;
+    private final Replacement[] replacements;
+    private final LiteralMatcher prefilter;
+    private final String fingerprint;
+
+    /**
+     * Creates a MultiPatternTextFilter
+     *
+     * @param patterns the regular expressions to match
+     * @param replacements the replacement of each regular expression
+     */
+    public MultiPatternTextFilter(String[] patterns, String[] replacements) {
+        if (patterns.length != replacements.length) {
+            throw new IllegalArgumentException("Expected one replacement for each of the " + patterns.length
+                    + " patterns, but got " + replacements.length);
+        }
+        this.groups = new int[patterns.length];
+        this.replacements = new Replacement[patterns.length];
+        StringBuilder combined = new StringBuilder();
+        String[] literals = new String[patterns.length];
+        boolean allLiterals = patterns.length > 0;
+        int group = 1;
+        for (int i = 0; i < patterns.length; i++) {
+            int groupCount = Pattern.compile(patterns[i]).matcher("").groupCount();
+            if (i > 0) {
+                combined.append('|');
+            }
+            combined.append('(').append(shiftBackReferences(patterns[i], group)).append(')');
+            groups[i] = group;
+            this.replacements[i] = new Replacement(replacements[i], groupCount);
+            literals[i] = literalPrefix(patterns[i]);
+            allLiterals &= literals[i].length() > 0;
+            group += groupCount + 1;
+        }
+        this.pattern = patterns.length > 0 ? Pattern.compile(combined.toString()) : null;
+        this.prefilter = allLiterals ? new LiteralMatcher(literals) : null;
+        this.fingerprint = Digests.digest(Arrays.toString(patterns), Arrays.toString(replacements));
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public String filter(String text) {
+        if (pattern == null || (prefilter != null && !prefilter.occursIn(text))) {
+            return text;
+        }
+        Matcher matcher = pattern.matcher(text);
+        if (!matcher.find()) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length() + 64);
+        int last = 0;
+        do {
+            int i = 0;
+            while (matcher.start(groups[i]) < 0) {
+                i++;
+            }
+            sb.append(text, last, matcher.start());
+            replacements[i].appendTo(sb, matcher, groups[i]);
+            last = matcher.end();
+        } while (matcher.find());
+        return sb.append(text, last, text.length()).toString();
+    }
+
+    /**
+     * Renumbers the back references of a pattern nested at the given group
+     */
+    private static String shiftBackReferences(String pattern, int group) {
+        StringBuilder sb = new StringBuilder(pattern.length());
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length()) {
+                char next = pattern.charAt(++i);
+                if (next == 'Q') {
+                    int end = pattern.indexOf("\\E", i);
+                    end = end < 0 ? pattern.length() : end + 2;
+                    sb.append(pattern, i - 1, end);
+                    i = end - 1;
+                } else if (next >= '1' && next <= '9') {
+                    int start = i;
+                    while (i + 1 < pattern.length() && Character.isDigit(pattern.charAt(i + 1))) {
+                        i++;
+                    }
+                    sb.append('\\').append(Integer.parseInt(pattern.substring(start, i + 1)) + group);
+                } else {
+                    sb.append(c).append(next);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the literal every match of a pattern starts with, or an empty
+     * String if there is none
+     */
+    private static String literalPrefix(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (pattern.charAt(i) == '\\') {
+                i++;
+            } else if (pattern.charAt(i) == '|') {
+                return "";
+            }
+        }
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\\' && i + 1 < pattern.length() && !Character.isLetterOrDigit(pattern.charAt(i + 1))) {
+                literal.append(pattern.charAt(i + 1));
+                i += 2;
+            } else if (METACHARS.indexOf(c) < 0) {
+                literal.append(c);
+                i++;
+            } else {
+                break;
+            }
+        }
+        if (i < pattern.length() && "?*{".indexOf(pattern.charAt(i)) >= 0 && literal.length() > 0) {
+            // the last character is optional
+            literal.setLength(literal.length() - 1);
+        }
+        return literal.toString();
+    }
+
+    /**
+     * Replacement parsed into literal text and group references, with the
+     * same syntax as Matcher.appendReplacement
+     */
+    private static class Replacement {
+
+        private final List<Object> parts = new ArrayList<Object>();
+
+        private Replacement(String replacement, int groupCount) {
+            StringBuilder literal = new StringBuilder();
+            for (int i = 0; i < replacement.length(); i++) {
+                char c = replacement.charAt(i);
+                if (c == '\\' && i + 1 < replacement.length()) {
+                    literal.append(replacement.charAt(++i));
+                } else if (c == '$' && i + 1 < replacement.length() && Character.isDigit(replacement.charAt(i + 1))) {
+                    int group = replacement.charAt(++i) - '0';
+                    while (i + 1 < replacement.length() && Character.isDigit(replacement.charAt(i + 1))) {
+                        int next = group * 10 + replacement.charAt(i + 1) - '0';
+                        if (next > groupCount) {
+                            break;
+                        }
+                        group = next;
+                        i++;
+                    }
+                    if (group > groupCount) {
+                        throw new IndexOutOfBoundsException("No group " + group + " in replacement " + replacement);
+                    }
+                    if (literal.length() > 0) {
+                        parts.add(literal.toString());
+                        literal.setLength(0);
+                    }
+                    parts.add(Integer.valueOf(group));
+                } else {
+                    literal.append(c);
+                }
+            }
+            if (literal.length() > 0) {
+                parts.add(literal.toString());
+            }
+        }
+
+        private void appendTo(StringBuilder sb, Matcher matcher, int offset) {
+            for (Object part : parts) {
+                if (part instanceof Integer) {
+                    String value = matcher.group(offset + ((Integer) part).intValue());
+                    if (value != null) {
+                        sb.append(value);
+                    }
+                } else {
+                    sb.append((String) part);
+                }
+            }
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package org.codehaus.xsite.extractors.sitemesh.rules;
 import com.opensymphony.module.sitemesh.html.BasicRule;
 import com.opensymphony.module.sitemesh.html.CustomTag;
 import com.opensymphony.module.sitemesh.html.Tag;
+import com.opensymphony.module.sitemesh.html.TagRule;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -10,7 +11,7 @@ import java.util.regex.Pattern;
 /**
  * Rule for HTMLProcessor that adds class=""FirstChild" to the first header of the body if it is the first element.
  */
-public class AddFirstChildClassToHeader extends BasicRule {
+public class AddFirstChildClassToHeader extends BasicRule implements TagRulePrototype {
     private boolean firstChildIsHeader = true;
     private final Pattern pattern;
 
@@ -18,6 +19,10 @@ public class AddFirstChildClassToHeader extends BasicRule {
         pattern = Pattern.compile("^H[1-9]$", Pattern.CASE_INSENSITIVE);
     }
 
+    public TagRule newRule() {
+        return new AddFirstChildClassToHeader();
+    }
+
     public boolean shouldProcess(String tag) {
         final Matcher matcher = pattern.matcher(tag);
         return tag.equalsIgnoreCase("p") || matcher.matches();
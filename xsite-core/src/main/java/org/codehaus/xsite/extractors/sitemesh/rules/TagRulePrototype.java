@@ -0,0 +1,22 @@
+package org.codehaus.xsite.extractors.sitemesh.rules;
+
+import com.opensymphony.module.sitemesh.html.TagRule;
+
+/**
+ * A TagRule which creates the rules used to extract each page. SiteMesh binds a
+ * rule to the processor it is added to, so rules holding per-page state, or
+ * which are to be used by concurrent extractions, create a new rule for each
+ * page, carrying over the state they were configured with.
+ *
+ * @author Mauro Talevi
+ */
+public interface TagRulePrototype extends TagRule {
+
+    /**
+     * Creates the rule used to extract a page
+     *
+     * @return A new TagRule, configured as this one
+     */
+    TagRule newRule();
+
+}
@@ -3,14 +3,17 @@ package org.codehaus.xsite.factories;
 import java.util.Map;
 
 import org.codehaus.xsite.LinkValidator;
+import org.codehaus.xsite.PageExtractor;
 import org.codehaus.xsite.XSite;
 import org.codehaus.xsite.XSiteConfiguration;
 import org.codehaus.xsite.XSiteFactory;
 import org.codehaus.xsite.extractors.SiteMeshPageExtractor;
-import org.codehaus.xsite.io.CommonsFileSystem;
+import org.codehaus.xsite.io.ConcurrentFileSystem;
 import org.codehaus.xsite.loaders.XStreamSitemapLoader;
 import org.codehaus.xsite.skins.FreemarkerSkin;
 
+import com.opensymphony.module.sitemesh.html.TagRule;
+import com.opensymphony.module.sitemesh.html.TextFilter;
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.io.xml.DomDriver;
 
@@ -22,8 +25,12 @@ import com.thoughtworks.xstream.io.xml.DomDriver;
 public class DefaultXSiteFactory implements XSiteFactory {
 
     public XSite createXSite(Map<?,?> config) {
-        return new XSite(new XStreamSitemapLoader(new SiteMeshPageExtractor(), new XStream(new DomDriver())),
-                new FreemarkerSkin(), new LinkValidator[0], new CommonsFileSystem(), new XSiteConfiguration());
+        XSiteConfiguration configuration = new XSiteConfiguration();
+        ConcurrentFileSystem fileSystem = new ConcurrentFileSystem(configuration);
+        PageExtractor pageExtractor = new SiteMeshPageExtractor(new TagRule[0], new TextFilter[0], fileSystem,
+                configuration);
+        return new XSite(new XStreamSitemapLoader(pageExtractor, new XStream(new DomDriver()), configuration),
+                new FreemarkerSkin(configuration), new LinkValidator[0], fileSystem, configuration, pageExtractor);
     }
 
 }
@@ -0,0 +1,152 @@
+package org.codehaus.xsite.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+import org.codehaus.xsite.Shard;
+import org.codehaus.xsite.io.CommonsFileSystem.FileSystemException;
+
+/**
+ * Records the digests of the inputs of a build, so that a later build can
+ * tell which pages need to be skinned again. Inputs are either shared by all
+ * pages (e.g. the skin) or specific to a single page.
+ * <p>
+ * Each shard of a sharded build keeps its own manifest, recording only the
+ * pages of the shard, so that the shards built into the same output directory
+ * do not record pages skinned by the others.
+ * </p>
+ * <p>
+ * The manifests are stored in the output directory, but are not part of the
+ * site and need not be deployed.
+ * </p>
+ * 
+ * @author Mauro Talevi
+ */
+public class BuildManifest {
+
+    public static final String FILENAME = ".xsite-manifest";
+
+    private static final String INPUT_PREFIX = "input.";
+    private static final String PAGE_PREFIX = "page.";
+
+    private final Properties digests;
+
+    public BuildManifest() {
+        this(new Properties());
+    }
+
+    private BuildManifest(Properties digests) {
+        this.digests = digests;
+    }
+
+    /**
+     * Loads the manifest stored in a directory
+     * 
+     * @param directory the directory holding the manifest
+     * @return The BuildManifest, empty if none has been stored
+     */
+    public static BuildManifest load(File directory) {
+        return load(directory, null);
+    }
+
+    /**
+     * Loads the manifest of a shard stored in a directory
+     * 
+     * @param directory the directory holding the manifest
+     * @param shard the Shard, or <code>null</code> if the build is not sharded
+     * @return The BuildManifest, empty if none has been stored
+     */
+    public static BuildManifest load(File directory, Shard shard) {
+        File file = new File(directory, filename(shard));
+        Properties digests = new Properties();
+        if (file.isFile()) {
+            try {
+                InputStream input = new BufferedInputStream(new FileInputStream(file));
+                try {
+                    digests.load(input);
+                } finally {
+                    input.close();
+                }
+            } catch (IOException e) {
+                throw new FileSystemException("Cannot read build manifest " + file, e);
+            }
+        }
+        return new BuildManifest(digests);
+    }
+
+    public void store(File directory) {
+        store(directory, null);
+    }
+
+    /**
+     * Stores the manifest of a shard in a directory
+     * 
+     * @param directory the directory to hold the manifest
+     * @param shard the Shard, or <code>null</code> if the build is not sharded
+     */
+    public void store(File directory, Shard shard) {
+        File file = new File(directory, filename(shard));
+        try {
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                digests.store(output, "XSite build manifest");
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new FileSystemException("Cannot write build manifest " + file, e);
+        }
+    }
+
+    private static String filename(Shard shard) {
+        if (shard == null) {
+            return FILENAME;
+        }
+        return FILENAME + "-" + shard.getIndex() + "-of-" + shard.getCount();
+    }
+
+    public String getInput(String name) {
+        return digests.getProperty(INPUT_PREFIX + name);
+    }
+
+    public void setInput(String name, String digest) {
+        digests.setProperty(INPUT_PREFIX + name, digest);
+    }
+
+    public String getPage(String filename) {
+        return digests.getProperty(PAGE_PREFIX + filename);
+    }
+
+    public void setPage(String filename, String digest) {
+        digests.setProperty(PAGE_PREFIX + filename, digest);
+    }
+
+    /**
+     * Determines if the inputs shared by all pages are the same in both manifests
+     * 
+     * @param other the other BuildManifest
+     * @return A boolean <code>true</code> if all shared inputs are equal
+     */
+    public boolean hasSameInputs(BuildManifest other) {
+        return inputs().equals(other.inputs());
+    }
+
+    private Properties inputs() {
+        Properties inputs = new Properties();
+        for (Object key : digests.keySet()) {
+            String name = (String) key;
+            if (name.startsWith(INPUT_PREFIX)) {
+                inputs.setProperty(name, digests.getProperty(name));
+            }
+        }
+        return inputs;
+    }
+
+}
@@ -7,12 +7,27 @@ import static org.apache.commons.io.filefilter.FileFilterUtils.makeDirectoryOnly
 import static org.apache.commons.io.filefilter.FileFilterUtils.makeFileOnly;
 import static org.apache.commons.lang.StringUtils.difference;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.FileFilterUtils;
 import org.apache.commons.io.filefilter.IOFileFilter;
+import org.codehaus.xsite.CopyStatistics;
 import org.codehaus.xsite.FileSystem;
 
 /**
@@ -25,6 +40,17 @@ public class CommonsFileSystem implements FileSystem {
 
     private static final IOFileFilter SVN_AWARE_FILTER = FileFilterUtils.makeSVNAware(null);
 
+    /**
+     * The record, kept in the target directory, of the source directory each
+     * synchronised file was copied from. Source directories are recorded by
+     * their path relative to the target directory, so that the record holds
+     * no absolute paths of the build machine. It is not part of the site and
+     * need not be deployed.
+     */
+    public static final String SYNC_RECORD = ".xsite-resources";
+
+    private final ThreadLocal<TextDecoder> decoders = new ThreadLocal<TextDecoder>();
+
     public String readFile(File file) {
         try {
             return readFileToString(file);
@@ -33,9 +59,32 @@ public class CommonsFileSystem implements FileSystem {
         }
     }
 
+    /**
+     * Reads the content of a file into an array of characters, decoding it
+     * directly from a reused byte buffer, or from a memory mapping for large
+     * files, without an intermediate String.
+     */
+    public char[] readChars(File file, Charset charset) {
+        TextDecoder decoder = decoders.get();
+        if (decoder == null || !decoder.getCharset().equals(charset)) {
+            decoder = new TextDecoder(charset);
+            decoders.set(decoder);
+        }
+        try {
+            FileInputStream input = new FileInputStream(file);
+            try {
+                return decoder.decode(input.getChannel());
+            } finally {
+                input.close();
+            }
+        } catch (Exception e) {
+            throw new FileSystemException("Cannot read content from file " + file, e);
+        }
+    }
+
     public void copyFile(File source, File destination) {
         try {
-            copyFile(source, destination);
+            FileUtils.copyFile(source, destination);
         } catch (Exception e) {
             throw new FileSystemException("Failed to copy file " + source + " to " + destination, e);
         }
@@ -57,6 +106,198 @@ public class CommonsFileSystem implements FileSystem {
         }
     }
 
+    public CopyStatistics syncDirectory(File sourceDirectory, File targetDirectory, boolean recurse,
+            boolean compareContent, boolean deleteStale) {
+        if (!sourceDirectory.isDirectory()) {
+            throw new FileSystemException("Source must be a directory " + sourceDirectory, null);
+        }
+        CopyStatistics statistics = new CopyStatistics();
+        try {
+            Set<String> syncedPaths = syncFiles(sourceDirectory, targetDirectory, recurse, compareContent, statistics);
+            updateSyncRecord(sourceDirectory, targetDirectory, syncedPaths, deleteStale, statistics);
+        } catch (Exception e) {
+            throw new FileSystemException("Failed to sync directory " + sourceDirectory + " to " + targetDirectory, e);
+        }
+        return statistics;
+    }
+
+    /**
+     * Synchronises the files of the source directory to the target directory
+     * 
+     * @param sourceDirectory the source directory
+     * @param targetDirectory the target directory
+     * @param recurse if <code>true</code> recurses into sub-directories
+     * @param compareContent if <code>true</code> compares content rather than
+     *            modification time
+     * @param statistics the CopyStatistics to update
+     * @return The Set of synchronised paths, relative to the source directory
+     *         and separated by '/'
+     * @throws Exception
+     */
+    protected Set<String> syncFiles(File sourceDirectory, File targetDirectory, boolean recurse,
+            boolean compareContent, CopyStatistics statistics) throws Exception {
+        Set<String> syncedPaths = new HashSet<String>();
+        for (File relativeFile : filterRelativeFiles(sourceDirectory, getFileFilter(), recurse)) {
+            File sourceFile = new File(sourceDirectory, relativeFile.getPath());
+            File targetFile = new File(targetDirectory, relativeFile.getPath());
+            syncFile(sourceFile, targetFile, compareContent, statistics);
+            syncedPaths.add(toRecordPath(relativeFile));
+        }
+        return syncedPaths;
+    }
+
+    /**
+     * Copies a source file to the target file if the target is missing or
+     * differs from the source.
+     * 
+     * @param sourceFile the source File
+     * @param targetFile the target File
+     * @param compareContent if <code>true</code> compares content rather than
+     *            modification time
+     * @param statistics the CopyStatistics to update
+     * @throws IOException
+     */
+    protected void syncFile(File sourceFile, File targetFile, boolean compareContent, CopyStatistics statistics)
+            throws IOException {
+        if (isUpToDate(sourceFile, targetFile, compareContent)) {
+            statistics.skipped();
+        } else {
+            transferFile(sourceFile, targetFile);
+            statistics.copied(sourceFile.length());
+        }
+    }
+
+    private boolean isUpToDate(File sourceFile, File targetFile, boolean compareContent) {
+        if (!targetFile.isFile() || targetFile.length() != sourceFile.length()) {
+            return false;
+        }
+        if (compareContent) {
+            return Digests.digest(sourceFile).equals(Digests.digest(targetFile));
+        }
+        return targetFile.lastModified() == sourceFile.lastModified();
+    }
+
+    /**
+     * Copies a file through file channels, preserving its modification time
+     * 
+     * @param sourceFile the source File
+     * @param targetFile the target File
+     * @throws IOException
+     */
+    protected void transferFile(File sourceFile, File targetFile) throws IOException {
+        File targetDirectory = targetFile.getParentFile();
+        if (targetDirectory != null && !targetDirectory.mkdirs() && !targetDirectory.isDirectory()) {
+            throw new IOException("Cannot create directory " + targetDirectory);
+        }
+        FileInputStream input = new FileInputStream(sourceFile);
+        try {
+            FileOutputStream output = new FileOutputStream(targetFile);
+            try {
+                FileChannel source = input.getChannel();
+                FileChannel target = output.getChannel();
+                long size = source.size();
+                long position = 0;
+                while (position < size) {
+                    position += source.transferTo(position, size - position, target);
+                }
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+        targetFile.setLastModified(sourceFile.lastModified());
+    }
+
+    /**
+     * Records the files synchronised from the source directory, deleting if
+     * required those recorded by a previous synchronisation which no longer
+     * exist in the source. Only files recorded as coming from the same source
+     * directory are deleted, so content generated or copied from other
+     * directories into the target is left untouched.
+     */
+    private synchronized void updateSyncRecord(File sourceDirectory, File targetDirectory, Set<String> syncedPaths,
+            boolean deleteStale, CopyStatistics statistics) throws IOException {
+        File recordFile = new File(targetDirectory, SYNC_RECORD);
+        Properties record = new Properties();
+        if (recordFile.isFile()) {
+            InputStream input = new BufferedInputStream(new FileInputStream(recordFile));
+            try {
+                record.load(input);
+            } finally {
+                input.close();
+            }
+        }
+        String canonicalSource = sourceDirectory.getCanonicalPath();
+        String source = relativePath(targetDirectory.getCanonicalFile(), sourceDirectory.getCanonicalFile());
+        for (Object key : new ArrayList<Object>(record.keySet())) {
+            String path = (String) key;
+            String recordedSource = record.getProperty(path);
+            // records written by earlier versions hold the canonical path
+            if ((source.equals(recordedSource) || canonicalSource.equals(recordedSource))
+                    && !syncedPaths.contains(path)) {
+                if (deleteStale) {
+                    File staleFile = new File(targetDirectory, path);
+                    if (staleFile.delete()) {
+                        statistics.deleted();
+                    }
+                    record.remove(path);
+                }
+            }
+        }
+        for (String path : syncedPaths) {
+            record.setProperty(path, source);
+        }
+        targetDirectory.mkdirs();
+        OutputStream output = new BufferedOutputStream(new FileOutputStream(recordFile));
+        try {
+            record.store(output, "XSite synchronised resources");
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Returns the path of a directory relative to another, separated by '/',
+     * or the digest of its path if they share no root
+     */
+    private static String relativePath(File from, File to) {
+        List<String> fromNames = names(from);
+        List<String> toNames = names(to);
+        int common = 0;
+        while (common < fromNames.size() && common < toNames.size()
+                && fromNames.get(common).equals(toNames.get(common))) {
+            common++;
+        }
+        if (common == 0) {
+            return Digests.digest(to.getPath());
+        }
+        StringBuilder path = new StringBuilder();
+        for (int i = common; i < fromNames.size(); i++) {
+            path.append("../");
+        }
+        for (int i = common; i < toNames.size(); i++) {
+            path.append(toNames.get(i)).append('/');
+        }
+        return path.length() > 0 ? path.toString() : "./";
+    }
+
+    private static List<String> names(File file) {
+        List<String> names = new ArrayList<String>();
+        for (File parent = file; parent != null; parent = parent.getParentFile()) {
+            names.add(0, parent.getParentFile() != null ? parent.getName() : parent.getPath());
+        }
+        return names;
+    }
+
+    private String toRecordPath(File relativeFile) {
+        String path = relativeFile.getPath().replace(File.separatorChar, '/');
+        while (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        return path;
+    }
+
     @SuppressWarnings("unchecked")
     private Collection<File> filterRelativeFiles(File sourceDirectory, IOFileFilter filter, boolean recurse) {
         Collection<File> files = listFiles(sourceDirectory, makeFileOnly(filter),
@@ -0,0 +1,134 @@
+package org.codehaus.xsite.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.filefilter.IOFileFilter;
+import org.codehaus.xsite.CopyStatistics;
+import org.codehaus.xsite.Futures;
+import org.codehaus.xsite.XSiteConfiguration;
+
+/**
+ * FileSystem which walks directory trees once, computing relative paths as it
+ * descends, and copies the files on a bounded pool of threads while the walk
+ * proceeds. The number of threads is given by the XSiteConfiguration.
+ * 
+ * @author Mauro Talevi
+ */
+public class ConcurrentFileSystem extends CommonsFileSystem {
+
+    private static final int QUEUED_FILES_PER_THREAD = 16;
+
+    private final XSiteConfiguration configuration;
+
+    public ConcurrentFileSystem() {
+        this(new XSiteConfiguration());
+    }
+
+    public ConcurrentFileSystem(XSiteConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    public void copyDirectory(File sourceDirectory, File targetDirectory, boolean recurse) {
+        if (!sourceDirectory.isDirectory()) {
+            throw new FileSystemException("Source must be a directory " + sourceDirectory, null);
+        }
+        try {
+            walk(sourceDirectory, targetDirectory, recurse, new FileTask() {
+                public void process(File sourceFile, File targetFile) throws Exception {
+                    transferFile(sourceFile, targetFile);
+                }
+            });
+        } catch (Exception e) {
+            throw new FileSystemException("Failed to copy directory " + sourceDirectory + " to " + targetDirectory, e);
+        }
+    }
+
+    protected Set<String> syncFiles(File sourceDirectory, File targetDirectory, boolean recurse,
+            final boolean compareContent, final CopyStatistics statistics) throws Exception {
+        return walk(sourceDirectory, targetDirectory, recurse, new FileTask() {
+            public void process(File sourceFile, File targetFile) throws Exception {
+                syncFile(sourceFile, targetFile, compareContent, statistics);
+            }
+        });
+    }
+
+    /**
+     * Walks the source directory, processing each accepted file.
+     * 
+     * @return The Set of processed paths, relative to the source directory and
+     *         separated by '/'
+     */
+    private Set<String> walk(File sourceDirectory, File targetDirectory, boolean recurse, FileTask task)
+            throws Exception {
+        Set<String> paths = Collections.synchronizedSet(new HashSet<String>());
+        int threads = configuration.getThreads();
+        if (threads == 1) {
+            walk(sourceDirectory, targetDirectory, "", recurse, getFileFilter(), task, null, null, paths);
+            return paths;
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * QUEUED_FILES_PER_THREAD),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        try {
+            List<Future<?>> results = new ArrayList<Future<?>>();
+            walk(sourceDirectory, targetDirectory, "", recurse, getFileFilter(), task, executor, results, paths);
+            for (Future<?> result : results) {
+                Futures.await(result, Exception.class, "processing files");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return paths;
+    }
+
+    private void walk(File sourceDirectory, File targetDirectory, String relativePath, boolean recurse,
+            IOFileFilter filter, final FileTask task, ThreadPoolExecutor executor, List<Future<?>> results,
+            Set<String> paths) throws Exception {
+        File[] files = sourceDirectory.listFiles();
+        if (files == null) {
+            throw new FileSystemException("Cannot list directory " + sourceDirectory, null);
+        }
+        for (final File file : files) {
+            if (!filter.accept(file)) {
+                continue;
+            }
+            String path = relativePath + file.getName();
+            final File targetFile = new File(targetDirectory, file.getName());
+            if (file.isDirectory()) {
+                if (recurse) {
+                    walk(file, targetFile, path + "/", recurse, filter, task, executor, results, paths);
+                }
+            } else if (executor == null) {
+                task.process(file, targetFile);
+                paths.add(path);
+            } else {
+                results.add(executor.submit(new Runnable() {
+                    public void run() {
+                        try {
+                            task.process(file, targetFile);
+                        } catch (RuntimeException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new FileSystemException("Failed to copy file " + file + " to " + targetFile, e);
+                        }
+                    }
+                }));
+                paths.add(path);
+            }
+        }
+    }
+
+    private static interface FileTask {
+        void process(File sourceFile, File targetFile) throws Exception;
+    }
+
+}
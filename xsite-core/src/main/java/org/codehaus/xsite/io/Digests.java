@@ -0,0 +1,157 @@
+package org.codehaus.xsite.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.io.CommonsFileSystem.FileSystemException;
+
+/**
+ * Computes hex-encoded SHA-1 digests of content, used to detect changes between builds.
+ * 
+ * @author Mauro Talevi
+ */
+public class Digests {
+
+    private static final String ALGORITHM = "SHA-1";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final Pattern INCLUDE = Pattern.compile("[<\\[]#(?:include|import)\\s+[\"']([^\"']+)[\"']");
+
+    private Digests() {
+    }
+
+    /**
+     * Digests the content of a file
+     * 
+     * @param file the File
+     * @return The hex-encoded digest
+     */
+    public static String digest(File file) {
+        MessageDigest digest = newDigest();
+        try {
+            InputStream input = new FileInputStream(file);
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new FileSystemException("Cannot digest content of file " + file, e);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Digests the content of a template and of the templates it includes or
+     * imports, following the FreeMarker directives with literal paths, which
+     * are relative to the including template or, if absolute, to the
+     * directory of the template.
+     * 
+     * @param template the template File
+     * @return The hex-encoded digest
+     */
+    public static String digestTemplate(File template) {
+        File root = template.getAbsoluteFile().getParentFile();
+        List<String> values = new ArrayList<String>();
+        addTemplate(root, template.getAbsoluteFile(), new HashSet<File>(), values);
+        return digest(values.toArray(new String[values.size()]));
+    }
+
+    private static void addTemplate(File root, File template, Set<File> added, List<String> values) {
+        if (!added.add(template)) {
+            return;
+        }
+        if (!template.isFile()) {
+            values.add(null);
+            return;
+        }
+        values.add(digest(template));
+        String content;
+        try {
+            content = FileUtils.readFileToString(template);
+        } catch (IOException e) {
+            throw new FileSystemException("Cannot read template " + template, e);
+        }
+        Matcher matcher = INCLUDE.matcher(content);
+        while (matcher.find()) {
+            String path = matcher.group(1);
+            File included = path.startsWith("/") ? new File(root, path.substring(1)) : new File(template
+                    .getParentFile(), path);
+            addTemplate(root, included, added, values);
+        }
+    }
+
+    /**
+     * Digests a sequence of values. Each value is delimited by its length, so
+     * that different sequences never produce the same input to the digest.
+     * 
+     * @param values the values, which may be <code>null</code>
+     * @return The hex-encoded digest
+     */
+    public static String digest(String... values) {
+        MessageDigest digest = newDigest();
+        try {
+            for (String value : values) {
+                if (value == null) {
+                    digest.update((byte) 0);
+                } else {
+                    byte[] bytes = value.getBytes("UTF-8");
+                    digest.update((byte) 1);
+                    digest.update(String.valueOf(bytes.length).getBytes("UTF-8"));
+                    digest.update((byte) ':');
+                    digest.update(bytes);
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Digests a range of bytes
+     * 
+     * @param bytes the byte array
+     * @param offset the offset of the first byte
+     * @param length the number of bytes
+     * @return The hex-encoded digest
+     */
+    public static String digest(byte[] bytes, int offset, int length) {
+        MessageDigest digest = newDigest();
+        digest.update(bytes, offset, length);
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " not supported by this JVM", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+
+}
@@ -0,0 +1,98 @@
+package org.codehaus.xsite.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detects the files changed in a set of directories by comparing their
+ * modification time and length from one poll to the next. Files added and
+ * deleted are reported as changed.
+ * 
+ * @author Mauro Talevi
+ */
+public class DirectoryPoller {
+
+    private final File[] directories;
+    private Map<File, FileState> states;
+
+    /**
+     * Creates a DirectoryPoller, recording the current state of the files
+     * 
+     * @param directories the directories to poll, recursively
+     */
+    public DirectoryPoller(File[] directories) {
+        this.directories = directories.clone();
+        this.states = scan();
+    }
+
+    /**
+     * Returns the files changed since the previous poll
+     * 
+     * @return The List of changed File, with absolute paths
+     */
+    public List<File> poll() {
+        Map<File, FileState> current = scan();
+        List<File> changed = new ArrayList<File>();
+        for (Map.Entry<File, FileState> entry : current.entrySet()) {
+            if (!entry.getValue().equals(states.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (File file : states.keySet()) {
+            if (!current.containsKey(file)) {
+                changed.add(file);
+            }
+        }
+        states = current;
+        return changed;
+    }
+
+    private Map<File, FileState> scan() {
+        Map<File, FileState> states = new HashMap<File, FileState>();
+        for (File directory : directories) {
+            scan(directory.getAbsoluteFile(), states);
+        }
+        return states;
+    }
+
+    private void scan(File directory, Map<File, FileState> states) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                scan(file, states);
+            } else {
+                states.put(file, new FileState(file.lastModified(), file.length()));
+            }
+        }
+    }
+
+    private static class FileState {
+
+        private final long lastModified;
+        private final long length;
+
+        private FileState(long lastModified, long length) {
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof FileState)) {
+                return false;
+            }
+            FileState state = (FileState) o;
+            return lastModified == state.lastModified && length == state.length;
+        }
+
+        public int hashCode() {
+            return (int) (lastModified ^ length);
+        }
+    }
+
+}
@@ -0,0 +1,248 @@
+package org.codehaus.xsite.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import org.codehaus.xsite.XSiteConfiguration;
+import org.codehaus.xsite.io.CommonsFileSystem.FileSystemException;
+
+/**
+ * Writes pages to the output directory. A page is rendered into a buffer
+ * reused by the rendering thread, encoded with the configured charset into a
+ * reused byte buffer and written with a single channel write. If configured,
+ * the page is written to a temporary file which is then renamed, so that
+ * readers of the output directory never see a partially written page. Also if
+ * configured, a page whose encoded content is identical to the existing file is
+ * not written at all, so that the file keeps its modification time.
+ *
+ * @author Mauro Talevi
+ */
+public class PageWriter {
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private final XSiteConfiguration configuration;
+    private final ThreadLocal<Buffer> buffers = new ThreadLocal<Buffer>();
+
+    public PageWriter() {
+        this(new XSiteConfiguration());
+    }
+
+    public PageWriter(XSiteConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    public Charset getCharset() {
+        String encoding = configuration.getOutputEncoding();
+        return encoding != null ? Charset.forName(encoding) : Charset.defaultCharset();
+    }
+
+    /**
+     * Returns the empty buffer of the current thread, into which a page is
+     * rendered before being written
+     *
+     * @return The Buffer
+     */
+    public Buffer getBuffer() {
+        Charset charset = getCharset();
+        Buffer buffer = buffers.get();
+        if (buffer == null || !buffer.charset.equals(charset)) {
+            buffer = new Buffer(charset);
+            buffers.set(buffer);
+        }
+        buffer.reset();
+        return buffer;
+    }
+
+    /**
+     * Writes the content of a buffer to file
+     *
+     * @param buffer the Buffer holding the rendered page
+     * @param file the output File
+     * @return A boolean <code>true</code> if the file was written,
+     *         <code>false</code> if left unchanged
+     */
+    public boolean write(Buffer buffer, File file) {
+        ByteBuffer bytes = buffer.encode();
+        if (configuration.isWriteChangedOnly() && hasContent(file, bytes, buffer.getReadBuffer())) {
+            return false;
+        }
+        boolean atomic = configuration.isAtomicOutput();
+        File target = atomic ? new File(file.getParentFile(), "." + file.getName() + "."
+                + Thread.currentThread().getId() + ".tmp") : file;
+        try {
+            FileChannel channel = new FileOutputStream(target).getChannel();
+            try {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            target.delete();
+            throw new FileSystemException("Cannot write page " + file, e);
+        }
+        if (atomic && !target.renameTo(file)) {
+            // renaming cannot replace an existing file on some platforms
+            if (!file.delete() || !target.renameTo(file)) {
+                target.delete();
+                throw new FileSystemException("Cannot rename " + target + " to " + file, null);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines if a file holds the given bytes, reading it only if its
+     * length matches
+     */
+    private boolean hasContent(File file, ByteBuffer bytes, ByteBuffer readBuffer) {
+        if (!file.isFile() || file.length() != bytes.remaining()) {
+            return false;
+        }
+        ByteBuffer expected = bytes.duplicate();
+        try {
+            FileChannel channel = new FileInputStream(file).getChannel();
+            try {
+                while (expected.hasRemaining()) {
+                    readBuffer.clear();
+                    if (channel.read(readBuffer) < 0) {
+                        return false;
+                    }
+                    readBuffer.flip();
+                    ByteBuffer slice = expected.slice();
+                    slice.limit(Math.min(slice.remaining(), readBuffer.remaining()));
+                    if (!slice.equals(readBuffer)) {
+                        return false;
+                    }
+                    expected.position(expected.position() + readBuffer.remaining());
+                }
+                return true;
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writer rendering a page into memory, reused by its thread
+     */
+    public static class Buffer extends Writer {
+
+        private final Charset charset;
+        private final CharsetEncoder encoder;
+        private char[] chars = new char[INITIAL_BUFFER_SIZE];
+        private int length;
+        private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        private ByteBuffer readBuffer;
+
+        private Buffer(Charset charset) {
+            this.charset = charset;
+            this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(
+                    CodingErrorAction.REPLACE);
+        }
+
+        public void write(char[] cbuf, int off, int len) {
+            ensureCapacity(length + len);
+            System.arraycopy(cbuf, off, chars, length, len);
+            length += len;
+        }
+
+        public void write(String str, int off, int len) {
+            ensureCapacity(length + len);
+            str.getChars(off, off + len, chars, length);
+            length += len;
+        }
+
+        public void write(int c) {
+            ensureCapacity(length + 1);
+            chars[length++] = (char) c;
+        }
+
+        public Charset getCharset() {
+            return charset;
+        }
+
+        private ByteBuffer getReadBuffer() {
+            if (readBuffer == null) {
+                readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+            }
+            return readBuffer;
+        }
+
+        public void flush() {
+        }
+
+        public void close() {
+        }
+
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+
+        private void reset() {
+            length = 0;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > chars.length) {
+                char[] extended = new char[Math.max(capacity, chars.length * 2)];
+                System.arraycopy(chars, 0, extended, 0, length);
+                chars = extended;
+            }
+        }
+
+        /**
+         * Returns the encoded bytes of the buffered characters
+         *
+         * @return The byte array, owned by the caller
+         */
+        public byte[] toByteArray() {
+            ByteBuffer encoded = encode();
+            byte[] bytes = new byte[encoded.remaining()];
+            encoded.get(bytes);
+            return bytes;
+        }
+
+        /**
+         * Encodes the buffered characters
+         *
+         * @return The ByteBuffer holding the encoded bytes, ready to be read
+         */
+        ByteBuffer encode() {
+            int capacity = (int) (length * encoder.averageBytesPerChar()) + 16;
+            if (bytes.capacity() < capacity) {
+                bytes = ByteBuffer.allocate(capacity);
+            }
+            CharBuffer in = CharBuffer.wrap(chars, 0, length);
+            while (true) {
+                bytes.clear();
+                encoder.reset();
+                CoderResult result = encoder.encode(in, bytes, true);
+                if (!result.isOverflow()) {
+                    result = encoder.flush(bytes);
+                }
+                if (!result.isOverflow()) {
+                    bytes.flip();
+                    return bytes;
+                }
+                bytes = ByteBuffer.allocate(bytes.capacity() * 2);
+                in.rewind();
+            }
+        }
+    }
+
+}
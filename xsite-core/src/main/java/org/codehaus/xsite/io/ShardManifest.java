@@ -0,0 +1,294 @@
+package org.codehaus.xsite.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.codehaus.xsite.Shard;
+import org.codehaus.xsite.io.CommonsFileSystem.FileSystemException;
+import org.codehaus.xsite.model.Link;
+import org.codehaus.xsite.model.Page;
+import org.codehaus.xsite.model.Section;
+import org.codehaus.xsite.model.Sitemap;
+
+/**
+ * Partial manifest written by a shard of a sharded build, recording the
+ * filenames of all the pages of the sitemap, in sitemap order, and the links
+ * and anchors of the pages of the shard. Once the shards are built into the
+ * same output directory, their manifests are merged into a sitemap holding
+ * the metadata of all pages, whose links can be verified.
+ * <p>
+ * Each manifest also records the id of its build, a digest of the filenames,
+ * links and anchors of all the pages of the sitemap, which all the shards of
+ * a build agree on, so that the manifest left by a shard of an earlier build
+ * of a different site is not merged.
+ * </p>
+ * <p>
+ * The manifests are stored in the output directory, but are not part of the
+ * site and need not be deployed.
+ * </p>
+ *
+ * @author Mauro Talevi
+ */
+public class ShardManifest {
+
+    public static final String FILENAME_PREFIX = ".xsite-shard-";
+
+    private static final String SHARD = "shard";
+    private static final String BUILD = "build";
+    private static final String PAGES = "pages";
+    private static final String PAGE_PREFIX = "page.";
+    private static final String LINKS_PREFIX = "links.";
+    private static final String LINK_PREFIX = "link.";
+    private static final String ANCHORS_PREFIX = "anchors.";
+    private static final String ANCHOR_PREFIX = "anchor.";
+
+    private final Properties metadata;
+
+    private ShardManifest(Properties metadata) {
+        this.metadata = metadata;
+    }
+
+    /**
+     * Creates the manifest of a shard of a sitemap
+     *
+     * @param sitemap the Sitemap
+     * @param shard the Shard
+     * @return The ShardManifest
+     */
+    public static ShardManifest create(Sitemap sitemap, Shard shard) {
+        Properties metadata = new Properties();
+        metadata.setProperty(SHARD, shard.toString());
+        List<Page> pages = sitemap.getAllPages();
+        metadata.setProperty(BUILD, buildId(pages));
+        metadata.setProperty(PAGES, String.valueOf(pages.size()));
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            String filename = page.getFilename();
+            metadata.setProperty(PAGE_PREFIX + i, filename);
+            if (!shard.contains(filename) || metadata.containsKey(LINKS_PREFIX + filename)) {
+                continue;
+            }
+            int links = 0;
+            for (Link link : page.getLinks()) {
+                metadata.setProperty(LINK_PREFIX + links++ + "." + filename, link.getHref());
+            }
+            metadata.setProperty(LINKS_PREFIX + filename, String.valueOf(links));
+            int anchors = 0;
+            for (String anchor : page.getAnchors()) {
+                metadata.setProperty(ANCHOR_PREFIX + anchors++ + "." + filename, anchor);
+            }
+            metadata.setProperty(ANCHORS_PREFIX + filename, String.valueOf(anchors));
+        }
+        return new ShardManifest(metadata);
+    }
+
+    /**
+     * Computes the id of the build of a sitemap, independent of the order in
+     * which links and anchors of each page are held
+     */
+    private static String buildId(List<Page> pages) {
+        List<String> values = new ArrayList<String>();
+        for (Page page : pages) {
+            values.add(page.getFilename());
+            List<String> hrefs = new ArrayList<String>();
+            for (Link link : page.getLinks()) {
+                hrefs.add(link.getHref());
+            }
+            Collections.sort(hrefs);
+            values.add(hrefs.toString());
+            List<String> anchors = new ArrayList<String>(page.getAnchors());
+            Collections.sort(anchors);
+            values.add(anchors.toString());
+        }
+        return Digests.digest(values.toArray(new String[values.size()]));
+    }
+
+    /**
+     * Loads the manifests of all shards stored in a directory
+     *
+     * @param directory the directory holding the manifests
+     * @return The List of ShardManifest, empty if none has been stored
+     */
+    public static List<ShardManifest> loadAll(File directory) {
+        List<ShardManifest> manifests = new ArrayList<ShardManifest>();
+        String[] names = directory.list();
+        if (names == null) {
+            return manifests;
+        }
+        Arrays.sort(names);
+        for (String name : names) {
+            if (name.startsWith(FILENAME_PREFIX)) {
+                manifests.add(load(new File(directory, name)));
+            }
+        }
+        return manifests;
+    }
+
+    private static ShardManifest load(File file) {
+        Properties metadata = new Properties();
+        try {
+            InputStream input = new BufferedInputStream(new FileInputStream(file));
+            try {
+                metadata.load(input);
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new FileSystemException("Cannot read shard manifest " + file, e);
+        }
+        return new ShardManifest(metadata);
+    }
+
+    /**
+     * Stores the manifest in a directory, deleting the manifests stored there
+     * by builds split in a different number of shards
+     *
+     * @param directory the output directory of the shard
+     */
+    public void store(File directory) {
+        Shard shard = getShard();
+        String suffix = "-of-" + shard.getCount();
+        String[] names = directory.list();
+        for (int i = 0; names != null && i < names.length; i++) {
+            if (names[i].startsWith(FILENAME_PREFIX) && !names[i].endsWith(suffix)) {
+                new File(directory, names[i]).delete();
+            }
+        }
+        File file = new File(directory, FILENAME_PREFIX + shard.getIndex() + suffix);
+        try {
+            OutputStream output = new BufferedOutputStream(new FileOutputStream(file));
+            try {
+                metadata.store(output, "XSite shard manifest");
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new FileSystemException("Cannot write shard manifest " + file, e);
+        }
+    }
+
+    public Shard getShard() {
+        return Shard.parse(metadata.getProperty(SHARD));
+    }
+
+    /**
+     * Returns the id of the build which wrote this manifest
+     *
+     * @return The build id, or <code>null</code> if not recorded
+     */
+    public String getBuildId() {
+        return metadata.getProperty(BUILD);
+    }
+
+    /**
+     * Returns the filenames of all the pages of the sitemap
+     *
+     * @return The List of filenames, in sitemap order
+     */
+    public List<String> getFilenames() {
+        int count = Integer.parseInt(metadata.getProperty(PAGES));
+        List<String> filenames = new ArrayList<String>();
+        for (int i = 0; i < count; i++) {
+            filenames.add(metadata.getProperty(PAGE_PREFIX + i));
+        }
+        return filenames;
+    }
+
+    /**
+     * Returns the page metadata recorded by this shard
+     *
+     * @param filename the page filename
+     * @return The Page, holding the links and anchors but no content, or
+     *         <code>null</code> if the page is not recorded by this shard
+     */
+    public Page getPage(String filename) {
+        String links = metadata.getProperty(LINKS_PREFIX + filename);
+        if (links == null) {
+            return null;
+        }
+        List<Link> pageLinks = new ArrayList<Link>();
+        for (int i = 0; i < Integer.parseInt(links); i++) {
+            String href = metadata.getProperty(LINK_PREFIX + i + "." + filename);
+            pageLinks.add(new Link(href, href));
+        }
+        Set<String> anchors = new HashSet<String>();
+        int anchorCount = Integer.parseInt(metadata.getProperty(ANCHORS_PREFIX + filename));
+        for (int i = 0; i < anchorCount; i++) {
+            anchors.add(metadata.getProperty(ANCHOR_PREFIX + i + "." + filename));
+        }
+        return new Page(filename, null, null, pageLinks, anchors, new Properties());
+    }
+
+    /**
+     * Merges the manifests of all the shards of a sitemap
+     *
+     * @param manifests the List of ShardManifest
+     * @return The Sitemap holding the metadata of all pages, in sitemap order
+     * @throws IncompleteShardsException if the manifests are not those of all
+     *             the shards of the same build
+     */
+    public static Sitemap merge(List<ShardManifest> manifests) {
+        if (manifests.isEmpty()) {
+            throw new IncompleteShardsException("No shard manifests found");
+        }
+        List<String> filenames = manifests.get(0).getFilenames();
+        int count = manifests.get(0).getShard().getCount();
+        String buildId = manifests.get(0).getBuildId();
+        Set<Integer> shards = new HashSet<Integer>();
+        for (ShardManifest manifest : manifests) {
+            Shard shard = manifest.getShard();
+            if (shard.getCount() != count || !manifest.getFilenames().equals(filenames)) {
+                throw new IncompleteShardsException("Shard " + shard
+                        + " was not built from the same sitemap as shard " + manifests.get(0).getShard());
+            }
+            if (buildId == null || !buildId.equals(manifest.getBuildId())) {
+                throw new IncompleteShardsException("Shard " + shard + " was not built in the same build as shard "
+                        + manifests.get(0).getShard());
+            }
+            shards.add(Integer.valueOf(shard.getIndex()));
+        }
+        if (shards.size() < count) {
+            throw new IncompleteShardsException("Found manifests of shards " + shards + " of " + count);
+        }
+        Section section = new Section("Shards");
+        Set<String> merged = new HashSet<String>();
+        for (String filename : filenames) {
+            if (!merged.add(filename)) {
+                continue;
+            }
+            Page page = null;
+            for (int i = 0; i < manifests.size() && page == null; i++) {
+                page = manifests.get(i).getPage(filename);
+            }
+            if (page == null) {
+                throw new IncompleteShardsException("No shard recorded page " + filename);
+            }
+            section.addPage(page);
+        }
+        Sitemap sitemap = new Sitemap();
+        sitemap.addSection(section);
+        sitemap.freeze();
+        return sitemap;
+    }
+
+    @SuppressWarnings("serial")
+    public static class IncompleteShardsException extends RuntimeException {
+        public IncompleteShardsException(String message) {
+            super(message);
+        }
+    }
+
+}
@@ -0,0 +1,89 @@
+package org.codehaus.xsite.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes the content of files into characters, reusing its byte and char
+ * buffers from one file to the next. Files larger than the mapping threshold
+ * are memory-mapped rather than read into the byte buffer. A TextDecoder is
+ * confined to a single thread.
+ *
+ * @author Mauro Talevi
+ */
+class TextDecoder {
+
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    static final int MAPPED_FILE_SIZE = 1024 * 1024;
+
+    private final Charset charset;
+    private final CharsetDecoder decoder;
+    private ByteBuffer bytes = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private CharBuffer chars = CharBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    TextDecoder(Charset charset) {
+        this.charset = charset;
+        this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(
+                CodingErrorAction.REPLACE);
+    }
+
+    Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * Decodes the content of a channel
+     *
+     * @param channel the FileChannel to read
+     * @return The decoded characters, in an array of the exact length
+     * @throws IOException
+     */
+    char[] decode(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer in = size > MAPPED_FILE_SIZE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : read(
+                channel, (int) size);
+        int capacity = (int) (in.remaining() * decoder.averageCharsPerByte()) + 16;
+        if (chars.capacity() < capacity) {
+            chars = CharBuffer.allocate(capacity);
+        }
+        while (true) {
+            chars.clear();
+            decoder.reset();
+            CoderResult result = decoder.decode(in, chars, true);
+            if (!result.isOverflow()) {
+                result = decoder.flush(chars);
+            }
+            if (!result.isOverflow()) {
+                break;
+            }
+            chars = CharBuffer.allocate(chars.capacity() * 2);
+            in.rewind();
+        }
+        chars.flip();
+        char[] decoded = new char[chars.remaining()];
+        chars.get(decoded);
+        return decoded;
+    }
+
+    private ByteBuffer read(FileChannel channel, int size) throws IOException {
+        if (bytes.capacity() < size) {
+            bytes = ByteBuffer.allocate(Math.max(size, bytes.capacity() * 2));
+        }
+        bytes.clear();
+        bytes.limit(size);
+        while (bytes.hasRemaining()) {
+            if (channel.read(bytes) < 0) {
+                break;
+            }
+        }
+        bytes.flip();
+        return bytes;
+    }
+
+}
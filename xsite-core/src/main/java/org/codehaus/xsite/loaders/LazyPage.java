@@ -0,0 +1,57 @@
+package org.codehaus.xsite.loaders;
+
+import java.io.File;
+
+import org.codehaus.xsite.PageExtractor;
+import org.codehaus.xsite.model.Page;
+
+/**
+ * Page which keeps only the metadata of an extracted page, i.e. its filename,
+ * links, anchors and properties. The head and body are extracted again from the source
+ * file when first needed, and held until the content is released.
+ * 
+ * @author Mauro Talevi
+ */
+public class LazyPage extends Page {
+
+    private final File source;
+    private final PageExtractor pageExtractor;
+    private Page content;
+
+    /**
+     * Creates a LazyPage
+     * 
+     * @param page the extracted Page
+     * @param source the source File the page was extracted from
+     * @param pageExtractor the PageExtractor used to extract the content again
+     */
+    public LazyPage(Page page, File source, PageExtractor pageExtractor) {
+        super(page.getFilename(), null, null, page.getLinks(), page.getAnchors(), page.getProperties());
+        this.source = source;
+        this.pageExtractor = pageExtractor;
+    }
+
+    public String getHead() {
+        return getContent().getHead();
+    }
+
+    public String getBody() {
+        return getContent().getBody();
+    }
+
+    public synchronized void releaseContent() {
+        content = null;
+    }
+
+    public synchronized boolean isContentLoaded() {
+        return content != null;
+    }
+
+    private synchronized Page getContent() {
+        if (content == null) {
+            content = pageExtractor.extractPage(source);
+        }
+        return content;
+    }
+
+}
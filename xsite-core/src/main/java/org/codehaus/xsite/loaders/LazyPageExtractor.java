@@ -0,0 +1,39 @@
+package org.codehaus.xsite.loaders;
+
+import java.io.File;
+
+import org.codehaus.xsite.PageExtractor;
+import org.codehaus.xsite.model.Page;
+
+/**
+ * PageExtractor which returns the pages extracted from files as LazyPage
+ * instances, so that their content is not held once extracted.
+ * 
+ * @author Mauro Talevi
+ */
+public class LazyPageExtractor implements PageExtractor {
+
+    private final PageExtractor delegate;
+    private final PageExtractor contentExtractor;
+
+    /**
+     * Creates a LazyPageExtractor
+     * 
+     * @param delegate the PageExtractor used to extract the pages
+     * @param contentExtractor the PageExtractor used to extract the content of
+     *            the pages again when needed
+     */
+    public LazyPageExtractor(PageExtractor delegate, PageExtractor contentExtractor) {
+        this.delegate = delegate;
+        this.contentExtractor = contentExtractor;
+    }
+
+    public Page extractPage(File htmlFile) {
+        return new LazyPage(delegate.extractPage(htmlFile), htmlFile, contentExtractor);
+    }
+
+    public Page extractPage(String filename, String htmlContent) {
+        return delegate.extractPage(filename, htmlContent);
+    }
+
+}
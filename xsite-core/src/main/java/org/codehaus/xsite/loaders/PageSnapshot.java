@@ -0,0 +1,250 @@
+package org.codehaus.xsite.loaders;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.codehaus.xsite.io.CommonsFileSystem.FileSystemException;
+import org.codehaus.xsite.model.Link;
+import org.codehaus.xsite.model.Page;
+
+/**
+ * Snapshot of extracted pages, keyed by the path and the digest of their source
+ * file, stored in a compact binary format. A page is only reused if its source
+ * has the same digest as when it was extracted. Pages whose source no longer
+ * exists are dropped when the snapshot is stored.
+ * 
+ * @author Mauro Talevi
+ */
+public class PageSnapshot {
+
+    private static final int MAGIC = 0x5853504e;
+    private static final int VERSION = 2;
+
+    private final String fingerprint;
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>();
+
+    /**
+     * Creates an empty PageSnapshot
+     * 
+     * @param fingerprint the fingerprint of the extraction, e.g. the class of
+     *            the PageExtractor. Snapshots stored with a different
+     *            fingerprint are discarded when loaded.
+     */
+    public PageSnapshot(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Loads a snapshot from file. A missing, unreadable or outdated snapshot
+     * yields an empty one.
+     * 
+     * @param file the snapshot File
+     * @param fingerprint the expected fingerprint
+     * @return The PageSnapshot
+     */
+    public static PageSnapshot load(File file, String fingerprint) {
+        PageSnapshot snapshot = new PageSnapshot(fingerprint);
+        if (!file.isFile()) {
+            return snapshot;
+        }
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (input.readInt() != MAGIC || input.readInt() != VERSION
+                        || !fingerprint.equals(readString(input))) {
+                    return snapshot;
+                }
+                int count = input.readInt();
+                for (int i = 0; i < count; i++) {
+                    String path = readString(input);
+                    String digest = readString(input);
+                    snapshot.entries.put(path, new Entry(readPage(input), digest));
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable page snapshot " + file + ": " + e.getMessage());
+            return new PageSnapshot(fingerprint);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Stores the snapshot to file. Pages stored in the file meanwhile by other
+     * snapshots, e.g. those of the sites of other localisations, are kept
+     * unless the snapshot holds the same pages.
+     * 
+     * @param file the snapshot File
+     */
+    public void store(File file) {
+        synchronized (PageSnapshot.class) {
+            PageSnapshot stored = load(file, fingerprint);
+            synchronized (entries) {
+                for (Map.Entry<String, Entry> entry : stored.entries.entrySet()) {
+                    if (!entries.containsKey(entry.getKey())) {
+                        entries.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            write(file);
+        }
+    }
+
+    private void write(File file) {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            try {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                writeString(output, fingerprint);
+                Map<String, Entry> existing = new LinkedHashMap<String, Entry>();
+                synchronized (entries) {
+                    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                        if (new File(entry.getKey()).isFile()) {
+                            existing.put(entry.getKey(), entry.getValue());
+                        }
+                    }
+                }
+                output.writeInt(existing.size());
+                for (Map.Entry<String, Entry> entry : existing.entrySet()) {
+                    writeString(output, entry.getKey());
+                    writeString(output, entry.getValue().digest);
+                    writePage(output, entry.getValue().page);
+                }
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            throw new FileSystemException("Cannot write page snapshot " + file, e);
+        }
+    }
+
+    /**
+     * Returns the snapshot of a page
+     * 
+     * @param source the page source File
+     * @param digest the digest of the page source
+     * @return The Page or <code>null</code> if the snapshot holds no page
+     *         extracted from that source with that digest
+     */
+    public Page get(File source, String digest) {
+        synchronized (entries) {
+            Entry entry = entries.get(source.getAbsolutePath());
+            if (entry != null && entry.digest.equals(digest)) {
+                return entry.page;
+            }
+            return null;
+        }
+    }
+
+    public void put(File source, Page page, String digest) {
+        synchronized (entries) {
+            entries.put(source.getAbsolutePath(), new Entry(page, digest));
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private static Page readPage(DataInputStream input) throws IOException {
+        String filename = readString(input);
+        String head = readString(input);
+        String body = readString(input);
+        int linkCount = input.readInt();
+        Collection<Link> links = new HashSet<Link>();
+        for (int i = 0; i < linkCount; i++) {
+            String title = readString(input);
+            links.add(new Link(title, readString(input)));
+        }
+        int anchorCount = input.readInt();
+        Set<String> anchors = new HashSet<String>();
+        for (int i = 0; i < anchorCount; i++) {
+            anchors.add(readString(input));
+        }
+        int propertyCount = input.readInt();
+        Properties properties = new Properties();
+        for (int i = 0; i < propertyCount; i++) {
+            String key = readString(input);
+            properties.setProperty(key, readString(input));
+        }
+        return new Page(filename, head, body, links, anchors, properties);
+    }
+
+    private static void writePage(DataOutputStream output, Page page) throws IOException {
+        writeString(output, page.getFilename());
+        writeString(output, page.getHead());
+        writeString(output, page.getBody());
+        Collection<Link> links = page.getLinks();
+        output.writeInt(links.size());
+        for (Link link : links) {
+            writeString(output, link.getTitle());
+            writeString(output, link.getHref());
+        }
+        Set<String> anchors = page.getAnchors();
+        output.writeInt(anchors.size());
+        for (String anchor : anchors) {
+            writeString(output, anchor);
+        }
+        Properties properties = page.getProperties();
+        output.writeInt(properties.size());
+        for (Map.Entry<Object, Object> property : properties.entrySet()) {
+            writeString(output, (String) property.getKey());
+            writeString(output, (String) property.getValue());
+        }
+    }
+
+    /**
+     * Reads a string of any length, unlike DataInputStream.readUTF(), which is
+     * limited to 64K
+     */
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes("UTF-8");
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    private static class Entry {
+        private final Page page;
+        private final String digest;
+
+        public Entry(Page page, String digest) {
+            this.page = page;
+            this.digest = digest;
+        }
+    }
+
+}
@@ -0,0 +1,64 @@
+package org.codehaus.xsite.loaders;
+
+import java.io.File;
+
+import org.codehaus.xsite.PageExtractor;
+import org.codehaus.xsite.io.Digests;
+import org.codehaus.xsite.model.Page;
+
+/**
+ * PageExtractor which reuses the pages of a snapshot whose source is unchanged,
+ * delegating the extraction of the others and recording them in the snapshot.
+ * 
+ * @author Mauro Talevi
+ */
+public class SnapshotPageExtractor implements PageExtractor {
+
+    private final PageExtractor delegate;
+    private final PageSnapshot snapshot;
+    private int reusedPages;
+    private int extractedPages;
+
+    public SnapshotPageExtractor(PageExtractor delegate, PageSnapshot snapshot) {
+        this.delegate = delegate;
+        this.snapshot = snapshot;
+    }
+
+    public Page extractPage(File htmlFile) {
+        String digest = Digests.digest(htmlFile);
+        Page page = snapshot.get(htmlFile, digest);
+        if (page == null) {
+            page = delegate.extractPage(htmlFile);
+            snapshot.put(htmlFile, page, digest);
+            extracted();
+        } else {
+            reused();
+        }
+        return page;
+    }
+
+    public Page extractPage(String filename, String htmlContent) {
+        return delegate.extractPage(filename, htmlContent);
+    }
+
+    public PageSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    private synchronized void reused() {
+        reusedPages++;
+    }
+
+    private synchronized void extracted() {
+        extractedPages++;
+    }
+
+    public synchronized int getReusedPages() {
+        return reusedPages;
+    }
+
+    public synchronized int getExtractedPages() {
+        return extractedPages;
+    }
+
+}
@@ -4,9 +4,17 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.codehaus.xsite.FingerprintedPageExtractor;
+import org.codehaus.xsite.Futures;
 import org.codehaus.xsite.PageExtractor;
 import org.codehaus.xsite.SitemapLoader;
+import org.codehaus.xsite.XSiteConfiguration;
+import org.codehaus.xsite.model.Entry;
 import org.codehaus.xsite.model.Link;
 import org.codehaus.xsite.model.Page;
 import org.codehaus.xsite.model.Section;
@@ -15,6 +23,7 @@ import org.codehaus.xsite.model.Sitemap;
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.converters.Converter;
 import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.SingleValueConverter;
 import com.thoughtworks.xstream.converters.UnmarshallingContext;
 import com.thoughtworks.xstream.converters.basic.AbstractSingleValueConverter;
 import com.thoughtworks.xstream.io.HierarchicalStreamReader;
@@ -22,12 +31,30 @@ import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
 
 /**
  * Loads a Sitemap from an XML file using XStream.
+ * <p>
+ * If the configuration specifies more than one thread, the page references are collected while the XML is read and
+ * the pages are then extracted concurrently, before the sections are assembled in document order.
+ * </p>
+ * <p>
+ * If the configuration specifies a snapshot file, the pages whose source is unchanged since the snapshot was stored
+ * are not extracted again, and the snapshot is updated once the sitemap is loaded. The snapshot is discarded if stored
+ * with another extractor, input encoding or, for a {@link FingerprintedPageExtractor}, extractor configuration.
+ * </p>
+ * <p>
+ * If the configuration specifies low memory, the pages only keep their metadata once extracted, and their content is
+ * extracted again from the source file when needed.
+ * </p>
+ * <p>
+ * Sitemaps can be loaded concurrently, e.g. those of several localisations.
+ * </p>
  *
  * @author Joe Walnes
  */
 public class XStreamSitemapLoader implements SitemapLoader {
     private PageExtractor pageExtractor;
     private XStream xstream;
+    private XSiteConfiguration configuration;
+    private final ThreadLocal<SingleValueConverter> pageConverter = new ThreadLocal<SingleValueConverter>();
     
     /**
      * Creates a XStreamSitemapLoader
@@ -35,8 +62,19 @@ public class XStreamSitemapLoader implements SitemapLoader {
      * @param xstream the XStream instance
      */
     public XStreamSitemapLoader(PageExtractor extractor, XStream xstream) {
+        this(extractor, xstream, new XSiteConfiguration());
+    }
+
+    /**
+     * Creates a XStreamSitemapLoader
+     * @param extractor the PageExtractor
+     * @param xstream the XStream instance
+     * @param configuration the XSiteConfiguration
+     */
+    public XStreamSitemapLoader(PageExtractor extractor, XStream xstream, XSiteConfiguration configuration) {
         this.pageExtractor = extractor;
         this.xstream = xstream;
+        this.configuration = configuration;
         configureXStream();
     }
 
@@ -48,19 +86,110 @@ public class XStreamSitemapLoader implements SitemapLoader {
         xstream.addImplicitCollection(Section.class, "entries");
         xstream.addImplicitCollection(Sitemap.class, "sections");
         xstream.registerConverter(new LinkConverter());
+        xstream.registerConverter(new CurrentPageConverter());
     }
 
     public Sitemap loadFrom(File content) throws IOException {
-        xstream.registerConverter(new PageConverter(content.getParentFile(),
-                pageExtractor));
+        PageExtractor extractor = pageExtractor;
+        SnapshotPageExtractor snapshotExtractor = null;
+        File snapshotFile = configuration.getSnapshotFile();
+        if (snapshotFile != null) {
+            String fingerprint = pageExtractor.getClass().getName() + ";" + configuration.getInputEncoding();
+            if (pageExtractor instanceof FingerprintedPageExtractor) {
+                fingerprint += ";" + ((FingerprintedPageExtractor) pageExtractor).getFingerprint();
+            }
+            snapshotExtractor = new SnapshotPageExtractor(pageExtractor, PageSnapshot.load(snapshotFile, fingerprint));
+            extractor = snapshotExtractor;
+        }
+        if (configuration.isLowMemory()) {
+            extractor = new LazyPageExtractor(extractor, pageExtractor);
+        }
+        Sitemap sitemap = loadFrom(content, extractor);
+        if (snapshotExtractor != null) {
+            snapshotExtractor.getSnapshot().store(snapshotFile);
+            System.out.println("Reused " + snapshotExtractor.getReusedPages() + " pages from snapshot "
+                    + snapshotFile + ", extracted " + snapshotExtractor.getExtractedPages() + " pages");
+        }
+        return sitemap;
+    }
+
+    private Sitemap loadFrom(File content, PageExtractor pageExtractor) throws IOException {
+        int threads = configuration.getThreads();
+        if (threads > 1) {
+            return loadConcurrentlyFrom(content, pageExtractor, threads);
+        }
+        Sitemap sitemap = readSitemap(content, new PageConverter(content.getParentFile(), pageExtractor));
+        sitemap.freeze();
+        return sitemap;
+    }
+
+    private Sitemap loadConcurrentlyFrom(File content, PageExtractor pageExtractor, int threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            return assemble(readSitemap(content, new DeferredPageConverter(content.getParentFile(),
+                    pageExtractor, executor)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Reads the sitemap, converting its pages with the given converter. The
+     * converter is only seen by the current thread, so that sitemaps can be
+     * loaded concurrently with the shared XStream.
+     */
+    private Sitemap readSitemap(File content, SingleValueConverter converter) throws IOException {
         Reader reader = new FileReader(content);
+        pageConverter.set(converter);
         try {
             return (Sitemap) xstream.fromXML(reader);
         } finally {
+            pageConverter.remove();
             reader.close();
         }
     }
 
+    /**
+     * Replaces the deferred pages of a sitemap with the extracted ones, in
+     * document order.
+     */
+    private Sitemap assemble(Sitemap deferred) {
+        Sitemap sitemap = new Sitemap();
+        for (Section deferredSection : deferred.getSections()) {
+            Section section = new Section(deferredSection.getName());
+            for (Entry entry : deferredSection.getEntries()) {
+                if (entry instanceof DeferredPage) {
+                    section.addPage(((DeferredPage) entry).getPage());
+                } else {
+                    section.addLink((Link) entry);
+                }
+            }
+            sitemap.addSection(section);
+        }
+        sitemap.freeze();
+        return sitemap;
+    }
+
+    /**
+     * Converts pages with the converter of the sitemap read by the current
+     * thread.
+     */
+    private class CurrentPageConverter extends AbstractSingleValueConverter {
+
+        @SuppressWarnings("unchecked")
+        public boolean canConvert(Class type) {
+            return type == Page.class;
+        }
+
+        public Object fromString(String text) {
+            return pageConverter.get().fromString(text);
+        }
+
+        public String toString(Object o) {
+            return pageConverter.get().toString(o);
+        }
+    }
+
     private static class PageConverter extends AbstractSingleValueConverter {
 
         private final File baseDirectory;
@@ -86,6 +215,59 @@ public class XStreamSitemapLoader implements SitemapLoader {
         }
     }
 
+    private static class DeferredPageConverter extends AbstractSingleValueConverter {
+
+        private final File baseDirectory;
+        private final PageExtractor pageExtractor;
+        private final ExecutorService executor;
+
+        public DeferredPageConverter(File baseDirectory, PageExtractor pageExtractor, ExecutorService executor) {
+            this.baseDirectory = baseDirectory;
+            this.pageExtractor = pageExtractor;
+            this.executor = executor;
+        }
+
+        @SuppressWarnings("unchecked")
+        public boolean canConvert(Class type) {
+            return type == Page.class;
+        }
+
+        public Object fromString(final String text) {
+            return new DeferredPage(text, executor.submit(new Callable<Page>() {
+                public Page call() {
+                    return pageExtractor.extractPage(new File(baseDirectory, text));
+                }
+            }));
+        }
+
+        public String toString(Object o) {
+            return ((DeferredPage) o).getFilename();
+        }
+    }
+
+    /**
+     * Placeholder for a page which is being extracted.
+     */
+    private static class DeferredPage extends Page {
+
+        private final Future<Page> page;
+
+        public DeferredPage(String filename, Future<Page> page) {
+            super(filename, null, null, null, null);
+            this.page = page;
+        }
+
+        public Page getPage() {
+            try {
+                return Futures.await(page, Exception.class, "loading page " + getFilename());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CannotLoadPageException(getFilename(), e);
+            }
+        }
+    }
+
     private static class LinkConverter implements Converter {
 
         @SuppressWarnings("unchecked")
@@ -105,4 +287,11 @@ public class XStreamSitemapLoader implements SitemapLoader {
             return new Link(title, href);
         }
     }
+
+    @SuppressWarnings("serial")
+    public static class CannotLoadPageException extends RuntimeException {
+        public CannotLoadPageException(String filename, Throwable cause) {
+            super("Failed to load page " + filename, cause);
+        }
+    }
 }
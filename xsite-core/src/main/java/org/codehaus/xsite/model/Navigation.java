@@ -0,0 +1,167 @@
+package org.codehaus.xsite.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Navigation of a website, computed once from the sitemap and pre-rendered as
+ * HTML menus. A menu holds a group for each section, listing its entries as
+ * links. When a menu is requested for a page, the page is marked as the
+ * current link by replacing the pre-rendered item of the page, so the cost of
+ * rendering a menu does not depend on the number of entries it holds.
+ *
+ * @author Mauro Talevi
+ */
+public class Navigation {
+
+    private final Menu menu;
+    private final List<Menu> sections = new ArrayList<Menu>();
+
+    public Navigation(Sitemap sitemap) {
+        MenuBuilder all = new MenuBuilder(null);
+        for (Section section : sitemap.getSections()) {
+            MenuBuilder builder = new MenuBuilder(section.getName());
+            builder.addSection(section);
+            all.addSection(section);
+            sections.add(builder.toMenu());
+        }
+        menu = all.toMenu();
+    }
+
+    /**
+     * Returns the menu of all sections
+     *
+     * @param page the current Page or <code>null</code>
+     * @return The menu HTML
+     */
+    public String getMenu(Page page) {
+        return menu.getHtml(page);
+    }
+
+    public String getMenu() {
+        return menu.getHtml();
+    }
+
+    /**
+     * Returns the menus of each section, in sitemap order
+     *
+     * @return The List of Menu
+     */
+    public List<Menu> getSections() {
+        return Collections.unmodifiableList(sections);
+    }
+
+    /**
+     * Pre-rendered menu, with the position of the item of each page
+     */
+    public static class Menu {
+
+        private final String name;
+        private final String html;
+        private final Map<String, Item> items;
+
+        private Menu(String name, String html, Map<String, Item> items) {
+            this.name = name;
+            this.html = html;
+            this.items = items;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHtml() {
+            return html;
+        }
+
+        /**
+         * Returns the menu HTML with the page marked as current link
+         *
+         * @param page the current Page or <code>null</code>
+         * @return The menu HTML
+         */
+        public String getHtml(Page page) {
+            Item item = page == null ? null : items.get(page.getFilename());
+            if (item == null) {
+                return html;
+            }
+            int[] positions = item.positions;
+            int length = html.length() + (positions.length / 2) * item.current.length();
+            StringBuilder sb = new StringBuilder(length);
+            int start = 0;
+            for (int i = 0; i < positions.length; i += 2) {
+                sb.append(html, start, positions[i]).append(item.current);
+                start = positions[i + 1];
+            }
+            return sb.append(html, start, html.length()).toString();
+        }
+
+    }
+
+    private static class Item {
+        private final String current;
+        private int[] positions = new int[0];
+
+        private Item(String current) {
+            this.current = current;
+        }
+
+        private void add(int start, int end) {
+            int[] extended = new int[positions.length + 2];
+            System.arraycopy(positions, 0, extended, 0, positions.length);
+            extended[positions.length] = start;
+            extended[positions.length + 1] = end;
+            positions = extended;
+        }
+    }
+
+    private static class MenuBuilder {
+
+        private final String name;
+        private final StringBuilder html = new StringBuilder();
+        private final Map<String, Item> items = new HashMap<String, Item>();
+
+        private MenuBuilder(String name) {
+            this.name = name;
+        }
+
+        private void addSection(Section section) {
+            html.append("<div class=\"MenuGroup\">\n");
+            html.append("<h1>").append(section.getName()).append("</h1>\n");
+            html.append("<ul>\n");
+            for (Entry entry : section.getEntries()) {
+                if (entry instanceof Page) {
+                    addPage((Page) entry);
+                } else if (entry instanceof Link) {
+                    Link link = (Link) entry;
+                    addLink(link.getHref(), link.getTitle());
+                }
+            }
+            html.append("</ul>\n");
+            html.append("</div>\n");
+        }
+
+        private void addPage(Page page) {
+            Item item = items.get(page.getFilename());
+            if (item == null) {
+                item = new Item("<li class=\"currentLink\">" + page.getTitle() + "</li>\n");
+                items.put(page.getFilename(), item);
+            }
+            int start = html.length();
+            addLink(page.getHref(), page.getTitle());
+            item.add(start, html.length());
+        }
+
+        private void addLink(String href, String title) {
+            html.append("<li><a href=\"").append(href).append("\">").append(title).append("</a></li>\n");
+        }
+
+        private Menu toMenu() {
+            return new Menu(name, html.toString(), items);
+        }
+    }
+
+}
@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Properties;
+import java.util.Set;
 
 /**
  * Represents a single page entry in a sitemap, including filename, head and
@@ -19,6 +20,7 @@ public class Page extends Entry {
     private String head;
     private String body;
     private Collection<Link> links = new HashSet<Link>();
+    private Set<String> anchors;
 
     /**
      * Creates a Page
@@ -30,10 +32,27 @@ public class Page extends Entry {
      * @param properties
      */
     public Page(String filename, String head, String body, Collection<Link> links, Properties properties) {
+        this(filename, head, body, links, new HashSet<String>(), properties);
+    }
+
+    /**
+     * Creates a Page with the anchors its links can target
+     * 
+     * @param filename
+     * @param head
+     * @param body
+     * @param links
+     * @param anchors the names of the anchors, i.e. the id attributes and the
+     *            name attributes of the a tags
+     * @param properties
+     */
+    public Page(String filename, String head, String body, Collection<Link> links, Set<String> anchors,
+            Properties properties) {
         this.filename = filename;
         this.head = head;
         this.body = body;
         this.links = links;
+        this.anchors = anchors;
         this.properties = properties;
     }
 
@@ -73,6 +92,41 @@ public class Page extends Entry {
         return Collections.unmodifiableCollection(links);
     }
 
+    public Set<String> getAnchors() {
+        if (anchors == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(anchors);
+    }
+
+    /**
+     * Determines if the page holds an anchor, which a link can target with a
+     * fragment
+     * 
+     * @param name the anchor name
+     * @return A boolean <code>true</code> if the page holds the anchor
+     */
+    public boolean hasAnchor(String name) {
+        return anchors != null && anchors.contains(name);
+    }
+
+    /**
+     * Returns the properties extracted from the page, e.g. its title and meta
+     * tags
+     * 
+     * @return A copy of the page Properties
+     */
+    public Properties getProperties() {
+        return (Properties) properties.clone();
+    }
+
+    /**
+     * Releases the head and body held by the page, if they can be loaded
+     * again when needed. Pages holding their content keep it.
+     */
+    public void releaseContent() {
+    }
+
     public boolean isIndex() {
         return "index.html".equals(filename);
     }
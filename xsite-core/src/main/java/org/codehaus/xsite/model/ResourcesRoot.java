@@ -0,0 +1,46 @@
+package org.codehaus.xsite.model;
+
+/**
+ * The path from the pages of a site to the root of its resources, passed to
+ * the skin as the <code>resourcesRoot</code> property. Skins prefix the
+ * paths of resources with the path returned for the page being skinned, e.g.
+ * <code>${resourcesRoot.getPath(page)}style.css</code>, which is relative to
+ * the directory the page is written to, so that it resolves for pages in
+ * subdirectories of the output directory.
+ *
+ * @author Mauro Talevi
+ */
+public class ResourcesRoot {
+
+    private final String root;
+
+    /**
+     * Creates a ResourcesRoot
+     * 
+     * @param root the path of the root of the resources relative to the output
+     *            directory of the site, either empty or ending with a slash
+     */
+    public ResourcesRoot(String root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the path to the root of the resources from a page
+     * 
+     * @param page the Page
+     * @return The path, either empty or ending with a slash
+     */
+    public String getPath(Page page) {
+        StringBuilder path = new StringBuilder();
+        String filename = page.getFilename();
+        for (int i = filename.indexOf('/'); i >= 0; i = filename.indexOf('/', i + 1)) {
+            path.append("../");
+        }
+        return path.append(root).toString();
+    }
+
+    public String toString() {
+        return root;
+    }
+
+}
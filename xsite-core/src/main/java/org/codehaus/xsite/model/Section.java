@@ -1,11 +1,14 @@
 package org.codehaus.xsite.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 /**
  * A section in a website holding entries, which can be either pages or links.
+ * Once frozen, the entries can no longer be changed and the lists of entries
+ * and pages are computed once.
  *
  * @author Joe Walnes
  * @author Mauro Talevi
@@ -14,6 +17,8 @@ public class Section {
 
     private final String name;
     private final List<Entry> entries = new ArrayList<Entry>();
+    private transient volatile List<Entry> frozenEntries;
+    private transient volatile List<Page> frozenPages;
 
     public Section(String name) {
         this.name = name;
@@ -24,20 +29,70 @@ public class Section {
     }
     
     public List<Entry> getEntries() {
+        List<Entry> frozen = frozenEntries;
+        if (frozen != null) {
+            return frozen;
+        }
         return Collections.unmodifiableList(entries);
     }
 
     public List<Page> getPages() {
+        List<Page> frozen = frozenPages;
+        if (frozen != null) {
+            return frozen;
+        }
+        return Collections.unmodifiableList(collectPages());
+    }
+
+    /**
+     * Determines if the section lists the page with the given filename
+     * 
+     * @param filename the page filename
+     * @return A boolean <code>true</code> if the page is listed
+     */
+    public boolean contains(String filename) {
+        for (Page page : getPages()) {
+            if (page.getFilename().equals(filename)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void addPage(Page page) {
+        checkNotFrozen();
+        entries.add(page);
+    }
+
+    public void addLink(Link link) {
+        checkNotFrozen();
+        entries.add(link);
+    }
+
+    /**
+     * Freezes the section. Freezing a frozen section has no effect.
+     */
+    public synchronized void freeze() {
+        if (frozenPages == null) {
+            List<Page> pages = collectPages();
+            frozenEntries = Collections.unmodifiableList(Arrays.asList(entries.toArray(new Entry[entries.size()])));
+            frozenPages = Collections.unmodifiableList(Arrays.asList(pages.toArray(new Page[pages.size()])));
+        }
+    }
+
+    private List<Page> collectPages() {
         List<Page> pages = new ArrayList<Page>();
         for ( Entry entry : entries ){
             if ( entry instanceof Page ){
                 pages.add((Page)entry);
             }
         }
-        return Collections.unmodifiableList(pages);
+        return pages;
     }
 
-    public void addPage(Page page) {
-        entries.add(page);
+    private void checkNotFrozen() {
+        if (frozenPages != null) {
+            throw new IllegalStateException("Section " + name + " is frozen");
+        }
     }
 }
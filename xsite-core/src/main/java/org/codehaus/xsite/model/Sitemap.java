@@ -1,11 +1,16 @@
 package org.codehaus.xsite.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Holds the structure of a website.
+ * Holds the structure of a website. Once loaded, the sitemap is frozen: its
+ * sections can no longer be changed, the lists of entries and pages are
+ * computed once and the pages are indexed by filename and by id.
  *
  * @author Joe Walnes
  * @author Mauro Talevi
@@ -13,16 +18,42 @@ import java.util.List;
 public class Sitemap {
 
     private List<Section> sections = new ArrayList<Section>();
+    private transient volatile Index index;
 
     public void addSection(Section section) {
+        if (index != null) {
+            throw new IllegalStateException("Sitemap is frozen");
+        }
         sections.add(section);
     }
 
+    /**
+     * Freezes the sitemap and its sections, indexing its pages. Freezing a
+     * frozen sitemap has no effect.
+     */
+    public synchronized void freeze() {
+        if (index == null) {
+            index = new Index(sections);
+        }
+    }
+
+    public boolean isFrozen() {
+        return index != null;
+    }
+
     public List<Section> getSections() {
+        Index index = this.index;
+        if (index != null) {
+            return index.sections;
+        }
         return Collections.unmodifiableList(sections);
     }
 
     public List<Entry> getAllEntries() {
+        Index index = this.index;
+        if (index != null) {
+            return index.entries;
+        }
         List<Entry> list = new ArrayList<Entry>();
         for (Section section : sections ){
             for ( Entry entry : section.getEntries() ){
@@ -33,6 +64,10 @@ public class Sitemap {
     }
 
     public List<Page> getAllPages() {
+        Index index = this.index;
+        if (index != null) {
+            return index.pages;
+        }
         List<Page> list = new ArrayList<Page>();
         for (Section section : sections ){
             for ( Page page : section.getPages() ){
@@ -41,4 +76,139 @@ public class Sitemap {
         }
         return Collections.unmodifiableList(list);
     }
+
+    /**
+     * Returns the page with the given filename
+     * 
+     * @param filename the page filename
+     * @return The Page or <code>null</code> if not found
+     */
+    public Page getPage(String filename) {
+        Index index = this.index;
+        if (index != null) {
+            return index.pagesByFilename.get(filename);
+        }
+        for (Page page : getAllPages()) {
+            if (page.getFilename().equals(filename)) {
+                return page;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the page with the given id
+     * 
+     * @param id the page id
+     * @return The Page or <code>null</code> if not found
+     * @see Page#getId()
+     */
+    public Page getPageById(String id) {
+        Index index = this.index;
+        if (index != null) {
+            return index.pagesById.get(id);
+        }
+        for (Page page : getAllPages()) {
+            if (id.equals(page.getId())) {
+                return page;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the sections listing the page with the given filename
+     * 
+     * @param filename the page filename
+     * @return The List of Section, empty if the page is not found
+     */
+    public List<Section> getSections(String filename) {
+        Index index = this.index;
+        if (index != null) {
+            List<Section> list = index.sectionsByFilename.get(filename);
+            return list != null ? list : Collections.<Section> emptyList();
+        }
+        List<Section> list = new ArrayList<Section>();
+        for (Section section : sections) {
+            if (section.contains(filename)) {
+                list.add(section);
+            }
+        }
+        return Collections.unmodifiableList(list);
+    }
+
+    /**
+     * Returns a frozen copy of the sitemap in which the pages with the same
+     * filename as the given page are replaced by it, e.g. once the page has
+     * been extracted again. The sitemap itself is left unchanged.
+     * 
+     * @param page the replacing Page
+     * @return The Sitemap copy
+     */
+    public Sitemap replacePage(Page page) {
+        Sitemap sitemap = new Sitemap();
+        for (Section section : getSections()) {
+            Section copy = new Section(section.getName());
+            for (Entry entry : section.getEntries()) {
+                if (entry instanceof Page) {
+                    boolean replaced = ((Page) entry).getFilename().equals(page.getFilename());
+                    copy.addPage(replaced ? page : (Page) entry);
+                } else {
+                    copy.addLink((Link) entry);
+                }
+            }
+            sitemap.addSection(copy);
+        }
+        sitemap.freeze();
+        return sitemap;
+    }
+
+    private static class Index {
+
+        private final List<Section> sections;
+        private final List<Entry> entries;
+        private final List<Page> pages;
+        private final Map<String, Page> pagesByFilename = new HashMap<String, Page>();
+        private final Map<String, Page> pagesById = new HashMap<String, Page>();
+        private final Map<String, List<Section>> sectionsByFilename = new HashMap<String, List<Section>>();
+
+        private Index(List<Section> sections) {
+            List<Entry> entries = new ArrayList<Entry>();
+            List<Page> pages = new ArrayList<Page>();
+            Map<String, List<Section>> sectionsByFilename = new HashMap<String, List<Section>>();
+            for (Section section : sections) {
+                section.freeze();
+                entries.addAll(section.getEntries());
+                for (Page page : section.getPages()) {
+                    pages.add(page);
+                    String filename = page.getFilename();
+                    if (!pagesByFilename.containsKey(filename)) {
+                        pagesByFilename.put(filename, page);
+                    }
+                    String id = page.getId();
+                    if (id != null && !pagesById.containsKey(id)) {
+                        pagesById.put(id, page);
+                    }
+                    List<Section> pageSections = sectionsByFilename.get(filename);
+                    if (pageSections == null) {
+                        pageSections = new ArrayList<Section>();
+                        sectionsByFilename.put(filename, pageSections);
+                    }
+                    if (!pageSections.contains(section)) {
+                        pageSections.add(section);
+                    }
+                }
+            }
+            for (Map.Entry<String, List<Section>> entry : sectionsByFilename.entrySet()) {
+                this.sectionsByFilename.put(entry.getKey(), freeze(entry.getValue().toArray(new Section[0])));
+            }
+            this.sections = freeze(sections.toArray(new Section[sections.size()]));
+            this.entries = freeze(entries.toArray(new Entry[entries.size()]));
+            this.pages = freeze(pages.toArray(new Page[pages.size()]));
+        }
+
+        private static <T> List<T> freeze(T[] array) {
+            return Collections.unmodifiableList(Arrays.asList(array));
+        }
+    }
 }
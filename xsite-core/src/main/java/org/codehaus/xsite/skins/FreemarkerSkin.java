@@ -1,46 +1,102 @@
 package org.codehaus.xsite.skins;
 
+import freemarker.cache.FileTemplateLoader;
+import freemarker.core.Environment;
 import freemarker.template.Configuration;
 import freemarker.template.Template;
 import freemarker.template.TemplateException;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.Writer;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.codehaus.xsite.Skin;
+import org.codehaus.xsite.RenderingSkin;
+import org.codehaus.xsite.XSiteConfiguration;
+import org.codehaus.xsite.io.PageWriter;
 import org.codehaus.xsite.model.Page;
 import org.codehaus.xsite.model.Sitemap;
 
 
 /**
  * Provides HTML 'skin' around content, using a FreeMarker template.
+ * <p>
+ * Templates are loaded through a Configuration shared by all skins in the same
+ * directory, rooted at that directory, so that templates can include or import
+ * other templates. The Configuration caches the parsed templates and checks
+ * their modification time whenever a skin is loaded, so a template is parsed
+ * again only if it has changed. Skins created by {@link #newInstance(File)}
+ * share the Configurations, so each template is parsed once.
+ * </p>
+ * <p>
+ * Pages are rendered and written by a {@link PageWriter}, using the output
+ * encoding of the configuration, which templates can
+ * refer to as <code>${.output_encoding}</code>.
+ * </p>
  *
  * @author Joe Walnes
  */
-public class FreemarkerSkin implements Skin {
+public class FreemarkerSkin implements RenderingSkin {
 
-    private Template template;  
+    private final Map<File, Configuration> configurations;
+    private final PageWriter pageWriter;
+    private volatile Template template;
+
+    public FreemarkerSkin() {
+        this(new XSiteConfiguration());
+    }
+
+    public FreemarkerSkin(XSiteConfiguration configuration) {
+        this(new HashMap<File, Configuration>(), new PageWriter(configuration));
+    }
+
+    private FreemarkerSkin(Map<File, Configuration> configurations, PageWriter pageWriter) {
+        this.configurations = configurations;
+        this.pageWriter = pageWriter;
+    }
 
     public void load(File skinFile) {
         try {
-            Reader fileReader = new FileReader(skinFile);
-            try {
-                template = new Template(skinFile.getName(), fileReader, new Configuration());
-            } finally {
-                fileReader.close();
-            }
+            template = getConfiguration(skinFile.getAbsoluteFile().getParentFile()).getTemplate(skinFile.getName());
         } catch (IOException e) {
             throw new CannotCreateSkinException(e);
         }
     }
+
+    public RenderingSkin newInstance(File skinFile) {
+        FreemarkerSkin skin = new FreemarkerSkin(configurations, pageWriter);
+        skin.load(skinFile);
+        return skin;
+    }
+
+    private Configuration getConfiguration(File templatesDirectory) throws IOException {
+        File directory = templatesDirectory.getCanonicalFile();
+        synchronized (configurations) {
+            Configuration configuration = configurations.get(directory);
+            if (configuration == null) {
+                configuration = new Configuration();
+                configuration.setTemplateLoader(new FileTemplateLoader(directory));
+                configuration.setTemplateUpdateDelay(0);
+                configurations.put(directory, configuration);
+            }
+            return configuration;
+        }
+    }
     
     public void skin(Page page, Sitemap sitemap, File outputDirectory, Map<String, Object> customProperties) {
+        writePage(page, sitemap, outputDirectory, customProperties);
+    }
+
+    public boolean writePage(Page page, Sitemap sitemap, File outputDirectory, Map<String, Object> customProperties) {
+        return pageWriter.write(process(page, sitemap, customProperties), new File(outputDirectory, page
+                .getFilename()));
+    }
+
+    public byte[] render(Page page, Sitemap sitemap, Map<String, Object> customProperties) {
+        return process(page, sitemap, customProperties).toByteArray();
+    }
+
+    private PageWriter.Buffer process(Page page, Sitemap sitemap, Map<String, Object> customProperties) {
         Map<String, Object> context = new HashMap<String, Object>();
         context.put("title", page.getTitle());
         context.put("head", page.getHead());
@@ -53,12 +109,11 @@ public class FreemarkerSkin implements Skin {
         context.put("centerClass", page.isIndex() ? "Content3Column" : "Content2Column");
 
         try {
-            Writer writer = new FileWriter(new File(outputDirectory, page.getFilename()));
-            try {
-                template.process(context, writer);
-            } finally {
-                writer.close();
-            }
+            PageWriter.Buffer buffer = pageWriter.getBuffer();
+            Environment environment = template.createProcessingEnvironment(context, buffer);
+            environment.setOutputEncoding(buffer.getCharset().name());
+            environment.process();
+            return buffer;
         } catch (TemplateException e) {
             throw new CannotApplySkinException(e);
         } catch (IOException e) {
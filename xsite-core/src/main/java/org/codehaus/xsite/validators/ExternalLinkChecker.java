@@ -0,0 +1,382 @@
+package org.codehaus.xsite.validators;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.codehaus.xsite.Futures;
+import org.codehaus.xsite.io.CommonsFileSystem.FileSystemException;
+
+/**
+ * Verifies external http and https links by requesting them.
+ * <p>
+ * Each distinct URL is requested once, with a HEAD request falling back to a
+ * GET request if the server rejects the HEAD request. Requests are made
+ * concurrently by a bounded number of threads, with a lower limit on the
+ * concurrent requests to the same host, and time out if the server does not
+ * answer. A URL is alive if the server answers with a status below 400.
+ * </p>
+ * <p>
+ * If a cache file is given, the URLs found alive are stored in it with the
+ * time they were checked, and are not requested again until the time to live
+ * has expired. Dead URLs are not cached, so that a fixed link passes the next
+ * build.
+ * </p>
+ *
+ * @author Mauro Talevi
+ */
+public class ExternalLinkChecker {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 16;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 2;
+    public static final int DEFAULT_TIMEOUT = 10000;
+    public static final long DEFAULT_TIME_TO_LIVE = 24L * 60 * 60 * 1000;
+
+    private static final String USER_AGENT = "XSite link checker";
+
+    private final File cacheFile;
+    private final int maxConnections;
+    private final int maxConnectionsPerHost;
+    private final int timeout;
+    private final long timeToLive;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<String, Semaphore>();
+
+    /**
+     * Creates an ExternalLinkChecker with the default limits
+     *
+     * @param cacheFile the cache File, or <code>null</code> not to cache
+     *            results between builds
+     */
+    public ExternalLinkChecker(File cacheFile) {
+        this(cacheFile, DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_TIMEOUT,
+                DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Creates an ExternalLinkChecker
+     *
+     * @param cacheFile the cache File, or <code>null</code> not to cache
+     *            results between builds
+     * @param maxConnections the maximum number of concurrent requests
+     * @param maxConnectionsPerHost the maximum number of concurrent requests
+     *            to the same host
+     * @param timeout the connect and read timeout of each request, in
+     *            milliseconds
+     * @param timeToLive the time a URL found alive is not requested again, in
+     *            milliseconds
+     */
+    public ExternalLinkChecker(File cacheFile, int maxConnections, int maxConnectionsPerHost, int timeout,
+            long timeToLive) {
+        this.cacheFile = cacheFile;
+        this.maxConnections = Math.max(maxConnections, 1);
+        this.maxConnectionsPerHost = Math.max(maxConnectionsPerHost, 1);
+        this.timeout = timeout;
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Determines if a link is verified by this checker
+     *
+     * @param href the link href
+     * @return A boolean <code>true</code> for http and https links
+     */
+    public static boolean isExternal(String href) {
+        return href.startsWith("http://") || href.startsWith("https://");
+    }
+
+    /**
+     * Verifies the given URLs, ignoring their fragments
+     *
+     * @param urls the URLs to verify
+     * @return The Map of each URL to the Result of its verification, in the
+     *         order of the URLs
+     */
+    public Map<String, Result> check(Collection<String> urls) {
+        Map<String, Long> cache = loadCache();
+        Map<String, Result> results = new LinkedHashMap<String, Result>();
+        Map<String, List<String>> requests = new LinkedHashMap<String, List<String>>();
+        for (String url : new LinkedHashSet<String>(urls)) {
+            String resource = withoutFragment(url);
+            if (cache.containsKey(resource)) {
+                results.put(url, new Result(resource, 0, null, true));
+                continue;
+            }
+            List<String> requested = requests.get(resource);
+            if (requested == null) {
+                requested = new ArrayList<String>();
+                requests.put(resource, requested);
+            }
+            requested.add(url);
+        }
+        Map<String, Result> responses = request(requests.keySet());
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, List<String>> request : requests.entrySet()) {
+            Result response = responses.get(request.getKey());
+            for (String url : request.getValue()) {
+                results.put(url, response);
+            }
+            if (response.isAlive()) {
+                cache.put(request.getKey(), Long.valueOf(now));
+            }
+        }
+        if (!requests.isEmpty()) {
+            synchronized (ExternalLinkChecker.class) {
+                // keep the URLs cached meanwhile by concurrent checks
+                Map<String, Long> stored = loadCache();
+                stored.putAll(cache);
+                storeCache(stored);
+            }
+        }
+        // keep the order of the URLs
+        Map<String, Result> ordered = new LinkedHashMap<String, Result>();
+        for (String url : urls) {
+            ordered.put(url, results.get(url));
+        }
+        return ordered;
+    }
+
+    private Map<String, Result> request(Collection<String> urls) {
+        Map<String, Result> results = new LinkedHashMap<String, Result>();
+        if (urls.isEmpty()) {
+            return results;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxConnections, urls.size()));
+        try {
+            Map<String, Future<Result>> futures = new LinkedHashMap<String, Future<Result>>();
+            for (final String url : interleaveHosts(urls)) {
+                futures.put(url, executor.submit(new Callable<Result>() {
+                    public Result call() {
+                        return requestWithHostPermit(url);
+                    }
+                }));
+            }
+            for (String url : urls) {
+                results.put(url, Futures.await(futures.get(url), "verifying external links"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Orders the URLs taking one URL of each host in turn, so that the
+     * threads are not all waiting for the permits of the same host
+     */
+    private List<String> interleaveHosts(Collection<String> urls) {
+        Map<String, List<String>> byHost = new LinkedHashMap<String, List<String>>();
+        for (String url : urls) {
+            String host = hostOf(url);
+            List<String> hostUrls = byHost.get(host);
+            if (hostUrls == null) {
+                hostUrls = new ArrayList<String>();
+                byHost.put(host, hostUrls);
+            }
+            hostUrls.add(url);
+        }
+        List<String> interleaved = new ArrayList<String>(urls.size());
+        for (int i = 0; interleaved.size() < urls.size(); i++) {
+            for (List<String> hostUrls : byHost.values()) {
+                if (i < hostUrls.size()) {
+                    interleaved.add(hostUrls.get(i));
+                }
+            }
+        }
+        return interleaved;
+    }
+
+    private Result requestWithHostPermit(String url) {
+        Semaphore permits = permitsOf(hostOf(url));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result(url, 0, "Interrupted", false);
+        }
+        try {
+            Result result = request(url, "HEAD");
+            if (!result.isAlive() && result.getStatus() >= 400) {
+                // some servers reject or mishandle HEAD requests
+                result = request(url, "GET");
+            }
+            return result;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Result request(String url, String method) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setInstanceFollowRedirects(true);
+            connection.setUseCaches(false);
+            connection.setRequestProperty("User-Agent", USER_AGENT);
+            int status = connection.getResponseCode();
+            return new Result(url, status, connection.getResponseMessage(), status >= 0 && status < 400);
+        } catch (IOException e) {
+            return new Result(url, 0, e.toString(), false);
+        } catch (ClassCastException e) {
+            return new Result(url, 0, "Not an HTTP URL", false);
+        } finally {
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private Semaphore permitsOf(String host) {
+        synchronized (hostPermits) {
+            Semaphore permits = hostPermits.get(host);
+            if (permits == null) {
+                permits = new Semaphore(maxConnectionsPerHost);
+                hostPermits.put(host, permits);
+            }
+            return permits;
+        }
+    }
+
+    private static String hostOf(String url) {
+        try {
+            return new URL(url).getAuthority();
+        } catch (IOException e) {
+            return url;
+        }
+    }
+
+    private static String withoutFragment(String url) {
+        int anchorIdx = url.indexOf('#');
+        return anchorIdx < 0 ? url : url.substring(0, anchorIdx);
+    }
+
+    /**
+     * Loads the URLs found alive whose time to live has not expired
+     */
+    private Map<String, Long> loadCache() {
+        Map<String, Long> cache = new LinkedHashMap<String, Long>();
+        if (cacheFile == null || !cacheFile.isFile()) {
+            return cache;
+        }
+        long expiry = System.currentTimeMillis() - timeToLive;
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(cacheFile), "UTF-8"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int separator = line.indexOf(' ');
+                    if (separator < 0) {
+                        continue;
+                    }
+                    try {
+                        long checked = Long.parseLong(line.substring(0, separator));
+                        if (checked > expiry) {
+                            cache.put(line.substring(separator + 1), Long.valueOf(checked));
+                        }
+                    } catch (NumberFormatException e) {
+                        // skip corrupted line
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable link cache " + cacheFile + ": " + e.getMessage());
+        }
+        return cache;
+    }
+
+    private void storeCache(Map<String, Long> cache) {
+        if (cacheFile == null) {
+            return;
+        }
+        File directory = cacheFile.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            directory.mkdirs();
+        }
+        try {
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(cacheFile), "UTF-8"));
+            try {
+                for (Map.Entry<String, Long> entry : cache.entrySet()) {
+                    writer.print(entry.getValue());
+                    writer.print(' ');
+                    writer.print(entry.getKey());
+                    writer.print('\n');
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new FileSystemException("Cannot write link cache " + cacheFile, e);
+        }
+    }
+
+    /**
+     * The result of the verification of a URL
+     */
+    public static class Result {
+
+        private final String url;
+        private final int status;
+        private final String message;
+        private final boolean alive;
+
+        public Result(String url, int status, String message, boolean alive) {
+            this.url = url;
+            this.status = status;
+            this.message = message;
+            this.alive = alive;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * Returns the HTTP status of the response
+         *
+         * @return The status, or 0 if the URL was not requested or no response
+         *         was received
+         */
+        public int getStatus() {
+            return status;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public boolean isAlive() {
+            return alive;
+        }
+
+        public String toString() {
+            if (status == 0 && message == null) {
+                return "cached";
+            }
+            return status > 0 ? status + " " + message : message;
+        }
+    }
+
+}
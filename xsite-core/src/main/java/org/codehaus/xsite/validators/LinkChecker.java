@@ -1,27 +1,53 @@
 package org.codehaus.xsite.validators;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.codehaus.xsite.Futures;
 import org.codehaus.xsite.LinkValidator;
+import org.codehaus.xsite.XSiteConfiguration;
 import org.codehaus.xsite.model.Link;
 import org.codehaus.xsite.model.Page;
 import org.codehaus.xsite.model.Sitemap;
+import org.codehaus.xsite.validators.LinkReport.BrokenLink;
+import org.codehaus.xsite.validators.LinkReport.Problem;
 
 
 /**
  * Verifies all the links in a Sitemap.
+ * <p>
+ * If configured, the fragments of the links to the pages of the sitemap are
+ * verified against the anchors of the target pages, and the pages are verified
+ * concurrently by the configured number of threads. The validators are then
+ * shared by the threads.
+ * </p>
+ * <p>
+ * Also if configured, the external links accepted by the validators are
+ * requested by an ExternalLinkChecker, before the pages are verified.
+ * </p>
  *
  * @author Joe Walnes
  * @author J&ouml;rg Schaible
  */
 public class LinkChecker {
 
-    private final Collection<String> knownPageFileNames;
+    private static final String TOP_FRAGMENT = "top";
+
     private final Sitemap sitemap;
     private final Reporter reporter;
     private final LinkValidator[] validators;
+    private final XSiteConfiguration configuration;
+    private final Map<String, Verdict> verdicts = new ConcurrentHashMap<String, Verdict>();
 
     /**
      * Callback for errors.
@@ -30,15 +56,81 @@ public class LinkChecker {
         void badLink(Page page, String link);
     }
 
+    /**
+     * Thrown when links are invalid, holding the reports of the sitemaps
+     * verified
+     */
+    @SuppressWarnings("serial")
+    public static class InvalidLinksException extends RuntimeException {
+
+        private final List<LinkReport> reports;
+
+        public InvalidLinksException(List<LinkReport> reports) {
+            super(message(reports));
+            this.reports = reports;
+        }
+
+        /**
+         * Creates an InvalidLinksException for reports made elsewhere, e.g.
+         * by a build daemon, which holds their message but not the reports
+         * 
+         * @param message the message of the reports
+         */
+        public InvalidLinksException(String message) {
+            super(message);
+            this.reports = Collections.emptyList();
+        }
+
+        public List<LinkReport> getReports() {
+            return reports;
+        }
+
+        private static String message(List<LinkReport> reports) {
+            StringBuilder sb = new StringBuilder("Invalid links found");
+            for (LinkReport report : reports) {
+                if (!report.isValid()) {
+                    sb.append(System.getProperty("line.separator")).append(report);
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * The verdict on an href, independent of the page it is found on
+     */
+    private static enum Verdict {
+        ACCEPTED, PAGE, MISSING
+    }
+
+    /**
+     * Creates a LinkChecker, freezing the sitemap if not already frozen so
+     * that pages are looked up by filename, and the verdict on each href can
+     * be cached for the links repeated across pages
+     * 
+     * @param sitemap the Sitemap
+     * @param validators the array of LinkValidator
+     * @param reporter the Reporter of bad links
+     */
     public LinkChecker(Sitemap sitemap, LinkValidator[] validators, Reporter reporter) {
+        this(sitemap, validators, reporter, new XSiteConfiguration());
+    }
+
+    /**
+     * Creates a LinkChecker verifying anchors and using threads as configured
+     * 
+     * @param sitemap the Sitemap
+     * @param validators the array of LinkValidator
+     * @param reporter the Reporter of bad links
+     * @param configuration the XSiteConfiguration
+     */
+    public LinkChecker(Sitemap sitemap, LinkValidator[] validators, Reporter reporter,
+            XSiteConfiguration configuration) {
         this.sitemap = sitemap;
         this.validators = validators;
         this.reporter = reporter;
-        knownPageFileNames = new HashSet<String>();
-        List<Page> allPages = sitemap.getAllPages();
-        for (Page page : allPages ){
-            knownPageFileNames.add(page.getFilename());
-        }
+        this.configuration = configuration;
+        sitemap.freeze();
     }
 
     /**
@@ -46,38 +138,150 @@ public class LinkChecker {
      * @return
      */
     public boolean verify() {
-        boolean success = true;
-        List<Page> allPages = sitemap.getAllPages();
-        for ( Page page : allPages ){
-            Collection<Link> links = page.getLinks();
-            for ( Link link : links ){
-                if (!verifyLinkHref(link.getHref())) {
-                    success = false;
-                    reporter.badLink(page, link.getHref());
+        LinkReport report = check();
+        for (BrokenLink brokenLink : report.getBrokenLinks()) {
+            reporter.badLink(brokenLink.getPage(), brokenLink.getHref());
+        }
+        return report.isValid();
+    }
+
+    /**
+     * Verifies all the links in the site, collecting the broken links of all
+     * pages in sitemap order
+     * 
+     * @return The LinkReport
+     */
+    public LinkReport check() {
+        List<Page> pages = new ArrayList<Page>(new LinkedHashSet<Page>(sitemap.getAllPages()));
+        Map<String, ExternalLinkChecker.Result> externalResults = Collections.emptyMap();
+        if (configuration.isVerifyExternalLinks()) {
+            externalResults = checkExternalLinks(pages);
+        }
+        LinkReport report = new LinkReport();
+        int threads = Math.min(configuration.getThreads(), pages.size());
+        if (threads > 1) {
+            checkConcurrently(pages, externalResults, threads, report);
+        } else {
+            for (Page page : pages) {
+                report.addPage(page.getLinks().size(), check(page, externalResults));
+            }
+        }
+        return report;
+    }
+
+    private void checkConcurrently(List<Page> pages,
+            final Map<String, ExternalLinkChecker.Result> externalResults, int threads, LinkReport report) {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<BrokenLink>>> results = new ArrayList<Future<List<BrokenLink>>>();
+            for (final Page page : pages) {
+                results.add(executor.submit(new Callable<List<BrokenLink>>() {
+                    public List<BrokenLink> call() {
+                        return check(page, externalResults);
+                    }
+                }));
+            }
+            for (int i = 0; i < pages.size(); i++) {
+                report.addPage(pages.get(i).getLinks().size(), Futures.await(results.get(i), "verifying links"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, ExternalLinkChecker.Result> checkExternalLinks(List<Page> pages) {
+        Set<String> urls = new LinkedHashSet<String>();
+        for (Page page : pages) {
+            for (Link link : page.getLinks()) {
+                String href = link.getHref();
+                if (ExternalLinkChecker.isExternal(href) && getVerdict(href) == Verdict.ACCEPTED) {
+                    urls.add(href);
                 }
             }
         }
-        return success;
+        ExternalLinkChecker checker = new ExternalLinkChecker(configuration.getExternalLinkCacheFile());
+        return checker.check(urls);
     }
 
-    protected boolean verifyLinkHref(String href) {
-        for (int i = 0; i < validators.length; i++) {
-            if (validators[i].isValid(href)) {
-                return true;
+    private List<BrokenLink> check(Page page, Map<String, ExternalLinkChecker.Result> externalResults) {
+        List<BrokenLink> brokenLinks = new ArrayList<BrokenLink>();
+        Collection<Link> links = page.getLinks();
+        for (Link link : links) {
+            String href = link.getHref();
+            if (!verifyLinkHref(href)) {
+                brokenLinks.add(new BrokenLink(page, href, Problem.MISSING_PAGE));
+                continue;
+            }
+            Verdict verdict = getVerdict(href);
+            if (verdict == Verdict.PAGE && configuration.isValidateAnchors() && !hasAnchor(page, href)) {
+                brokenLinks.add(new BrokenLink(page, href, Problem.MISSING_ANCHOR));
+            } else if (externalResults.containsKey(href)) {
+                ExternalLinkChecker.Result result = externalResults.get(href);
+                if (!result.isAlive()) {
+                    brokenLinks.add(new BrokenLink(page, href, Problem.DEAD_EXTERNAL_LINK, result.toString()));
+                }
+            }
+        }
+        return brokenLinks;
+    }
+
+    private Verdict getVerdict(String href) {
+        Verdict verdict = verdicts.get(href);
+        if (verdict == null) {
+            verdict = Verdict.MISSING;
+            for (int i = 0; i < validators.length; i++) {
+                if (validators[i].isValid(href)) {
+                    verdict = Verdict.ACCEPTED;
+                    break;
+                }
             }
+            if (verdict == Verdict.MISSING && targetsPage(href)) {
+                verdict = Verdict.PAGE;
+            }
+            verdicts.put(href, verdict);
         }
+        return verdict;
+    }
+
+    /**
+     * Determines if an href is accepted by a validator or targets a page of
+     * the sitemap. Subclasses may override it to decide which links are
+     * missing; the verdicts of the validators are cached by href.
+     * 
+     * @param href the href
+     * @return A boolean <code>true</code> if the href is not missing
+     */
+    protected boolean verifyLinkHref(String href) {
+        return getVerdict(href) != Verdict.MISSING;
+    }
+
+    private boolean targetsPage(String href) {
         int anchorIdx = href.lastIndexOf('#');
         if (anchorIdx >= 0) {
-            // todo: Check anchors
             if (anchorIdx == 0) {
                 return true;
             }
             href = href.substring(0, href.lastIndexOf('#'));
         }
-        if (knownPageFileNames.contains(href)) {
+        return sitemap.getPage(href) != null;
+    }
+
+    /**
+     * Determines if the target page of a link holds the anchor named by its
+     * fragment. Links without a fragment, or with an empty or "top" fragment,
+     * which browsers resolve to the top of the page, need no anchor.
+     */
+    private boolean hasAnchor(Page page, String href) {
+        int anchorIdx = href.indexOf('#');
+        if (anchorIdx < 0) {
+            return true;
+        }
+        String fragment = href.substring(anchorIdx + 1);
+        if (fragment.length() == 0 || fragment.equalsIgnoreCase(TOP_FRAGMENT)) {
             return true;
         }
-        return false;
+        Page target = anchorIdx == 0 ? page : sitemap.getPage(href.substring(0, anchorIdx));
+        return target != null && target.hasAnchor(fragment);
     }
 
 }
@@ -0,0 +1,121 @@
+package org.codehaus.xsite.validators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.xsite.model.Page;
+
+/**
+ * Report of the verification of the links in a Sitemap, holding every broken
+ * link with the page it was found on.
+ * 
+ * @author Mauro Talevi
+ */
+public class LinkReport {
+
+    /**
+     * The problems a link can have
+     */
+    public static enum Problem {
+        /**
+         * The link targets a page which is not in the sitemap and is not
+         * accepted by any validator
+         */
+        MISSING_PAGE,
+        /**
+         * The link targets a page of the sitemap, but with a fragment naming
+         * none of its anchors
+         */
+        MISSING_ANCHOR,
+        /**
+         * The link targets an external URL which could not be retrieved
+         */
+        DEAD_EXTERNAL_LINK
+    }
+
+    private final List<BrokenLink> brokenLinks = new ArrayList<BrokenLink>();
+    private int pageCount;
+    private int linkCount;
+
+    void addPage(int links, List<BrokenLink> broken) {
+        pageCount++;
+        linkCount += links;
+        brokenLinks.addAll(broken);
+    }
+
+    public boolean isValid() {
+        return brokenLinks.isEmpty();
+    }
+
+    public List<BrokenLink> getBrokenLinks() {
+        return Collections.unmodifiableList(brokenLinks);
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public int getLinkCount() {
+        return linkCount;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Verified ").append(linkCount).append(" links on ").append(pageCount).append(" pages, found ")
+                .append(brokenLinks.size()).append(" broken links");
+        for (BrokenLink brokenLink : brokenLinks) {
+            sb.append(System.getProperty("line.separator")).append("  ").append(brokenLink);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A broken link, with the page it was found on
+     */
+    public static class BrokenLink {
+
+        private final Page page;
+        private final String href;
+        private final Problem problem;
+        private final String detail;
+
+        public BrokenLink(Page page, String href, Problem problem) {
+            this(page, href, problem, null);
+        }
+
+        public BrokenLink(Page page, String href, Problem problem, String detail) {
+            this.page = page;
+            this.href = href;
+            this.problem = problem;
+            this.detail = detail;
+        }
+
+        public Page getPage() {
+            return page;
+        }
+
+        public String getHref() {
+            return href;
+        }
+
+        public Problem getProblem() {
+            return problem;
+        }
+
+        /**
+         * Returns the detail of the problem, e.g. the response of the server
+         * to a dead external link
+         * 
+         * @return The detail or <code>null</code>
+         */
+        public String getDetail() {
+            return detail;
+        }
+
+        public String toString() {
+            return page.getFilename() + " : " + href + " (" + problem + (detail != null ? ": " + detail : "") + ")";
+        }
+    }
+
+}
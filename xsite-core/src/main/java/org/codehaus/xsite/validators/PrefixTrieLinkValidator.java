@@ -0,0 +1,74 @@
+package org.codehaus.xsite.validators;
+
+import java.util.Arrays;
+
+import org.codehaus.xsite.LinkValidator;
+
+/**
+ * Validate a link starting with any of several values. The values are merged
+ * into a trie, so that a link is validated in a single pass over its first
+ * characters, however many values are configured.
+ *
+ * @author Mauro Talevi
+ */
+public class PrefixTrieLinkValidator implements LinkValidator {
+
+    private final String[] prefixes;
+    private final Node root = new Node();
+
+    public PrefixTrieLinkValidator(final String[] prefixes) {
+        this.prefixes = prefixes.clone();
+        for (String prefix : prefixes) {
+            Node node = root;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.addChild(prefix.charAt(i));
+            }
+            node.terminal = true;
+        }
+    }
+
+    public boolean isValid(String link) {
+        Node node = root;
+        for (int i = 0; !node.terminal; i++) {
+            if (i == link.length() || (node = node.child(link.charAt(i))) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String toString() {
+        return "PrefixTrieLinkValidator" + Arrays.asList(prefixes);
+    }
+
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private boolean terminal;
+
+        private Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node addChild(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            index = -index - 1;
+            char[] newKeys = new char[keys.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+            newKeys[index] = c;
+            newChildren[index] = new Node();
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[index];
+        }
+    }
+
+}
@@ -1,7 +1,11 @@
 package org.codehaus.xsite;
 
 import java.io.File;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
 
+import org.codehaus.xsite.factories.PicoXSiteFactory;
 import org.junit.Before;
 
 /**
@@ -20,5 +24,11 @@ public abstract class AbstractXSiteTest {
             testSrcDir = testSrcDir + File.separator; 
         }        
     }
+
+    protected XSite createXSite() {
+        Map<Class<URL>, URL> config = new HashMap<Class<URL>, URL>();
+        config.put(URL.class, Thread.currentThread().getContextClassLoader().getResource("org/codehaus/xsite/xsite.xml"));
+        return new PicoXSiteFactory().createXSite(config);
+    }
     
 }
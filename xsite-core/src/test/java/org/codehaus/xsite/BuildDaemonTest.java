@@ -0,0 +1,89 @@
+package org.codehaus.xsite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.BuildDaemon.BuildFailedException;
+import org.codehaus.xsite.validators.LinkChecker.InvalidLinksException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class BuildDaemonTest extends AbstractXSiteTest {
+
+    private File tokenFile = new File("target/daemon/xsite.token");
+    private BuildDaemon daemon;
+
+    @Before
+    public void setUp() throws IOException {
+        daemon = new BuildDaemon(tokenFile);
+        daemon.start(0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        daemon.stop();
+    }
+
+    @Test
+    public void canBuildWithWarmXSite() throws IOException {
+        File output = new File("target/xsite-daemon");
+        FileUtils.deleteDirectory(output);
+        String[] args = Main.daemonArgs(new String[] { "-S" + testSrcDir, "-mcontent/sitemap.xml",
+                "-stemplates/skin.html", "-Rresources", "-otarget/xsite-daemon", "-j2" });
+        assertTrue(BuildDaemon.build(daemon.getPort(), tokenFile, args));
+        assertTrue(new File(output, "index.html").exists());
+        assertTrue(new File(output, "page.html").exists());
+        new File(output, "index.html").delete();
+        assertTrue(BuildDaemon.build(daemon.getPort(), tokenFile, args));
+        assertTrue(new File(output, "index.html").exists());
+        assertEquals(1, daemon.getXSites().size());
+    }
+
+    @Test(expected = InvalidLinksException.class)
+    public void canFailBuildWithInvalidLinks() {
+        BuildDaemon.build(daemon.getPort(), tokenFile, Main.daemonArgs(new String[] { "-S" + testSrcDir,
+                "-mbroken/sitemap.xml", "-k" }));
+    }
+
+    @Test(expected = BuildFailedException.class)
+    public void canRefuseBuildWithInvalidToken() throws IOException {
+        File invalidTokenFile = new File("target/daemon/invalid.token");
+        FileUtils.writeStringToFile(invalidTokenFile, "invalid");
+        BuildDaemon.build(daemon.getPort(), invalidTokenFile, new String[] { "-h" });
+    }
+
+    @Test
+    public void canDisconnectClientsWhichSendNoRequest() throws IOException {
+        daemon.setReadTimeout(100);
+        Socket idle = new Socket(InetAddress.getByName("127.0.0.1"), daemon.getPort());
+        try {
+            File output = new File("target/xsite-daemon-idle");
+            FileUtils.deleteDirectory(output);
+            assertTrue(BuildDaemon.build(daemon.getPort(), tokenFile, Main.daemonArgs(new String[] {
+                    "-S" + testSrcDir, "-mcontent/sitemap.xml", "-stemplates/skin.html", "-o" + output.getPath() })));
+            assertTrue(new File(output, "index.html").exists());
+        } finally {
+            idle.close();
+        }
+    }
+
+    @Test
+    public void canFallBackIfNoDaemonIsListening() throws IOException {
+        int port = daemon.getPort();
+        daemon.stop();
+        assertFalse(tokenFile.exists());
+        assertFalse(BuildDaemon.build(port, tokenFile, new String[] { "-h" }));
+    }
+
+}
@@ -0,0 +1,110 @@
+package org.codehaus.xsite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.validators.LinkChecker.InvalidLinksException;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class BuildRunnerTest extends AbstractXSiteTest {
+
+    @Test
+    public void canBuildLocalisedSitesWithCachedXSite() throws IOException {
+        File output = new File("target/xsite-runner");
+        FileUtils.deleteDirectory(output);
+        BuildRequest request = new BuildRequest(new File(testSrcDir), "content/sitemap.xml");
+        request.setSkinPath("templates/skin.html");
+        request.setResourcePaths(new String[] { "resources" });
+        request.setOutputDirectory(output);
+        request.setLocalisations(new String[] { "it" });
+        XSiteCache xsites = new XSiteCache();
+        BuildResult result = new BuildRunner(xsites).run(request);
+        assertEquals(2, result.getSites());
+        assertEquals(4, result.getPages());
+        assertEquals(4, result.getSkinnedPages());
+        assertEquals(4, result.getWrittenPages());
+        assertEquals(2, result.getLinkReports().size());
+        assertTrue(result.isValid());
+        assertEquals(Arrays.asList(BuildResult.LOAD, BuildResult.RESOURCES, BuildResult.SKIN, BuildResult.VERIFY),
+                Arrays.asList(result.getTimings().keySet().toArray()));
+        assertTrue(new File(output, "page.html").exists());
+        assertTrue(new File(output, "it/page.html").exists());
+
+        request.setThreads(2);
+        assertEquals(2, new BuildRunner(xsites).run(request).getSites());
+        assertEquals(1, xsites.size());
+    }
+
+    @Test
+    public void canLeaveConfigurationOfRunningBuildUnchanged() throws Exception {
+        final BuildRequest request = new BuildRequest(new File(testSrcDir), "content/sitemap.xml");
+        request.setSkinPath("templates/skin.html");
+        request.setOutputDirectory(new File("target/xsite-runner-locked"));
+        final XSiteCache xsites = new XSiteCache();
+        XSite xsite = xsites.get(Main.instantiateXSiteFactory(null), request.getCompositionURL());
+        Thread other;
+        synchronized (xsite) {
+            // as configured by a running build
+            xsite.getConfiguration().setIncremental(true);
+            other = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        new BuildRunner(xsites).run(request);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            other.start();
+            other.join(500);
+            assertTrue(xsite.getConfiguration().isIncremental());
+        }
+        other.join();
+        assertFalse(xsite.getConfiguration().isIncremental());
+    }
+
+    @Test(expected = InvalidLinksException.class)
+    public void canFailVerificationWithInvalidLinks() throws IOException {
+        BuildRequest request = new BuildRequest(new File(testSrcDir), "broken/sitemap.xml");
+        request.setVerifyOnly(true);
+        new BuildRunner(new XSiteCache()).run(request);
+    }
+
+    @Test
+    public void canConfigureResourceSynchronisation() {
+        BuildRequest request = new BuildRequest(new File("source"), "content/sitemap.xml");
+        request.setCompareResourceContent(true);
+        request.setDeleteStaleResources(true);
+        XSiteConfiguration configuration = new XSiteConfiguration();
+        request.configure(configuration);
+        assertTrue(configuration.isSyncResources());
+        assertTrue(configuration.isCompareResourceContent());
+        assertTrue(configuration.isDeleteStaleResources());
+        assertEquals(Arrays.asList("-Ssource", "-mcontent/sitemap.xml", "-VN/A", "-H", "-e"), Arrays
+                .asList(request.toArgs()));
+    }
+
+    @Test
+    public void canResolvePathsOfLocalisations() {
+        BuildRequest request = new BuildRequest(new File("source"), "content/sitemap.xml");
+        request.setSkinPath("skin.html");
+        request.setTemplatesDirectory(new File("templates"));
+        request.setOutputDirectory(new File("output"));
+        assertEquals(new File("source/content/sitemap.xml"), request.getSitemapFile(null));
+        assertEquals(new File("source/content/sitemap.xml"), request.getSitemapFile("fr"));
+        assertEquals(new File("templates/skin.html"), request.getSkinFile(null));
+        assertEquals(new File("output/fr"), request.getOutputDirectory("fr"));
+        assertEquals(Arrays.asList("-Ssource", "-mcontent/sitemap.xml", "-sskin.html", "-ooutput", "-Ttemplates",
+                "-VN/A"), Arrays.asList(request.toArgs()));
+    }
+
+}
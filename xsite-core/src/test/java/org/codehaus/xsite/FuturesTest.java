@@ -0,0 +1,53 @@
+package org.codehaus.xsite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class FuturesTest {
+
+    @Test
+    public void canRethrowFailuresOfTasks() throws Exception {
+        final IOException failure = new IOException("failed");
+        FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+            public String call() throws IOException {
+                throw failure;
+            }
+        });
+        task.run();
+        try {
+            Futures.await(task, IOException.class, "reading");
+            fail("Expected IOException");
+        } catch (IOException e) {
+            assertSame(failure, e);
+        }
+        try {
+            Futures.await(task, "reading");
+            fail("Expected RuntimeException");
+        } catch (RuntimeException e) {
+            assertEquals("Failed reading", e.getMessage());
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    @Test
+    public void canReturnResultsOfTasks() {
+        FutureTask<String> task = new FutureTask<String>(new Callable<String>() {
+            public String call() {
+                return "result";
+            }
+        });
+        task.run();
+        assertEquals("result", Futures.await(task, "reading"));
+    }
+
+}
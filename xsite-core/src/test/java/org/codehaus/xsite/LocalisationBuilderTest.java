@@ -0,0 +1,85 @@
+package org.codehaus.xsite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class LocalisationBuilderTest extends AbstractXSiteTest {
+
+    @Test
+    public void canBuildLocalisationsConcurrentlyAsSerially() throws IOException {
+        File serial = new File("target/l10n-serial");
+        File concurrent = new File("target/l10n-concurrent");
+        XSite xsite = createXSite();
+        BuildResult result = new LocalisationBuilder(xsite, createRequest(serial)).build();
+        assertEquals(3, result.getSites());
+
+        xsite.getConfiguration().setLocalisationThreads(3);
+        xsite.getConfiguration().setThreads(2);
+        result = new LocalisationBuilder(xsite, createRequest(concurrent)).build();
+        assertEquals(3, result.getSites());
+        assertEquals(6, result.getSkinnedPages());
+        assertEquals(3, result.getLinkReports().size());
+
+        Collection<?> files = FileUtils.listFiles(serial, null, true);
+        assertEquals(files.size(), FileUtils.listFiles(concurrent, null, true).size());
+        for (Object file : files) {
+            String path = ((File) file).getPath().substring(serial.getPath().length());
+            assertTrue(path, FileUtils.contentEquals((File) file, new File(concurrent, path)));
+        }
+    }
+
+    @Test
+    public void canShareResourcesWithLocalisations() throws IOException {
+        File output = new File("target/l10n-shared");
+        XSite xsite = createXSite();
+        xsite.getConfiguration().setLocalisationThreads(2);
+        xsite.getConfiguration().setShareResources(true);
+        new LocalisationBuilder(xsite, createRequest(output)).build();
+        assertTrue(new File(output, "images/logo.gif").exists());
+        assertTrue(new File(output, "it/page.html").exists());
+        assertFalse(new File(output, "it/images/logo.gif").exists());
+        assertFalse(new File(output, "fr/images/logo.gif").exists());
+    }
+
+    @Test
+    public void canResolveSharedResourcesFromLocalisedPages() throws IOException {
+        File output = new File("target/l10n-shared-links");
+        XSite xsite = createXSite();
+        xsite.getConfiguration().setShareResources(true);
+        new LocalisationBuilder(xsite, createRequest(output)).build();
+        File localised = new File(output, "it");
+        String html = FileUtils.readFileToString(new File(localised, "page.html"));
+        Matcher matcher = Pattern.compile("(?:href|src)=\"([^\"]*\\.(?:css|gif))\"").matcher(html);
+        int resources = 0;
+        while (matcher.find()) {
+            assertTrue(matcher.group(1), new File(localised, matcher.group(1)).exists());
+            resources++;
+        }
+        assertEquals(2, resources);
+    }
+
+    private BuildRequest createRequest(File output) throws IOException {
+        FileUtils.deleteDirectory(output);
+        BuildRequest request = new BuildRequest(new File(testSrcDir), "content/sitemap.xml");
+        request.setSkinPath("templates/skin.html");
+        request.setResourcePaths(new String[] { "resources" });
+        request.setOutputDirectory(output);
+        request.setLocalisations(new String[] { "it", "fr" });
+        request.setPublishedDate("2008-01-01");
+        return request;
+    }
+
+}
@@ -1,12 +1,21 @@
 package org.codehaus.xsite;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
 
 import java.net.URL;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Properties;
 
 import org.apache.commons.cli.CommandLine;
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.io.ShardManifest.IncompleteShardsException;
+import org.codehaus.xsite.validators.LinkChecker.InvalidLinksException;
 import org.junit.Test;
 
 /**
@@ -54,6 +63,39 @@ public class MainTest extends AbstractXSiteTest {
                         "-otarget/xsite" });
     }
 
+    @Test
+    public void testCanBuildWithThreads() throws Exception {
+        Main.main(new String[] { "-S" + testSrcDir, "-mcontent/sitemap.xml", "-stemplates/skin.html", "-j4",
+                        "-otarget/xsite" });
+    }
+
+    @Test
+    public void testCanBuildInPipeline() throws Exception {
+        Main.main(new String[] { "-S" + testSrcDir, "-mcontent/sitemap.xml", "-stemplates/skin.html", "-j2", "-p4",
+                        "-otarget/xsite" });
+    }
+
+    @Test
+    public void testCanVerifyLinksWithoutBuilding() throws Exception {
+        File output = new File("target/xsite-verify-only");
+        Main main = new Main(new String[] { "-S" + testSrcDir, "-mcontent/sitemap.xml", "-k", "-L" + "it",
+                "-o" + output.getPath() });
+        assertEquals(2, main.getLinkReports().size());
+        assertTrue(main.getLinkReports().get(0).isValid());
+        assertFalse(output.exists());
+    }
+
+    @Test(expected = InvalidLinksException.class)
+    public void testWillFailWhenVerifyingInvalidLinks() throws Exception {
+        Main.main(new String[] { "-S" + testSrcDir, "-mbroken/sitemap.xml", "-k" });
+    }
+
+    @Test
+    public void testCanBuildSyncingResources() throws Exception {
+        Main.main(new String[] { "-S" + testSrcDir, "-mcontent/sitemap.xml", "-stemplates/skin.html", "-Rresources",
+                        "-u", "-e", "-otarget/xsite" });
+    }
+
     @Test
     public void testCanSpecifySkinTemplatesDir() throws Exception {
         Main.main(new String[] { "-S" + testSrcDir, "-mcontent/sitemap.xml", "-sskin.html", "-T"+testSrcDir+"/templates",
@@ -81,4 +123,56 @@ public class MainTest extends AbstractXSiteTest {
                         "-otarget/xsite" });
     }
 
+    @Test
+    public void testCanBuildIncrementallyWithDefaultPublishedDate() throws Exception {
+        File output = new File("target/xsite-incremental-main");
+        FileUtils.deleteDirectory(output);
+        String[] args = new String[] { "-S" + testSrcDir, "-mcontent/sitemap.xml", "-stemplates/skin.html", "-i",
+                "-o" + output.getPath() };
+        Main.main(args);
+        File index = new File(output, "index.html");
+        index.setLastModified(0);
+        // let the default published date of the second build differ
+        Thread.sleep(1000);
+        Main.main(args);
+        assertEquals(0, index.lastModified());
+    }
+
+    @Test
+    public void testCanBuildShardsAndMergeTheirManifests() throws Exception {
+        File output = new File("target/xsite-shards");
+        FileUtils.deleteDirectory(output);
+        String[] args = new String[] { "-S" + testSrcDir, "-mcontent/sitemap.xml", "-stemplates/skin.html",
+                "-Rresources", "-o" + output.getPath() };
+        Main.main(concat(args, "--shard", "1/2"));
+        try {
+            Main.main(concat(args, "-M"));
+            fail("Expected IncompleteShardsException");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IncompleteShardsException);
+        }
+        Main.main(concat(args, "--shard", "2/2"));
+        assertTrue(new File(output, "index.html").exists());
+        assertTrue(new File(output, "page.html").exists());
+        assertTrue(new File(output, "images/logo.gif").exists());
+        Main.main(concat(args, "-M"));
+    }
+
+    private static String[] concat(String[] args, String... more) {
+        String[] all = new String[args.length + more.length];
+        System.arraycopy(args, 0, all, 0, args.length);
+        System.arraycopy(more, 0, all, args.length, more.length);
+        return all;
+    }
+
+    @Test
+    public void testCanResolvePathsOfDaemonArgs() throws Exception {
+        String[] args = Main.daemonArgs(new String[] { "-Ssource", "-mcontent/sitemap.xml", "-stemplates/skin.html",
+                "-ooutput", "-i" });
+        assertEquals(new HashSet<String>(Arrays.asList("-S" + new File("source").getAbsolutePath(),
+                "-mcontent/sitemap.xml", "-stemplates/skin.html", "-o" + new File("output").getAbsolutePath(), "-i")),
+                new HashSet<String>(Arrays.asList(args)));
+        assertEquals(null, Main.daemonArgs(new String[] { "-Ssource", "-msitemap.xml", "-sskin.html", "-P8080" }));
+    }
+
 }
@@ -0,0 +1,108 @@
+package org.codehaus.xsite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class PreviewServerTest extends AbstractXSiteTest {
+
+    private File source = new File("target/preview-src");
+    private PreviewServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(source);
+        for (String directory : new String[] { "content", "templates", "resources" }) {
+            FileUtils.copyDirectory(new File(testSrcDir + "/" + directory), new File(source, directory));
+        }
+        XSite xsite = createXSite();
+        server = new PreviewServer(xsite, new File(source, "content/sitemap.xml"), new File(source,
+                "templates/skin.html"), new File[] { new File(source, "resources") }, new HashMap<String, Object>(),
+                PreviewServer.DEFAULT_CACHE_SIZE, 0);
+        server.start(0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop();
+    }
+
+    @Test
+    public void canServePagesAndResources() throws IOException {
+        assertTrue(get("/").contains("is a simple site generation tool"));
+        assertTrue(get("/page.html").contains("A page from XSite"));
+        assertEquals(FileUtils.readFileToString(new File(source, "resources/test.properties")),
+                get("/test.properties"));
+        assertEquals(404, status("/missing.html"));
+        assertEquals(404, status("/../content/sitemap.xml"));
+    }
+
+    @Test
+    public void canServeCachedPagesUntilSourcesChange() throws IOException {
+        assertTrue(get("/page.html").contains("A page from XSite"));
+        change("content/page.html", "A page from XSite", "A changed page from XSite");
+        assertTrue(get("/page.html").contains("A page from XSite"));
+        server.refresh();
+        assertTrue(get("/page.html").contains("A changed page from XSite"));
+    }
+
+    @Test
+    public void canServeChangedSkin() throws IOException {
+        assertTrue(get("/index.html").contains("<h1 class=\"FirstChild\">"));
+        change("templates/skin.html", "<h1 class=\"FirstChild\">", "<h1 class=\"FirstChild Changed\">");
+        server.refresh();
+        assertTrue(get("/index.html").contains("FirstChild Changed"));
+        assertTrue(get("/page.html").contains("FirstChild Changed"));
+    }
+
+    private void change(String path, String target, String replacement) throws IOException {
+        File file = new File(source, path);
+        long lastModified = file.lastModified();
+        String content = FileUtils.readFileToString(file);
+        assertTrue(content.contains(target));
+        FileUtils.writeStringToFile(file, content.replace(target, replacement));
+        // the modification time may not have changed within its resolution
+        file.setLastModified(lastModified + 2000);
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = open(path);
+        assertEquals(200, connection.getResponseCode());
+        InputStream input = connection.getInputStream();
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = input.read(buffer)) >= 0) {
+                output.write(buffer, 0, count);
+            }
+            return output.toString();
+        } finally {
+            input.close();
+        }
+    }
+
+    private int status(String path) throws IOException {
+        return open(path).getResponseCode();
+    }
+
+    private HttpURLConnection open(String path) throws IOException {
+        return (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+    }
+
+}
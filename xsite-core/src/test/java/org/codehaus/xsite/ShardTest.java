@@ -0,0 +1,52 @@
+package org.codehaus.xsite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class ShardTest {
+
+    @Test
+    public void canParseShard() {
+        Shard shard = Shard.parse("2/4");
+        assertEquals(2, shard.getIndex());
+        assertEquals(4, shard.getCount());
+        assertEquals("2/4", shard.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotParseShardOutOfRange() {
+        Shard.parse("5/4");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotParseShardWithoutCount() {
+        Shard.parse("2");
+    }
+
+    @Test
+    public void canAssignEachPageToOneShard() {
+        Shard[] shards = new Shard[] { new Shard(1, 3), new Shard(2, 3), new Shard(3, 3) };
+        int[] sizes = new int[shards.length];
+        for (int i = 0; i < 300; i++) {
+            String filename = "page" + i + ".html";
+            int owners = 0;
+            for (int j = 0; j < shards.length; j++) {
+                if (shards[j].contains(filename)) {
+                    owners++;
+                    sizes[j]++;
+                }
+            }
+            assertEquals(filename, 1, owners);
+        }
+        for (int size : sizes) {
+            assertTrue(size > 50);
+        }
+        assertTrue(new Shard(1, 1).contains("index.html"));
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.codehaus.xsite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class SiteWatcherTest extends AbstractXSiteTest {
+
+    private File source = new File("target/watch-src");
+    private File output = new File("target/xsite-watch");
+    private SiteWatcher watcher;
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(source);
+        FileUtils.deleteDirectory(output);
+        for (String directory : new String[] { "content", "templates", "resources" }) {
+            FileUtils.copyDirectory(new File(testSrcDir + "/" + directory), new File(source, directory));
+        }
+        XSite xsite = createXSite();
+        watcher = new SiteWatcher(xsite, new File(source, "content/sitemap.xml"), new File(source,
+                "templates/skin.html"), new File[] { new File(source, "resources") }, output,
+                new HashMap<String, Object>());
+        watcher.build();
+    }
+
+    @Test
+    public void canUpdateNothingIfNothingChanged() throws IOException {
+        assertEquals(0, watcher.update());
+    }
+
+    @Test
+    public void canSkinOnlyChangedPage() throws IOException {
+        File index = new File(output, "index.html");
+        index.delete();
+        change("content/page.html", "A page from XSite", "A changed page from XSite");
+        assertEquals(1, watcher.update());
+        assertTrue(read("page.html").contains("A changed page from XSite"));
+        assertTrue(!index.exists());
+        assertEquals(0, watcher.update());
+    }
+
+    @Test
+    public void canSkinAllPagesIfTitleChanged() throws IOException {
+        change("content/page.html", "An XSite Page", "A Changed XSite Page");
+        assertEquals(2, watcher.update());
+        assertTrue(read("index.html").contains("A Changed XSite Page"));
+    }
+
+    @Test
+    public void canSkinAllPagesIfSkinChanged() throws IOException {
+        change("templates/skin.html", "<h1 class=\"FirstChild\">", "<h1 class=\"FirstChild Changed\">");
+        assertEquals(2, watcher.update());
+        assertTrue(read("index.html").contains("FirstChild Changed"));
+        assertTrue(read("page.html").contains("FirstChild Changed"));
+    }
+
+    @Test
+    public void canCopyOnlyChangedResource() throws IOException {
+        File logo = new File(output, "images/logo.gif");
+        logo.delete();
+        change("resources/style/style.css", "", "/* changed */");
+        assertEquals(0, watcher.update());
+        assertTrue(read("style/style.css").contains("/* changed */"));
+        assertTrue(!logo.exists());
+    }
+
+    private void change(String path, String target, String replacement) throws IOException {
+        File file = new File(source, path);
+        long lastModified = file.lastModified();
+        String content = FileUtils.readFileToString(file);
+        if (target.length() == 0) {
+            content = content + replacement;
+        } else {
+            assertTrue(content.contains(target));
+            content = content.replace(target, replacement);
+        }
+        FileUtils.writeStringToFile(file, content);
+        // the modification time may not have changed within its resolution
+        file.setLastModified(lastModified + 2000);
+    }
+
+    private String read(String path) throws IOException {
+        return FileUtils.readFileToString(new File(output, path));
+    }
+
+}
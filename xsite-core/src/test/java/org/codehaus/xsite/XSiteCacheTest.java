@@ -0,0 +1,58 @@
+package org.codehaus.xsite;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+
+import org.apache.commons.io.FileUtils;
+
+import org.codehaus.xsite.factories.PicoXSiteFactory;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class XSiteCacheTest {
+
+    private URL composition = Thread.currentThread().getContextClassLoader().getResource("org/codehaus/xsite/xsite.xml");
+
+    @Test
+    public void canReuseXSiteWithConfigurationOfComposition() {
+        XSiteCache cache = new XSiteCache();
+        XSite xsite = cache.get(new PicoXSiteFactory(), composition);
+        int threads = xsite.getConfiguration().getThreads();
+        xsite.getConfiguration().setThreads(threads + 3);
+        xsite.getConfiguration().setIncremental(true);
+        assertSame(xsite, cache.get(new PicoXSiteFactory(), composition));
+        cache.restore(xsite);
+        assertEquals(threads, xsite.getConfiguration().getThreads());
+        assertEquals(false, xsite.getConfiguration().isIncremental());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void canCreateXSiteAgainWhenCompositionFileIsModified() throws IOException {
+        File file = new File("target/cache/xsite.xml");
+        FileUtils.copyURLToFile(composition, file);
+        URL url = file.toURL();
+        XSiteCache cache = new XSiteCache();
+        XSite xsite = cache.get(new PicoXSiteFactory(), url);
+        assertSame(xsite, cache.get(new PicoXSiteFactory(), url));
+        file.setLastModified(file.lastModified() + 10000);
+        assertNotSame(xsite, cache.get(new PicoXSiteFactory(), url));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void canCacheXSitePerComposition() {
+        XSiteCache cache = new XSiteCache();
+        URL custom = Thread.currentThread().getContextClassLoader().getResource("custom-xsite.xml");
+        assertNotSame(cache.get(new PicoXSiteFactory(), composition), cache.get(new PicoXSiteFactory(), custom));
+        assertEquals(2, cache.size());
+    }
+
+}
@@ -1,36 +1,256 @@
 package org.codehaus.xsite;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 
-import org.codehaus.xsite.factories.PicoXSiteFactory;
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.extractors.SiteMeshPageExtractor;
+import org.codehaus.xsite.io.CommonsFileSystem;
 import org.codehaus.xsite.io.CommonsFileSystem.FileSystemException;
+import org.codehaus.xsite.loaders.XStreamSitemapLoader;
+import org.codehaus.xsite.model.Page;
+import org.codehaus.xsite.model.Sitemap;
+import org.codehaus.xsite.validators.LinkReport;
+import org.codehaus.xsite.validators.LinkChecker.InvalidLinksException;
 import org.junit.Test;
 
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.DomDriver;
+
 public class XSiteTest extends AbstractXSiteTest {
 
     @Test
     public void testBuild() throws IOException {
-        XSiteFactory factory = new PicoXSiteFactory();
-        Map<Class<URL>, URL> config = new HashMap<Class<URL>, URL>();
-        config.put(URL.class, Thread.currentThread().getContextClassLoader().getResource("org/codehaus/xsite/xsite.xml"));
-        XSite xsite = factory.createXSite(config);
+        XSite xsite = createXSite();
         xsite.build(new File(testSrcDir + "/content/sitemap.xml"), new File(testSrcDir + "/templates/skin.html"),
                 new File[] { new File(testSrcDir + "/resources"), new File(testSrcDir + "/resources2") }, new File(
                         "target/xsite"), new HashMap<String, Object>());
     }
     
+    @Test
+    public void testBuildWithSkinWhichIsNotARenderingSkin() throws IOException {
+        XSiteConfiguration configuration = new XSiteConfiguration(false, 2);
+        XSite xsite = new XSite(new XStreamSitemapLoader(new SiteMeshPageExtractor(), new XStream(new DomDriver())),
+                new BodySkin(), new LinkValidator[0], new CommonsFileSystem(), configuration);
+        File output = new File("target/xsite-body-skin");
+        File sitemap = new File(testSrcDir + "/content/sitemap.xml");
+        xsite.build(sitemap, new File(testSrcDir + "/templates/skin.html"), new File[0], output,
+                new HashMap<String, Object>());
+        Sitemap siteMap = xsite.loadSitemap(sitemap);
+        Page page = siteMap.getAllPages().get(0);
+        assertEquals(page.getBody(), FileUtils.readFileToString(new File(output, page.getFilename())));
+        assertEquals(page.getBody(), new String(xsite.render(page, siteMap, new HashMap<String, Object>())));
+    }
+
+    public static class BodySkin implements Skin {
+
+        public void load(File skinFile) {
+        }
+
+        public void skin(Page page, Sitemap sitemap, File outputDirectory, Map<String, Object> customProperties) {
+            try {
+                FileUtils.writeStringToFile(new File(outputDirectory, page.getFilename()), page.getBody());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
     @Test(expected=FileSystemException.class)
     public void testBuildWithInexistentResources() throws IOException {
-        XSiteFactory factory = new PicoXSiteFactory();
-        Map<Class<URL>, URL> config = new HashMap<Class<URL>, URL>();
-        config.put(URL.class, Thread.currentThread().getContextClassLoader().getResource("org/codehaus/xsite/xsite.xml"));
-        XSite xsite = factory.createXSite(config);
+        XSite xsite = createXSite();
         xsite.build(new File(testSrcDir + "/content/sitemap.xml"), new File(testSrcDir + "/templates/skin.html"),
                 new File[] { new File(testSrcDir + "/inexistent-resources") }, new File(
                         "target/xsite"), new HashMap<String, Object>());
     }
+
+    @Test
+    public void testConcurrentBuildIsIdenticalToSerialBuild() throws IOException {
+        XSite xsite = createXSite();
+        Map<String, Object> customProperties = new HashMap<String, Object>();
+        File[] resources = new File[] { new File(testSrcDir + "/resources"), new File(testSrcDir + "/resources2") };
+        File serialOutput = new File("target/xsite-serial");
+        xsite.build(new File(testSrcDir + "/content/sitemap.xml"), new File(testSrcDir + "/templates/skin.html"),
+                resources, serialOutput, customProperties);
+        xsite.getConfiguration().setThreads(4);
+        File concurrentOutput = new File("target/xsite-concurrent");
+        xsite.build(new File(testSrcDir + "/content/sitemap.xml"), new File(testSrcDir + "/templates/skin.html"),
+                resources, concurrentOutput, customProperties);
+        for (String filename : new String[] { "index.html", "page.html", "style.css", "style/style.css",
+                "images/logo.gif" }) {
+            assertTrue(filename, FileUtils.contentEquals(new File(serialOutput, filename), new File(concurrentOutput,
+                    filename)));
+        }
+    }
+
+    @Test
+    public void testConcurrentBuildWritesPagesOverResourcesOfSameName() throws IOException {
+        XSite xsite = createXSite();
+        xsite.getConfiguration().setThreads(4);
+        File resources = new File("target/page-resources");
+        FileUtils.deleteDirectory(resources);
+        FileUtils.writeStringToFile(new File(resources, "index.html"), "resource");
+        FileUtils.writeStringToFile(new File(resources, "style.css"), "resource");
+        for (int pipelineDepth : new int[] { 0, 1 }) {
+            xsite.getConfiguration().setPipelineDepth(pipelineDepth);
+            File output = new File("target/xsite-page-resources");
+            FileUtils.deleteDirectory(output);
+            xsite.build(new File(testSrcDir + "/content/sitemap.xml"), new File(testSrcDir + "/templates/skin.html"),
+                    new File[] { resources }, output, new HashMap<String, Object>());
+            assertFalse("resource".equals(FileUtils.readFileToString(new File(output, "index.html"))));
+            assertEquals("resource", FileUtils.readFileToString(new File(output, "style.css")));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildWithCustomPropertyNamedAsNavigation() throws IOException {
+        XSite xsite = createXSite();
+        Map<String, Object> customProperties = new HashMap<String, Object>();
+        customProperties.put(XSite.NAVIGATION, "custom");
+        xsite.build(new File(testSrcDir + "/content/sitemap.xml"), new File(testSrcDir + "/templates/skin.html"),
+                new File[0], new File("target/xsite-navigation"), customProperties);
+    }
+
+    @Test
+    public void testIncrementalBuildSkinsOnlyOutdatedPages() throws IOException {
+        XSite xsite = createXSite();
+        xsite.getConfiguration().setIncremental(true);
+        Map<String, Object> customProperties = new HashMap<String, Object>();
+        customProperties.put("publishedVersion", "1.0");
+        File output = new File("target/xsite-incremental");
+        FileUtils.deleteDirectory(output);
+        File sitemap = new File(testSrcDir + "/content/sitemap.xml");
+        File skin = new File(testSrcDir + "/templates/skin.html");
+        xsite.build(sitemap, skin, new File[0], output, customProperties);
+        File index = new File(output, "index.html");
+        File page = new File(output, "page.html");
+        index.setLastModified(0);
+        page.delete();
+        xsite.build(sitemap, skin, new File[0], output, customProperties);
+        assertEquals(0, index.lastModified());
+        assertTrue(page.exists());
+        customProperties.put("publishedVersion", "1.1");
+        xsite.build(sitemap, skin, new File[0], output, customProperties);
+        assertTrue(index.lastModified() > 0);
+        index.setLastModified(0);
+        xsite.getConfiguration().setOutputEncoding("ISO-8859-1");
+        xsite.build(sitemap, skin, new File[0], output, customProperties);
+        assertTrue(index.lastModified() > 0);
+    }
+
+    @Test
+    public void testIncrementalBuildSkinsAllPagesIfAnyTemplateChanges() throws IOException {
+        XSite xsite = createXSite();
+        xsite.getConfiguration().setIncremental(true);
+        Map<String, Object> customProperties = new HashMap<String, Object>();
+        File output = new File("target/xsite-incremental-templates");
+        FileUtils.deleteDirectory(output);
+        File templates = new File("target/incremental-templates");
+        FileUtils.deleteDirectory(templates);
+        FileUtils.copyDirectory(new File(testSrcDir + "/templates"), templates);
+        File included = new File(templates, "included.ftl");
+        FileUtils.writeStringToFile(included, "1.0");
+        File sitemap = new File(testSrcDir + "/content/sitemap.xml");
+        File skin = new File(templates, "skin.html");
+        FileUtils.writeStringToFile(skin, FileUtils.readFileToString(skin).replace("</body>",
+                "<#include \"included.ftl\"></body>"));
+        xsite.build(sitemap, skin, new File[0], output, customProperties);
+        File index = new File(output, "index.html");
+        index.setLastModified(0);
+        FileUtils.writeStringToFile(new File(templates, "unrelated.html"), "1.0");
+        xsite.build(sitemap, skin, new File[0], output, customProperties);
+        assertEquals(0, index.lastModified());
+        FileUtils.writeStringToFile(included, "1.1");
+        xsite.build(sitemap, skin, new File[0], output, customProperties);
+        assertTrue(index.lastModified() > 0);
+    }
+
+    @Test
+    public void testIncrementalShardsSkinTheirOutdatedPagesWhateverTheOrderTheyAreBuiltIn() throws IOException {
+        XSite xsite = createXSite();
+        xsite.getConfiguration().setIncremental(true);
+        Map<String, Object> customProperties = new HashMap<String, Object>();
+        File output = new File("target/xsite-incremental-shards");
+        FileUtils.deleteDirectory(output);
+        File content = new File("target/incremental-shards-content");
+        FileUtils.deleteDirectory(content);
+        FileUtils.copyDirectory(new File(testSrcDir + "/content"), content);
+        File sitemap = new File(content, "sitemap.xml");
+        File skin = new File(testSrcDir + "/templates/skin.html");
+        Shard owner = new Shard(1, 2).contains("page.html") ? new Shard(1, 2) : new Shard(2, 2);
+        Shard other = new Shard(3 - owner.getIndex(), 2);
+        for (Shard shard : new Shard[] { owner, other }) {
+            xsite.getConfiguration().setShard(shard);
+            xsite.build(sitemap, skin, new File[0], output, customProperties);
+        }
+        File source = new File(content, "page.html");
+        FileUtils.writeStringToFile(source, FileUtils.readFileToString(source).replace("A page from XSite",
+                "A modified page from XSite"));
+        for (Shard shard : new Shard[] { other, owner }) {
+            xsite.getConfiguration().setShard(shard);
+            xsite.build(sitemap, skin, new File[0], output, customProperties);
+        }
+        assertTrue(FileUtils.readFileToString(new File(output, "page.html")).contains("A modified page from XSite"));
+    }
+
+    @Test
+    public void testLowMemoryBuildIsIdenticalToDefaultBuild() throws IOException {
+        XSite xsite = createXSite();
+        Map<String, Object> customProperties = new HashMap<String, Object>();
+        File sitemap = new File(testSrcDir + "/content/sitemap.xml");
+        File skin = new File(testSrcDir + "/templates/skin.html");
+        File defaultOutput = new File("target/xsite-default");
+        xsite.build(sitemap, skin, new File[0], defaultOutput, customProperties);
+        xsite.getConfiguration().setLowMemory(true);
+        xsite.getConfiguration().setThreads(2);
+        File lowMemoryOutput = new File("target/xsite-low-memory");
+        xsite.build(sitemap, skin, new File[0], lowMemoryOutput, customProperties);
+        for (String filename : new String[] { "index.html", "page.html" }) {
+            assertTrue(filename, FileUtils.contentEquals(new File(defaultOutput, filename), new File(lowMemoryOutput,
+                    filename)));
+        }
+    }
+
+    @Test
+    public void testPipelinedBuildIsIdenticalToDefaultBuild() throws IOException {
+        XSite xsite = createXSite();
+        Map<String, Object> customProperties = new HashMap<String, Object>();
+        File sitemap = new File(testSrcDir + "/content/sitemap.xml");
+        File skin = new File(testSrcDir + "/templates/skin.html");
+        File defaultOutput = new File("target/xsite-default");
+        xsite.build(sitemap, skin, new File[0], defaultOutput, customProperties);
+        xsite.getConfiguration().setLowMemory(true);
+        xsite.getConfiguration().setPipelineDepth(1);
+        xsite.getConfiguration().setThreads(2);
+        File pipelinedOutput = new File("target/xsite-pipelined");
+        xsite.build(sitemap, skin, new File[0], pipelinedOutput, customProperties);
+        for (String filename : new String[] { "index.html", "page.html" }) {
+            assertTrue(filename, FileUtils.contentEquals(new File(defaultOutput, filename), new File(pipelinedOutput,
+                    filename)));
+        }
+    }
+
+    @Test
+    public void testVerifyReportsLinksWithoutBuilding() throws IOException {
+        XSite xsite = createXSite();
+        LinkReport report = xsite.verify(new File(testSrcDir + "/content/sitemap.xml"));
+        assertTrue(report.isValid());
+        assertEquals(2, report.getPageCount());
+        report = xsite.verify(new File(testSrcDir + "/broken/sitemap.xml"));
+        assertFalse(report.isValid());
+        assertEquals("missing.html", report.getBrokenLinks().get(0).getHref());
+    }
+
+    @Test(expected = InvalidLinksException.class)
+    public void testBuildWithInvalidLinks() throws IOException {
+        XSite xsite = createXSite();
+        xsite.build(new File(testSrcDir + "/broken/sitemap.xml"), new File(testSrcDir + "/templates/skin.html"),
+                new File[0], new File("target/xsite-broken"), new HashMap<String, Object>());
+    }
 }
@@ -1,12 +1,28 @@
 package org.codehaus.xsite.extractors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.codehaus.xsite.extractors.sitemesh.Fingerprinted;
+import org.codehaus.xsite.extractors.sitemesh.filters.MultiPatternTextFilter;
 import org.codehaus.xsite.extractors.sitemesh.rules.AddFirstChildClassToHeader;
+import org.codehaus.xsite.extractors.sitemesh.rules.TagRulePrototype;
 import org.codehaus.xsite.io.CommonsFileSystem;
 import org.codehaus.xsite.model.Page;
 import org.junit.Test;
 
+import com.opensymphony.module.sitemesh.html.BasicRule;
+import com.opensymphony.module.sitemesh.html.CustomTag;
+import com.opensymphony.module.sitemesh.html.Tag;
 import com.opensymphony.module.sitemesh.html.TagRule;
 import com.opensymphony.module.sitemesh.html.TextFilter;
 
@@ -35,4 +51,130 @@ public class SiteMeshPageExtractorTest {
         assertEquals(1, page1.getLinks().size());
         assertEquals(0, page2.getLinks().size());
     }
+
+    @Test
+    public void canExtractAnchorsOfPage() {
+        final String html = "<html><head><title>JUnit</title><script>var s = '<a id=\"script\">';</script></head>"
+                + "<body id=body><h1 ID='header' class=\"x\">Header</h1><!-- <p id=\"comment\"> -->"
+                + "<a name=\"named\"></a><input name=\"input\"/><p id=\"\">Empty</p></body></html>";
+        final Page page = pageExtractor.extractPage("JUnit.html", html);
+        assertEquals(new HashSet<String>(Arrays.asList("body", "header", "named")), page.getAnchors());
+    }
+
+    @Test
+    public void canExtractPagesWithoutSharingRuleStateBetweenPages() {
+        final String html = "<html><head><title>JUnit</title></head><body><h1>Header</h1></body></html>";
+        pageExtractor.extractPage("JUnit1.html", html);
+        final Page page = pageExtractor.extractPage("JUnit2.html", html);
+        assertEquals("<h1 class=\"FirstChild\">Header</h1>", page.getBody());
+    }
+
+    @Test
+    public void canExtractPagesWithConfiguredRules() {
+        ClassAddingRule prototype = new ClassAddingRule("h2");
+        prototype.setClassName("Configured");
+        SharedRule shared = new SharedRule();
+        shared.setReplacement("<hr/>");
+        SiteMeshPageExtractor extractor = new SiteMeshPageExtractor(new TagRule[] { prototype, shared },
+                new TextFilter[0], new CommonsFileSystem());
+        final String html = "<html><head><title>JUnit</title></head><body><h2>Header</h2><br/></body></html>";
+        extractor.extractPage("JUnit1.html", html);
+        final Page page = extractor.extractPage("JUnit2.html", html);
+        assertEquals("<h2 class=\"Configured\">Header</h2><hr/>", page.getBody());
+    }
+
+    public static class ClassAddingRule extends BasicRule implements TagRulePrototype, Fingerprinted {
+
+        private final String tag;
+        private String className = "Default";
+
+        public ClassAddingRule(String tag) {
+            super(tag);
+            this.tag = tag;
+        }
+
+        public void setClassName(String className) {
+            this.className = className;
+        }
+
+        public String getFingerprint() {
+            return tag + ";" + className;
+        }
+
+        public TagRule newRule() {
+            ClassAddingRule rule = new ClassAddingRule(tag);
+            rule.setClassName(className);
+            return rule;
+        }
+
+        public void process(Tag tag) {
+            CustomTag customTag = new CustomTag(tag.getName(), tag.getType());
+            if (tag.getType() == Tag.OPEN) {
+                customTag.addAttribute("class", className);
+            }
+            customTag.writeTo(currentBuffer());
+        }
+    }
+
+    public static class SharedRule extends BasicRule {
+
+        private String replacement = "";
+
+        public SharedRule() {
+            super("br");
+        }
+
+        public void setReplacement(String replacement) {
+            this.replacement = replacement;
+        }
+
+        public void process(Tag tag) {
+            currentBuffer().append(replacement);
+        }
+    }
+
+    @Test
+    public void canFingerprintConfiguredRulesAndFilters() {
+        ClassAddingRule rule = new ClassAddingRule("h2");
+        TextFilter[] filters = new TextFilter[] { new MultiPatternTextFilter(new String[] { "JIRA:(\\w+)" },
+                new String[] { "$1" }) };
+        String fingerprint = new SiteMeshPageExtractor(new TagRule[] { rule, new AddFirstChildClassToHeader() },
+                filters, new CommonsFileSystem()).getFingerprint();
+        assertEquals(fingerprint, new SiteMeshPageExtractor(new TagRule[] { new ClassAddingRule("h2"),
+                new AddFirstChildClassToHeader() }, filters, new CommonsFileSystem()).getFingerprint());
+        rule.setClassName("Configured");
+        assertFalse(fingerprint.equals(new SiteMeshPageExtractor(new TagRule[] { rule,
+                new AddFirstChildClassToHeader() }, filters, new CommonsFileSystem()).getFingerprint()));
+        TextFilter[] otherFilters = new TextFilter[] { new MultiPatternTextFilter(new String[] { "JIRA:(\\w+)" },
+                new String[] { "[$1]" }) };
+        assertFalse(fingerprint.equals(new SiteMeshPageExtractor(new TagRule[] { new ClassAddingRule("h2"),
+                new AddFirstChildClassToHeader() }, otherFilters, new CommonsFileSystem()).getFingerprint()));
+    }
+
+    @Test
+    public void canExtractPagesConcurrently() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Page>> pages = new ArrayList<Future<Page>>();
+            for (int i = 0; i < 100; i++) {
+                final String title = "Page" + i;
+                final String html = "<html><head><title>" + title + "</title></head><body><h1>" + title
+                        + "</h1><a href=\"" + title + ".html\">" + title + "</a></body></html>";
+                pages.add(executor.submit(new Callable<Page>() {
+                    public Page call() {
+                        return pageExtractor.extractPage(title + ".html", html);
+                    }
+                }));
+            }
+            for (int i = 0; i < pages.size(); i++) {
+                Page page = pages.get(i).get();
+                assertEquals("Page" + i, page.getTitle());
+                assertEquals("<h1 class=\"FirstChild\">Page" + i + "</h1><a href=\"Page" + i + ".html\">Page" + i
+                        + "</a>", page.getBody());
+                assertEquals("Page" + i + ".html", page.getLinks().iterator().next().getHref());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
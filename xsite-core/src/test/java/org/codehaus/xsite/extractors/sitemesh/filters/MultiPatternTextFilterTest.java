@@ -0,0 +1,53 @@
+package org.codehaus.xsite.extractors.sitemesh.filters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.opensymphony.module.sitemesh.html.TextFilter;
+import com.opensymphony.module.sitemesh.html.rules.RegexReplacementTextFilter;
+
+/**
+ * @author Mauro Talevi
+ */
+public class MultiPatternTextFilterTest {
+
+    private String[] patterns = { "JIRA:([A-Z]+)-([0-9]+)", "XSTR-([0-9]+)", "\\$VERSION\\$" };
+    private String[] replacements = { "<a href=\"http://jira.codehaus.org/browse/$1-$2\">$1-$2</a>",
+            "<a href=\"xstr.html#$1\">$0</a>", "1.2" };
+
+    @Test
+    public void canReplaceMatchesAsChainedRegexFilters() {
+        String text = "See JIRA:XSITE-12 and XSTR-34 in version $VERSION$, not JIRA:lower-1.";
+        String expected = text;
+        for (int i = 0; i < patterns.length; i++) {
+            expected = new RegexReplacementTextFilter(patterns[i], replacements[i]).filter(expected);
+        }
+        assertEquals(expected, new MultiPatternTextFilter(patterns, replacements).filter(text));
+    }
+
+    @Test
+    public void canLeaveTextUnchangedWithoutPatterns() {
+        String text = "See JIRA:XSITE-12";
+        assertEquals(text, new MultiPatternTextFilter(new String[0], new String[0]).filter(text));
+    }
+
+    @Test
+    public void canLeaveTextWithoutLiteralsUnchanged() {
+        String text = "No links here";
+        assertSame(text, new MultiPatternTextFilter(patterns, replacements).filter(text));
+    }
+
+    @Test
+    public void canReplacePatternsWithoutLiteralPrefix() {
+        TextFilter filter = new MultiPatternTextFilter(new String[] { "[0-9]+%", "(a)(b)\\2" }, new String[] {
+                "percent", "<$1\\$$2>" });
+        assertEquals("percent or <a$b>", filter.filter("50% or abb"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotCreateFilterWithMissingReplacements() {
+        new MultiPatternTextFilter(patterns, new String[] { "1.2" });
+    }
+}
@@ -0,0 +1,124 @@
+package org.codehaus.xsite.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.CopyStatistics;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class CommonsFileSystemTest {
+
+    private CommonsFileSystem fileSystem = new CommonsFileSystem();
+    private File source = new File("target/sync/source");
+    private File target = new File("target/sync/target");
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(source.getParentFile());
+        FileUtils.writeStringToFile(new File(source, "style.css"), "body {}");
+        FileUtils.writeStringToFile(new File(source, "images/logo.gif"), "GIF89a");
+    }
+
+    @Test
+    public void canSyncOnlyNewOrChangedFiles() throws IOException {
+        CopyStatistics statistics = fileSystem.syncDirectory(source, target, true, false, false);
+        assertEquals(2, statistics.getCopiedFiles());
+        assertEquals(13, statistics.getCopiedBytes());
+        assertEquals("GIF89a", FileUtils.readFileToString(new File(target, "images/logo.gif")));
+
+        statistics = fileSystem.syncDirectory(source, target, true, false, false);
+        assertEquals(0, statistics.getCopiedFiles());
+        assertEquals(2, statistics.getSkippedFiles());
+
+        File css = new File(source, "style.css");
+        FileUtils.writeStringToFile(css, "body {color: red}");
+        statistics = fileSystem.syncDirectory(source, target, true, false, false);
+        assertEquals(1, statistics.getCopiedFiles());
+        assertEquals(1, statistics.getSkippedFiles());
+        assertEquals("body {color: red}", FileUtils.readFileToString(new File(target, "style.css")));
+    }
+
+    @Test
+    public void canSyncFilesComparingContent() throws IOException {
+        fileSystem.syncDirectory(source, target, true, true, false);
+        File css = new File(source, "style.css");
+        css.setLastModified(css.lastModified() - 10000);
+        CopyStatistics statistics = fileSystem.syncDirectory(source, target, true, true, false);
+        assertEquals(0, statistics.getCopiedFiles());
+        FileUtils.writeStringToFile(css, "body {} ");
+        statistics = fileSystem.syncDirectory(source, target, true, true, false);
+        assertEquals(1, statistics.getCopiedFiles());
+    }
+
+    @Test
+    public void canDeleteOnlyStaleFilesSyncedFromSource() throws IOException {
+        File page = new File(target, "index.html");
+        FileUtils.writeStringToFile(page, "<html/>");
+        fileSystem.syncDirectory(source, target, true, false, true);
+        new File(source, "images/logo.gif").delete();
+        CopyStatistics statistics = fileSystem.syncDirectory(source, target, true, false, true);
+        assertEquals(1, statistics.getDeletedFiles());
+        assertFalse(new File(target, "images/logo.gif").exists());
+        assertTrue(new File(target, "style.css").exists());
+        assertTrue(page.exists());
+    }
+
+    @Test
+    public void canRecordSourceWithoutAbsolutePaths() throws IOException {
+        fileSystem.syncDirectory(source, target, true, false, true);
+        String record = FileUtils.readFileToString(new File(target, CommonsFileSystem.SYNC_RECORD));
+        assertTrue(record, record.contains("style.css=../source/"));
+        assertFalse(record, record.contains(source.getCanonicalPath()));
+    }
+
+    @Test
+    public void canDeleteStaleFilesRecordedWithAbsolutePaths() throws IOException {
+        FileUtils.writeStringToFile(new File(target, "old.css"), "body {}");
+        Properties record = new Properties();
+        record.setProperty("old.css", source.getCanonicalPath());
+        OutputStream output = new FileOutputStream(new File(target, CommonsFileSystem.SYNC_RECORD));
+        try {
+            record.store(output, null);
+        } finally {
+            output.close();
+        }
+        CopyStatistics statistics = fileSystem.syncDirectory(source, target, true, false, true);
+        assertEquals(1, statistics.getDeletedFiles());
+        assertFalse(new File(target, "old.css").exists());
+    }
+
+    @Test
+    public void canReadCharsWithCharset() throws IOException {
+        File file = new File(source, "page.html");
+        FileUtils.writeStringToFile(file, "caf\u00e9", "UTF-8");
+        assertEquals("caf\u00e9", new String(fileSystem.readChars(file, Charset.forName("UTF-8"))));
+        FileUtils.writeStringToFile(file, "caf\u00e9", "ISO-8859-1");
+        assertEquals("caf\u00e9", new String(fileSystem.readChars(file, Charset.forName("ISO-8859-1"))));
+    }
+
+    @Test
+    public void canReadCharsOfLargeFiles() throws IOException {
+        File file = new File(source, "large.html");
+        char[] chars = new char[TextDecoder.MAPPED_FILE_SIZE];
+        Arrays.fill(chars, '\u00e9');
+        String content = new String(chars);
+        FileUtils.writeStringToFile(file, content, "UTF-8");
+        assertEquals(content, new String(fileSystem.readChars(file, Charset.forName("UTF-8"))));
+        FileUtils.writeStringToFile(file, "small", "UTF-8");
+        assertEquals("small", new String(fileSystem.readChars(file, Charset.forName("UTF-8"))));
+    }
+}
@@ -0,0 +1,55 @@
+package org.codehaus.xsite.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.CopyStatistics;
+import org.codehaus.xsite.XSiteConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class ConcurrentFileSystemTest {
+
+    private ConcurrentFileSystem fileSystem = new ConcurrentFileSystem(new XSiteConfiguration(true, 4));
+    private File source = new File("target/concurrent/source");
+    private File target = new File("target/concurrent/target");
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(source.getParentFile());
+        for (int i = 0; i < 50; i++) {
+            FileUtils.writeStringToFile(new File(source, "images/" + i + "/image" + i + ".gif"), "GIF" + i);
+        }
+        FileUtils.writeStringToFile(new File(source, ".svn/entries"), "svn");
+    }
+
+    @Test
+    public void canCopyDirectoryTree() throws IOException {
+        fileSystem.copyDirectory(source, target, true);
+        for (int i = 0; i < 50; i++) {
+            assertEquals("GIF" + i, FileUtils.readFileToString(new File(target, "images/" + i + "/image" + i + ".gif")));
+        }
+        assertFalse(new File(target, ".svn").exists());
+    }
+
+    @Test
+    public void canSyncDirectoryTree() throws IOException {
+        CopyStatistics statistics = fileSystem.syncDirectory(source, target, true, false, false);
+        assertEquals(50, statistics.getCopiedFiles());
+        statistics = fileSystem.syncDirectory(source, target, true, false, false);
+        assertEquals(0, statistics.getCopiedFiles());
+        assertEquals(50, statistics.getSkippedFiles());
+    }
+
+    @Test(expected = CommonsFileSystem.FileSystemException.class)
+    public void cannotCopyInexistentDirectory() {
+        fileSystem.copyDirectory(new File(source, "inexistent"), target, true);
+    }
+}
@@ -0,0 +1,82 @@
+package org.codehaus.xsite.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.XSiteConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class PageWriterTest {
+
+    private XSiteConfiguration configuration = new XSiteConfiguration();
+    private PageWriter pageWriter = new PageWriter(configuration);
+    private File directory = new File("target/pages");
+    private File file = new File(directory, "page.html");
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(directory);
+        directory.mkdirs();
+    }
+
+    @Test
+    public void canWritePagesWithConfiguredEncoding() throws IOException {
+        configuration.setOutputEncoding("UTF-8");
+        write("caf\u00e9");
+        assertArrayEquals("caf\u00e9".getBytes("UTF-8"), FileUtils.readFileToByteArray(file));
+        configuration.setOutputEncoding("ISO-8859-1");
+        write("caf\u00e9");
+        assertArrayEquals("caf\u00e9".getBytes("ISO-8859-1"), FileUtils.readFileToByteArray(file));
+    }
+
+    @Test
+    public void canWritePagesLargerThanBuffers() throws IOException {
+        configuration.setOutputEncoding("UTF-8");
+        char[] chars = new char[200000];
+        Arrays.fill(chars, '\u00e9');
+        String content = new String(chars);
+        write(content);
+        assertEquals(content, FileUtils.readFileToString(file, "UTF-8"));
+        write("short");
+        assertEquals("short", FileUtils.readFileToString(file, "UTF-8"));
+    }
+
+    @Test
+    public void canWritePagesAtomically() throws IOException {
+        configuration.setAtomicOutput(true);
+        FileUtils.writeStringToFile(file, "previous content");
+        write("new content");
+        assertEquals("new content", FileUtils.readFileToString(file));
+        assertEquals(1, directory.list().length);
+    }
+
+    @Test
+    public void canLeaveUnchangedPagesUntouched() throws IOException {
+        configuration.setWriteChangedOnly(true);
+        assertTrue(write("content"));
+        long lastModified = file.lastModified() - 10000;
+        file.setLastModified(lastModified);
+        assertFalse(write("content"));
+        assertEquals(lastModified, file.lastModified());
+        assertTrue(write("contents"));
+        assertTrue(write("CONTENTS"));
+        assertEquals("CONTENTS", FileUtils.readFileToString(file));
+    }
+
+    private boolean write(String content) throws IOException {
+        PageWriter.Buffer buffer = pageWriter.getBuffer();
+        buffer.write(content);
+        return pageWriter.write(buffer, file);
+    }
+}
@@ -0,0 +1,97 @@
+package org.codehaus.xsite.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.Shard;
+import org.codehaus.xsite.io.ShardManifest.IncompleteShardsException;
+import org.codehaus.xsite.model.Link;
+import org.codehaus.xsite.model.Page;
+import org.codehaus.xsite.model.Section;
+import org.codehaus.xsite.model.Sitemap;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class ShardManifestTest {
+
+    private File directory = new File("target/shard-manifests");
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(directory);
+        directory.mkdirs();
+    }
+
+    @Test
+    public void canMergeManifestsOfAllShards() {
+        Sitemap sitemap = createSitemap();
+        ShardManifest.create(sitemap, new Shard(1, 2)).store(directory);
+        ShardManifest.create(sitemap, new Shard(2, 2)).store(directory);
+        Sitemap merged = ShardManifest.merge(ShardManifest.loadAll(directory));
+        List<Page> pages = merged.getAllPages();
+        assertEquals(3, pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = sitemap.getAllPages().get(i);
+            assertEquals(page.getFilename(), pages.get(i).getFilename());
+            assertEquals(page.getLinks().size(), pages.get(i).getLinks().size());
+            assertEquals(page.getAnchors(), pages.get(i).getAnchors());
+        }
+        assertTrue(merged.getPage("two.html").hasAnchor("top-of-two"));
+    }
+
+    @Test(expected = IncompleteShardsException.class)
+    public void cannotMergeManifestsWithMissingShards() {
+        ShardManifest.create(createSitemap(), new Shard(1, 2)).store(directory);
+        ShardManifest.merge(ShardManifest.loadAll(directory));
+    }
+
+    @Test(expected = IncompleteShardsException.class)
+    public void cannotMergeManifestsOfDifferentBuilds() {
+        ShardManifest.create(createSitemap(), new Shard(1, 2)).store(directory);
+        Section section = new Section("Section");
+        section.addPage(createPage("one.html", "three.html"));
+        section.addPage(createPage("two.html", "one.html"));
+        section.addPage(createPage("three.html", "http://xsite.codehaus.org"));
+        Sitemap changed = new Sitemap();
+        changed.addSection(section);
+        ShardManifest.create(changed, new Shard(2, 2)).store(directory);
+        ShardManifest.merge(ShardManifest.loadAll(directory));
+    }
+
+    @Test
+    public void canReplaceManifestsOfDifferentShardCount() {
+        Sitemap sitemap = createSitemap();
+        ShardManifest.create(sitemap, new Shard(1, 3)).store(directory);
+        ShardManifest.create(sitemap, new Shard(1, 1)).store(directory);
+        assertEquals(1, ShardManifest.loadAll(directory).size());
+        assertEquals(3, ShardManifest.merge(ShardManifest.loadAll(directory)).getAllPages().size());
+    }
+
+    private Sitemap createSitemap() {
+        Section section = new Section("Section");
+        section.addPage(createPage("one.html", "two.html#top-of-two"));
+        section.addPage(createPage("two.html", "one.html"));
+        section.addPage(createPage("three.html", "http://xsite.codehaus.org"));
+        Sitemap sitemap = new Sitemap();
+        sitemap.addSection(section);
+        return sitemap;
+    }
+
+    private Page createPage(String filename, String href) {
+        String anchor = "top-of-" + filename.substring(0, filename.indexOf('.'));
+        return new Page(filename, "", "", new HashSet<Link>(Arrays.asList(new Link(href, href))), new HashSet<String>(
+                Arrays.asList(anchor)), new Properties());
+    }
+
+}
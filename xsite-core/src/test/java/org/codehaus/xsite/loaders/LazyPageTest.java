@@ -0,0 +1,39 @@
+package org.codehaus.xsite.loaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.extractors.SiteMeshPageExtractor;
+import org.codehaus.xsite.model.Page;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class LazyPageTest {
+
+    @Test
+    public void canExtractContentAgainOnceReleased() throws IOException {
+        File html = new File("target/lazy/page.html");
+        FileUtils.writeStringToFile(html,
+                "<html><head><title>Page</title><meta name=\"id\" content=\"lazy\"/></head><body><p>Body</p></body></html>");
+        LazyPageExtractor extractor = new LazyPageExtractor(new SiteMeshPageExtractor(), new SiteMeshPageExtractor());
+        LazyPage page = (LazyPage) extractor.extractPage(html);
+        assertFalse(page.isContentLoaded());
+        assertEquals("page.html", page.getFilename());
+        assertEquals("Page", page.getTitle());
+        assertEquals("lazy", page.getId());
+        assertEquals("<p>Body</p>", page.getBody());
+        assertTrue(page.isContentLoaded());
+        page.releaseContent();
+        assertFalse(page.isContentLoaded());
+        Page extracted = new SiteMeshPageExtractor().extractPage(html);
+        assertEquals(extracted.getHead(), page.getHead());
+    }
+
+}
@@ -0,0 +1,78 @@
+package org.codehaus.xsite.loaders;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.extractors.SiteMeshPageExtractor;
+import org.codehaus.xsite.model.Page;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class SnapshotPageExtractorTest {
+
+    private SiteMeshPageExtractor pageExtractor = new SiteMeshPageExtractor();
+    private File directory = new File("target/snapshot");
+    private File snapshotFile = new File(directory, "pages.snapshot");
+    private File html = new File(directory, "page.html");
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(directory);
+        FileUtils.writeStringToFile(html,
+                "<html><head><title>Page</title></head><body><a href=\"other.html\" id=\"other\">Other</a></body></html>");
+    }
+
+    @Test
+    public void canReuseUnchangedPagesFromStoredSnapshot() throws IOException {
+        SnapshotPageExtractor extractor = new SnapshotPageExtractor(pageExtractor, PageSnapshot.load(snapshotFile,
+                "test"));
+        extractor.extractPage(html);
+        assertEquals(1, extractor.getExtractedPages());
+        extractor.getSnapshot().store(snapshotFile);
+
+        extractor = new SnapshotPageExtractor(pageExtractor, PageSnapshot.load(snapshotFile, "test"));
+        Page page = extractor.extractPage(html);
+        assertEquals(0, extractor.getExtractedPages());
+        assertEquals(1, extractor.getReusedPages());
+        assertEquals("page.html", page.getFilename());
+        assertEquals("Page", page.getTitle());
+        assertEquals("<a href=\"other.html\" id=\"other\">Other</a>", page.getBody());
+        assertEquals("other.html", page.getLinks().iterator().next().getHref());
+        assertTrue(page.hasAnchor("other"));
+
+        FileUtils.writeStringToFile(html, "<html><head><title>Changed</title></head><body></body></html>");
+        page = extractor.extractPage(html);
+        assertEquals(1, extractor.getExtractedPages());
+        assertEquals("Changed", page.getTitle());
+    }
+
+    @Test
+    public void canDiscardSnapshotWithDifferentFingerprint() {
+        SnapshotPageExtractor extractor = new SnapshotPageExtractor(pageExtractor, PageSnapshot.load(snapshotFile,
+                "test"));
+        extractor.extractPage(html);
+        extractor.getSnapshot().store(snapshotFile);
+        assertEquals(1, PageSnapshot.load(snapshotFile, "test").size());
+        assertEquals(0, PageSnapshot.load(snapshotFile, "other").size());
+    }
+
+    @Test
+    public void canDropPagesWithoutSourceWhenStoring() {
+        PageSnapshot snapshot = PageSnapshot.load(snapshotFile, "test");
+        snapshot.put(new File(directory, "deleted.html"), pageExtractor.extractPage("deleted.html",
+                "<html><head><title>Deleted</title></head><body></body></html>"), "digest");
+        snapshot.store(snapshotFile);
+        snapshot = PageSnapshot.load(snapshotFile, "test");
+        assertEquals(0, snapshot.size());
+        assertNull(snapshot.get(new File(directory, "deleted.html"), "digest"));
+    }
+
+}
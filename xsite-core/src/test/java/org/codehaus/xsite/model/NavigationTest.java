@@ -0,0 +1,68 @@
+package org.codehaus.xsite.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Properties;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author Mauro Talevi
+ */
+public class NavigationTest {
+
+    private Page index = createPage("index.html", "Index");
+    private Page news = createPage("news.html", "News");
+    private Navigation navigation = new Navigation(createSitemap());
+
+    @Test
+    public void canRenderMenuMarkingCurrentPage() {
+        assertEquals("<div class=\"MenuGroup\">\n<h1>About</h1>\n<ul>\n"
+                + "<li class=\"currentLink\">Index</li>\n"
+                + "<li><a href=\"news.html\">News</a></li>\n"
+                + "<li><a href=\"api/index.html\">API</a></li>\n"
+                + "</ul>\n</div>\n"
+                + "<div class=\"MenuGroup\">\n<h1>Latest</h1>\n<ul>\n"
+                + "<li><a href=\"news.html\">News</a></li>\n"
+                + "</ul>\n</div>\n", navigation.getMenu(index));
+    }
+
+    @Test
+    public void canMarkPageInEverySectionListingIt() {
+        String menu = navigation.getMenu(news);
+        assertEquals(navigation.getMenu().replace("<li><a href=\"news.html\">News</a></li>",
+                "<li class=\"currentLink\">News</li>"), menu);
+    }
+
+    @Test
+    public void canRenderMenuOfEachSection() {
+        assertEquals(2, navigation.getSections().size());
+        Navigation.Menu latest = navigation.getSections().get(1);
+        assertEquals("Latest", latest.getName());
+        assertEquals("<div class=\"MenuGroup\">\n<h1>Latest</h1>\n<ul>\n"
+                + "<li class=\"currentLink\">News</li>\n"
+                + "</ul>\n</div>\n", latest.getHtml(news));
+        assertEquals(latest.getHtml(), latest.getHtml(index));
+    }
+
+    private Sitemap createSitemap() {
+        Sitemap sitemap = new Sitemap();
+        Section about = new Section("About");
+        about.addPage(index);
+        about.addPage(news);
+        about.addLink(new Link("API", "api/index.html"));
+        sitemap.addSection(about);
+        Section latest = new Section("Latest");
+        latest.addPage(news);
+        sitemap.addSection(latest);
+        return sitemap;
+    }
+
+    private Page createPage(String filename, String title) {
+        Properties properties = new Properties();
+        properties.setProperty("title", title);
+        return new Page(filename, "head", "body", new ArrayList<Link>(), properties);
+    }
+}
@@ -0,0 +1,29 @@
+package org.codehaus.xsite.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Properties;
+
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class ResourcesRootTest {
+
+    @Test
+    public void canComputePathFromPagesAtAnyDepth() {
+        ResourcesRoot root = new ResourcesRoot("../");
+        assertEquals("../", root.getPath(page("index.html")));
+        assertEquals("../../", root.getPath(page("guide/index.html")));
+        assertEquals("../../../", root.getPath(page("guide/api/index.html")));
+        assertEquals("", new ResourcesRoot("").getPath(page("index.html")));
+        assertEquals("../", new ResourcesRoot("").getPath(page("guide/index.html")));
+    }
+
+    private Page page(String filename) {
+        return new Page(filename, "head", "body", new ArrayList<Link>(), new Properties());
+    }
+
+}
@@ -0,0 +1,99 @@
+package org.codehaus.xsite.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.junit.Test;
+
+/**
+ * 
+ * @author Mauro Talevi
+ */
+public class SitemapTest {
+
+    private Page index = createPage("index.html", "home");
+    private Page news = createPage("news.html", null);
+    private Link api = new Link("API", "api/index.html");
+    private Section about = new Section("About");
+    private Section latest = new Section("Latest");
+
+    @Test
+    public void canLookupPagesOfFrozenSitemap() {
+        Sitemap sitemap = createSitemap();
+        sitemap.freeze();
+        assertTrue(sitemap.isFrozen());
+        assertSame(index, sitemap.getPage("index.html"));
+        assertSame(index, sitemap.getPageById("home"));
+        assertSame(news, sitemap.getPageById("news"));
+        assertNull(sitemap.getPage("unknown.html"));
+        assertEquals(Arrays.asList(about, latest), sitemap.getSections("news.html"));
+        assertEquals(Arrays.asList(index, news, news), sitemap.getAllPages());
+        assertEquals(Arrays.asList(index, news, api, news), sitemap.getAllEntries());
+        assertSame(sitemap.getAllPages(), sitemap.getAllPages());
+        assertSame(about.getPages(), about.getPages());
+    }
+
+    @Test
+    public void canLookupPagesOfUnfrozenSitemap() {
+        Sitemap sitemap = createSitemap();
+        assertSame(index, sitemap.getPage("index.html"));
+        assertSame(index, sitemap.getPageById("home"));
+        assertEquals(Arrays.asList(about, latest), sitemap.getSections("news.html"));
+        assertEquals(Arrays.asList(index, news, news), sitemap.getAllPages());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotAddSectionToFrozenSitemap() {
+        Sitemap sitemap = createSitemap();
+        sitemap.freeze();
+        sitemap.addSection(new Section("Other"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotAddPageToSectionOfFrozenSitemap() {
+        Sitemap sitemap = createSitemap();
+        sitemap.freeze();
+        about.addPage(createPage("other.html", null));
+    }
+
+    @Test
+    public void canReplacePageInFrozenCopy() {
+        Sitemap sitemap = createSitemap();
+        sitemap.freeze();
+        Page updated = createPage("news.html", "latest");
+        Sitemap copy = sitemap.replacePage(updated);
+        assertTrue(copy.isFrozen());
+        assertSame(updated, copy.getPage("news.html"));
+        assertSame(updated, copy.getPageById("latest"));
+        assertNull(copy.getPageById("news"));
+        assertEquals(Arrays.asList(index, updated, updated), copy.getAllPages());
+        assertEquals(Arrays.asList(index, updated, api, updated), copy.getAllEntries());
+        assertSame(news, sitemap.getPage("news.html"));
+        assertEquals(Arrays.asList(index, news, news), sitemap.getAllPages());
+    }
+
+    private Sitemap createSitemap() {
+        Sitemap sitemap = new Sitemap();
+        about.addPage(index);
+        about.addPage(news);
+        about.addLink(api);
+        sitemap.addSection(about);
+        latest.addPage(news);
+        sitemap.addSection(latest);
+        return sitemap;
+    }
+
+    private Page createPage(String filename, String id) {
+        Properties properties = new Properties();
+        if (id != null) {
+            properties.setProperty("meta.id", id);
+        }
+        return new Page(filename, "head", "body", new ArrayList<Link>(), properties);
+    }
+}
@@ -0,0 +1,66 @@
+package org.codehaus.xsite.skins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.xsite.RenderingSkin;
+import org.codehaus.xsite.model.Link;
+import org.codehaus.xsite.model.Page;
+import org.codehaus.xsite.model.Sitemap;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class FreemarkerSkinTest {
+
+    private FreemarkerSkin skin = new FreemarkerSkin();
+    private File templates = new File("target/skins/templates");
+    private File output = new File("target/skins/output");
+    private File skinFile = new File(templates, "skin.html");
+    private Page page = new Page("index.html", "", "Body", new ArrayList<Link>(), new Properties());
+
+    @Before
+    public void setUp() throws IOException {
+        FileUtils.deleteDirectory(templates.getParentFile());
+        output.mkdirs();
+        FileUtils.writeStringToFile(skinFile, "<#include \"footer.ftl\">${body}");
+        FileUtils.writeStringToFile(new File(templates, "footer.ftl"), "Footer:");
+    }
+
+    @Test
+    public void canIncludeTemplatesFromTheSkinDirectory() throws IOException {
+        skin.load(skinFile);
+        skin.skin(page, new Sitemap(), output, new HashMap<String, Object>());
+        assertEquals("Footer:Body", FileUtils.readFileToString(new File(output, "index.html")));
+    }
+
+    @Test
+    public void canReloadSkinOnlyWhenModified() throws IOException {
+        skin.load(skinFile);
+        skin.skin(page, new Sitemap(), output, new HashMap<String, Object>());
+        FileUtils.writeStringToFile(skinFile, "Changed:${body}");
+        skinFile.setLastModified(skinFile.lastModified() + 10000);
+        skin.load(skinFile);
+        skin.skin(page, new Sitemap(), output, new HashMap<String, Object>());
+        assertEquals("Changed:Body", FileUtils.readFileToString(new File(output, "index.html")));
+    }
+
+    @Test
+    public void canCreateSkinsLoadedFromOtherSkinFiles() throws IOException {
+        File otherSkinFile = new File(templates, "other.html");
+        FileUtils.writeStringToFile(otherSkinFile, "Other:${body}");
+        skin.load(skinFile);
+        RenderingSkin other = skin.newInstance(otherSkinFile);
+        assertEquals("Other:Body", new String(other.render(page, new Sitemap(), new HashMap<String, Object>())));
+        assertEquals("Footer:Body", new String(skin.render(page, new Sitemap(), new HashMap<String, Object>())));
+    }
+
+}
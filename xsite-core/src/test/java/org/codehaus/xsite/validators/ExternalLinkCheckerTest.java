@@ -0,0 +1,104 @@
+package org.codehaus.xsite.validators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.xsite.validators.ExternalLinkChecker.Result;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class ExternalLinkCheckerTest {
+
+    private StubHttpServer server;
+    private File cacheFile = new File("target/links/external-links.cache");
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubHttpServer(1000);
+        cacheFile.delete();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop();
+    }
+
+    @Test
+    public void canVerifyEachDistinctUrlOnce() {
+        ExternalLinkChecker checker = new ExternalLinkChecker(null);
+        String ok = server.url("/ok.html");
+        String missing = server.url("/missing.html");
+        String noHead = server.url("/nohead.html");
+        Map<String, Result> results = checker.check(Arrays.asList(ok, ok + "#top", missing, noHead, ok));
+        assertEquals(Arrays.asList(ok, ok + "#top", missing, noHead), new ArrayList<String>(results.keySet()));
+        assertTrue(results.get(ok).isAlive());
+        assertTrue(results.get(ok + "#top").isAlive());
+        assertFalse(results.get(missing).isAlive());
+        assertEquals(404, results.get(missing).getStatus());
+        assertTrue(results.get(noHead).isAlive());
+        List<String> requests = server.getRequests();
+        Collections.sort(requests);
+        assertEquals(Arrays.asList("GET /missing.html", "GET /nohead.html", "HEAD /missing.html",
+                "HEAD /nohead.html", "HEAD /ok.html"), requests);
+    }
+
+    @Test
+    public void canTimeOutUnansweredRequests() {
+        ExternalLinkChecker checker = new ExternalLinkChecker(null, 4, 2, 100, 0);
+        Result result = checker.check(Arrays.asList(server.url("/slow.html"))).get(server.url("/slow.html"));
+        assertFalse(result.isAlive());
+        assertEquals(0, result.getStatus());
+    }
+
+    @Test
+    public void canLimitConcurrentRequestsPerHost() {
+        server = restart(200);
+        List<String> urls = new ArrayList<String>();
+        for (int i = 0; i < 8; i++) {
+            urls.add(server.url("/slow" + i + ".html"));
+        }
+        Map<String, Result> results = new ExternalLinkChecker(null, 8, 2, 5000, 0).check(urls);
+        for (Result result : results.values()) {
+            assertTrue(result.isAlive());
+        }
+        assertEquals(8, server.getRequests().size());
+        assertTrue(server.getMaxActiveRequests() <= 2);
+    }
+
+    @Test
+    public void canReuseCachedAliveUrlsUntilTimeToLiveExpires() {
+        List<String> urls = Arrays.asList(server.url("/ok.html"), server.url("/missing.html"));
+        new ExternalLinkChecker(cacheFile).check(urls);
+        assertEquals(3, server.getRequests().size());
+
+        Map<String, Result> results = new ExternalLinkChecker(cacheFile).check(urls);
+        assertTrue(results.get(server.url("/ok.html")).isAlive());
+        assertFalse(results.get(server.url("/missing.html")).isAlive());
+        assertEquals(5, server.getRequests().size());
+
+        new ExternalLinkChecker(cacheFile, 4, 2, 1000, -1).check(urls);
+        assertEquals(8, server.getRequests().size());
+    }
+
+    private StubHttpServer restart(long delay) {
+        try {
+            server.stop();
+            return new StubHttpServer(delay);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.codehaus.xsite.validators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+
+import org.codehaus.xsite.LinkValidator;
+import org.codehaus.xsite.XSiteConfiguration;
+import org.codehaus.xsite.model.Link;
+import org.codehaus.xsite.model.Page;
+import org.codehaus.xsite.model.Section;
+import org.codehaus.xsite.model.Sitemap;
+import org.codehaus.xsite.validators.LinkReport.BrokenLink;
+import org.codehaus.xsite.validators.LinkReport.Problem;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class LinkCheckerTest {
+
+    @Test
+    public void canValidateRepeatedLinksOnce() {
+        Section section = new Section("Section");
+        section.addPage(createPage("index.html", "http://codehaus.org", "news.html", "missing.html"));
+        section.addPage(createPage("news.html", "http://codehaus.org", "index.html#top", "missing.html"));
+        Sitemap sitemap = new Sitemap();
+        sitemap.addSection(section);
+        final List<String> validated = new ArrayList<String>();
+        LinkValidator validator = new LinkValidator() {
+            public boolean isValid(String link) {
+                validated.add(link);
+                return link.startsWith("http://");
+            }
+        };
+        final List<String> badLinks = new ArrayList<String>();
+        LinkChecker checker = new LinkChecker(sitemap, new LinkValidator[] { validator }, new LinkChecker.Reporter() {
+            public void badLink(Page page, String link) {
+                badLinks.add(page.getFilename() + ":" + link);
+            }
+        });
+        assertFalse(checker.verify());
+        assertEquals(Arrays.asList("http://codehaus.org", "news.html", "missing.html", "index.html#top"), validated);
+        assertEquals(Arrays.asList("index.html:missing.html", "news.html:missing.html"), badLinks);
+    }
+
+    @Test
+    public void canDecideMissingLinksInSubclasses() {
+        Section section = new Section("Section");
+        section.addPage(createPage("index.html", "news.html", "generated.html"));
+        section.addPage(createPage("news.html", "index.html"));
+        Sitemap sitemap = new Sitemap();
+        sitemap.addSection(section);
+        LinkChecker checker = new LinkChecker(sitemap, new LinkValidator[0], null) {
+            protected boolean verifyLinkHref(String href) {
+                return href.equals("generated.html") || super.verifyLinkHref(href) && !href.equals("news.html");
+            }
+        };
+        List<BrokenLink> brokenLinks = checker.check().getBrokenLinks();
+        assertEquals(1, brokenLinks.size());
+        assertEquals("news.html", brokenLinks.get(0).getHref());
+    }
+
+    @Test
+    public void canReportMissingAnchorsOfAllPages() {
+        for (int threads = 1; threads <= 4; threads *= 2) {
+            Section section = new Section("Section");
+            section.addPage(createPage("index.html", new String[] { "intro" }, "news.html#latest", "news.html#old",
+                    "#intro", "#missing", "#top", "http://codehaus.org#anywhere"));
+            section.addPage(createPage("news.html", new String[] { "latest" }, "index.html#intro", "index.html#",
+                    "missing.html#intro"));
+            Sitemap sitemap = new Sitemap();
+            sitemap.addSection(section);
+            XSiteConfiguration configuration = new XSiteConfiguration(true, threads);
+            configuration.setValidateAnchors(true);
+            LinkReport report = new LinkChecker(sitemap, new LinkValidator[] { new StartsWithLinkValidator(
+                    "http://") }, null, configuration).check();
+            assertFalse(report.isValid());
+            assertEquals(2, report.getPageCount());
+            assertEquals(9, report.getLinkCount());
+            List<String> brokenLinks = new ArrayList<String>();
+            for (BrokenLink brokenLink : report.getBrokenLinks()) {
+                brokenLinks.add(brokenLink.getPage().getFilename() + ":" + brokenLink.getHref() + ":"
+                        + brokenLink.getProblem());
+            }
+            assertEquals(new HashSet<String>(Arrays.asList("index.html:news.html#old:" + Problem.MISSING_ANCHOR,
+                    "index.html:#missing:" + Problem.MISSING_ANCHOR, "news.html:missing.html#intro:"
+                            + Problem.MISSING_PAGE)), new HashSet<String>(brokenLinks));
+            assertTrue(brokenLinks.get(brokenLinks.size() - 1).startsWith("news.html"));
+        }
+    }
+
+    @Test
+    public void canReportDeadExternalLinks() throws IOException {
+        StubHttpServer server = new StubHttpServer(0);
+        try {
+            Section section = new Section("Section");
+            section.addPage(createPage("index.html", server.url("/ok.html"), server.url("/missing.html"),
+                    "mailto:dev@xsite.codehaus.org"));
+            section.addPage(createPage("news.html", server.url("/missing.html")));
+            Sitemap sitemap = new Sitemap();
+            sitemap.addSection(section);
+            XSiteConfiguration configuration = new XSiteConfiguration();
+            configuration.setVerifyExternalLinks(true);
+            LinkReport report = new LinkChecker(sitemap, new LinkValidator[] { new PrefixTrieLinkValidator(
+                    new String[] { "http://", "mailto:" }) }, null, configuration).check();
+            assertEquals(2, report.getBrokenLinks().size());
+            for (BrokenLink brokenLink : report.getBrokenLinks()) {
+                assertEquals(server.url("/missing.html"), brokenLink.getHref());
+                assertEquals(Problem.DEAD_EXTERNAL_LINK, brokenLink.getProblem());
+            }
+            assertEquals(3, server.getRequests().size());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void canIgnoreMissingAnchorsUnlessConfigured() {
+        Section section = new Section("Section");
+        section.addPage(createPage("index.html", new String[0], "#missing", "index.html#missing"));
+        Sitemap sitemap = new Sitemap();
+        sitemap.addSection(section);
+        assertTrue(new LinkChecker(sitemap, new LinkValidator[0], null).check().isValid());
+    }
+
+    private Page createPage(String filename, String... hrefs) {
+        return createPage(filename, new String[0], hrefs);
+    }
+
+    private Page createPage(String filename, String[] anchors, String... hrefs) {
+        List<Link> links = new ArrayList<Link>();
+        for (String href : hrefs) {
+            links.add(new Link(href, href));
+        }
+        return new Page(filename, "head", "body", links, new HashSet<String>(Arrays.asList(anchors)),
+                new Properties());
+    }
+}
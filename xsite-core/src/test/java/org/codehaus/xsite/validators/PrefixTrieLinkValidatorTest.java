@@ -0,0 +1,42 @@
+package org.codehaus.xsite.validators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.codehaus.xsite.LinkValidator;
+import org.junit.Test;
+
+/**
+ * @author Mauro Talevi
+ */
+public class PrefixTrieLinkValidatorTest {
+
+    private String[] prefixes = { "mailto:", "http://", "https://", "apidocs/", "javadoc/" };
+
+    @Test
+    public void canValidateAsStartsWithValidators() {
+        LinkValidator validator = new PrefixTrieLinkValidator(prefixes);
+        String[] links = { "mailto:dev@xsite.codehaus.org", "http://xsite.codehaus.org", "https://codehaus.org",
+                "apidocs/index.html", "javadoc/", "http:/", "https:", "htt", "", "api/index.html",
+                "index.html#mailto:", "MAILTO:dev@xsite.codehaus.org" };
+        for (String link : links) {
+            assertEquals(link, isValidByAnyStartsWith(link), validator.isValid(link));
+        }
+    }
+
+    @Test
+    public void canValidateAnyLinkWithEmptyPrefix() {
+        assertTrue(new PrefixTrieLinkValidator(new String[] { "" }).isValid("index.html"));
+        assertFalse(new PrefixTrieLinkValidator(new String[0]).isValid("index.html"));
+    }
+
+    private boolean isValidByAnyStartsWith(String link) {
+        for (String prefix : prefixes) {
+            if (new StartsWithLinkValidator(prefix).isValid(link)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
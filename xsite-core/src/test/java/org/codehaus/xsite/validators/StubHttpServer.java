@@ -0,0 +1,162 @@
+package org.codehaus.xsite.validators;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process HTTP server answering requests by path, so that links can be
+ * verified without network access:
+ * <ul>
+ * <li>/missing... answers 404</li>
+ * <li>/nohead... answers 405 to HEAD requests and 200 to GET requests</li>
+ * <li>/slow... answers 200 after the configured delay</li>
+ * <li>any other path answers 200</li>
+ * </ul>
+ *
+ * @author Mauro Talevi
+ */
+class StubHttpServer {
+
+    private static final long CLOSE_TIMEOUT = 1000;
+
+    private final ServerSocket serverSocket;
+    private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+    private final Set<Socket> active = new HashSet<Socket>();
+    private final Set<Socket> answered = new HashSet<Socket>();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final long delay;
+
+    StubHttpServer(long delay) throws IOException {
+        this.delay = delay;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept();
+            }
+        }, "stub-http-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+    }
+
+    /**
+     * Returns the requests received, as method and path
+     */
+    List<String> getRequests() {
+        synchronized (requests) {
+            return new ArrayList<String>(requests);
+        }
+    }
+
+    int getMaxActiveRequests() {
+        return maxActive.get();
+    }
+
+    void stop() throws IOException {
+        serverSocket.close();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                countActive(socket);
+                Thread handler = new Thread(new Runnable() {
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                // server stopped
+            }
+        }
+    }
+
+    /**
+     * Counts a request as active from when it is accepted until the client
+     * closes the connection, as a client only releases its connection permit
+     * once closed. Before counting, waits for the clients already answered to
+     * close, so that a client which closed before connecting again is not
+     * counted twice.
+     */
+    private void countActive(Socket socket) {
+        synchronized (active) {
+            long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT;
+            long remaining = CLOSE_TIMEOUT;
+            while (!answered.isEmpty() && remaining > 0) {
+                try {
+                    active.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+            active.add(socket);
+            maxActive.set(Math.max(maxActive.get(), active.size()));
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+            String[] requestLine = reader.readLine().split(" ");
+            String line;
+            while ((line = reader.readLine()) != null && line.length() > 0) {
+                // skip headers
+            }
+            String method = requestLine[0];
+            String path = requestLine[1];
+            requests.add(method + " " + path);
+            String status = "200 OK";
+            if (path.startsWith("/missing")) {
+                status = "404 Not Found";
+            } else if (path.startsWith("/nohead") && method.equals("HEAD")) {
+                status = "405 Method Not Allowed";
+            } else if (path.startsWith("/slow")) {
+                Thread.sleep(delay);
+            }
+            // the client may close as soon as it reads the response
+            synchronized (active) {
+                answered.add(socket);
+            }
+            OutputStream output = socket.getOutputStream();
+            output.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                    .getBytes("ISO-8859-1"));
+            output.flush();
+            while (reader.read() >= 0) {
+                // wait for the client to close
+            }
+        } catch (Exception e) {
+            // client gone
+        } finally {
+            synchronized (active) {
+                active.remove(socket);
+                answered.remove(socket);
+                active.notifyAll();
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+}
@@ -1,15 +1,18 @@
 package org.codehaus.xsite.mojo;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.util.Arrays;
 
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
-import org.codehaus.xsite.Main;
+import org.codehaus.xsite.BuildRequest;
+import org.codehaus.xsite.BuildResult;
+import org.codehaus.xsite.BuildRunner;
+import org.codehaus.xsite.validators.LinkChecker.InvalidLinksException;
 
 /**
- * Mojo to run XSite via Main CLI
+ * Mojo to run XSite in-process via the BuildRunner
  * 
  * @author Mauro Talevi
  * @goal run
@@ -29,14 +32,16 @@ public class XSiteRunMojo  extends AbstractMojo {
     String sitemapPath;
     
     /**
+     * Required unless verifyOnly or mergeShards
+     * 
      * @parameter
-     * @required true
      */
     String skinPath;
 
     /**
+     * Required unless verifyOnly
+     * 
      * @parameter
-     * @required true
      */
     String outputDirectoryPath;
 
@@ -75,44 +80,123 @@ public class XSiteRunMojo  extends AbstractMojo {
      */
     String publishedVersion;
 
+    /**
+     * @parameter
+     */
+    String threads;
+
+    /**
+     * @parameter
+     */
+    boolean incremental;
+
+    /**
+     * @parameter
+     */
+    boolean syncResources;
+
+    /**
+     * Compares the content of resources, rather than their size and
+     * modification time, when synchronising them
+     * 
+     * @parameter
+     */
+    boolean compareResourceContent;
+
+    /**
+     * Deletes the files of the output directory which are no longer resources
+     * nor pages when synchronising resources
+     * 
+     * @parameter
+     */
+    boolean deleteStaleResources;
+
+    /**
+     * The number of sites of the default language and of the localisations
+     * built at the same time
+     * 
+     * @parameter
+     */
+    String localisationThreads;
+
+    /**
+     * @parameter
+     */
+    boolean shareResources;
+
+    /**
+     * Only verifies the links of the site, without producing any output
+     * 
+     * @parameter
+     */
+    boolean verifyOnly;
+
+    /**
+     * The shard built, written as index/count, e.g. 2/4
+     * 
+     * @parameter
+     */
+    String shard;
+
+    /**
+     * Merges the manifests of the shards built into the output directory and
+     * verifies the links of the whole site
+     * 
+     * @parameter
+     */
+    boolean mergeShards;
+
     public void execute() throws MojoExecutionException, MojoFailureException {
         try {
-            List<String> args = cliArgs();
-            getLog().debug("Executing XSite run goal with args "+args);
-            Main.main(args.toArray(new String[args.size()]));
+            BuildRequest request = buildRequest();
+            getLog().debug("Executing XSite run goal with args " + Arrays.asList(request.toArgs()));
+            BuildResult result = new BuildRunner().run(request);
+            getLog().info(result.toString());
+        } catch (InvalidLinksException e) {
+            throw new MojoFailureException(e.getMessage());
         } catch (Exception e) {
             throw new MojoExecutionException("Failed to run xsite", e);
         }
     }
 
-    protected List<String> cliArgs() {
-        List<String> args = new ArrayList<String>();
-        args.add("-S" + sourceDirectoryPath);
-        args.add("-m" + sitemapPath);
-        args.add("-s" + skinPath);
-        args.add("-o" + outputDirectoryPath);
+    protected BuildRequest buildRequest() {
+        BuildRequest request = new BuildRequest(new File(sourceDirectoryPath), sitemapPath);
+        request.setSkinPath(skinPath);
+        if (outputDirectoryPath != null) {
+            request.setOutputDirectory(new File(outputDirectoryPath));
+        }
         if (resourcePaths != null) {
-            args.add("-R" + resourcePaths);
+            request.setResourcePaths(resourcePaths.split(","));
         }
         if (templatesDirectoryPath != null) {
-            args.add("-T" + templatesDirectoryPath);
+            request.setTemplatesDirectory(new File(templatesDirectoryPath));
         }
         if (localisations != null) {
-            args.add("-L" + localisations);
+            request.setLocalisations(localisations.split(","));
         }
-        if (compositionFilePath != null) {
-            args.add("-f" + compositionFilePath);
+        request.setCompositionFilePath(compositionFilePath);
+        request.setCompositionResourcePath(compositionResourcePath);
+        if (publishedDate != null) {
+            request.setPublishedDate(publishedDate);
         }
-        if (compositionResourcePath != null) {
-            args.add("-r" + compositionResourcePath);
+        if (publishedVersion != null) {
+            request.setPublishedVersion(publishedVersion);
         }
-        if (publishedDate !=null ){
-        	args.add("-D" +publishedDate);
+        if (threads != null) {
+            request.setThreads(Integer.parseInt(threads));
         }
-        if (publishedVersion!=null ){
-        	args.add("-V" +publishedVersion);
+        request.setIncremental(incremental);
+        request.setSyncResources(syncResources);
+        request.setCompareResourceContent(compareResourceContent);
+        request.setDeleteStaleResources(deleteStaleResources);
+        if (localisationThreads != null) {
+            request.setLocalisationThreads(Integer.parseInt(localisationThreads));
         }
-        return args;
+        request.setShareResources(shareResources);
+        request.setShard(shard);
+        request.setVerifyOnly(verifyOnly);
+        request.setMergeShards(mergeShards);
+        return request;
     }
 
 }
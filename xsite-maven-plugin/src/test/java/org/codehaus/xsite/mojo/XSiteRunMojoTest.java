@@ -3,6 +3,7 @@ package org.codehaus.xsite.mojo;
 import java.io.File;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -62,5 +63,22 @@ public class XSiteRunMojoTest {
         mojo.outputDirectoryPath = "target/xsite";
 	    mojo.execute();
     }
-}
 
+    @Test
+    public void testGoalCanVerifyLinksOnly() throws Exception {
+        XSiteRunMojo mojo = new XSiteRunMojo();
+        mojo.sourceDirectoryPath = testSrcDir;
+        mojo.sitemapPath = "content/sitemap.xml";
+        mojo.verifyOnly = true;
+        mojo.execute();
+    }
+
+    @Test(expected=MojoFailureException.class)
+    public void testGoalFailsWithInvalidLinks() throws Exception {
+        XSiteRunMojo mojo = new XSiteRunMojo();
+        mojo.sourceDirectoryPath = testSrcDir;
+        mojo.sitemapPath = "broken/sitemap.xml";
+        mojo.verifyOnly = true;
+        mojo.execute();
+    }
+}